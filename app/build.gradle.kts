@@ -1,3 +1,6 @@
+import dam.pmpd.javl_tarea02.build.GenerateArtworkTask
+import dam.pmpd.javl_tarea02.build.GenerateCatalogTask
+
 plugins {
     alias(libs.plugins.android.application)
 }
@@ -14,6 +17,11 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Servidor del catálogo para CatalogSync; vacío desactiva la sincronización.
+        // Se puede indicar con -PcatalogSyncUrl=https://<servidor>/
+        val catalogSyncUrl = (project.findProperty("catalogSyncUrl") as String?) ?: ""
+        buildConfigField("String", "CATALOG_SYNC_URL", "\"$catalogSyncUrl\"")
     }
 
     buildTypes {
@@ -24,6 +32,16 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Igual que release pero optimizada con R8 y firmada con la clave de depuración,
+        // para medir el arranque con el módulo :baselineprofile
+        create("benchmark") {
+            initWith(getByName("release"))
+            isMinifyEnabled = true
+            isShrinkResources = true
+            isDebuggable = false
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
@@ -32,6 +50,45 @@ android {
     buildFeatures {
         dataBinding=true
         viewBinding=true
+        buildConfig=true
+    }
+    // El catálogo se proyecta en memoria directamente desde el APK, sin descomprimir
+    androidResources {
+        noCompress += "bin"
+    }
+}
+
+// Imágenes de los personajes reducidas por densidad al tamaño con que se muestran.
+// Los originales están en src/artwork y el informe queda en build/reports/artwork.txt
+val generateArtwork = tasks.register<GenerateArtworkTask>("generateArtwork") {
+    sourceDir.set(layout.projectDirectory.dir("src/artwork"))
+    dimensFile.set(layout.projectDirectory.file("src/main/res/values/dimens.xml"))
+    dimenNames.set(listOf("character_thumbnail_size", "character_detail_size"))
+    densities.set(linkedMapOf(
+        "mdpi" to 1f,
+        "hdpi" to 1.5f,
+        "xhdpi" to 2f,
+        "xxhdpi" to 3f,
+        "xxxhdpi" to 4f
+    ))
+    nearLossless.set(60)
+    tolerance.set(8)
+    outputDir.set(layout.buildDirectory.dir("generated/res/artwork"))
+    reportFile.set(layout.buildDirectory.file("reports/artwork.txt"))
+}
+
+// Catálogo binario de personajes (assets/catalog.bin) generado a partir de arrays.xml y de los
+// strings.xml de cada idioma
+val generateCatalog = tasks.register<GenerateCatalogTask>("generateCatalog") {
+    arraysFile.set(layout.projectDirectory.file("src/main/res/values/arrays.xml"))
+    stringsFiles.from(fileTree("src/main/res") { include("values*/strings.xml") })
+    outputDir.set(layout.buildDirectory.dir("generated/assets/catalog"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.res?.addGeneratedSourceDirectory(generateArtwork) { it.outputDir }
+        variant.sources.assets?.addGeneratedSourceDirectory(generateCatalog) { it.outputDir }
     }
 }
 
@@ -43,6 +100,9 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     implementation(libs.preference)
+    implementation(libs.recyclerview)
+    implementation(libs.asynclayoutinflater)
+    implementation(libs.profileinstaller)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
@@ -0,0 +1,63 @@
+package dam.pmpd.javl_tarea02;
+
+import android.os.Bundle;
+import android.os.Parcel;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Mide el tamaño de los argumentos de {@link DetailsFragment} una vez serializados.
+ *
+ * <p>Compara el formato anterior (nombre, imagen, descripción y habilidades en el Bundle) con el
+ * actual, que solo guarda el identificador del personaje.</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class DetailsFragmentArgumentsTest {
+
+    @Test
+    public void argumentsSize_doesNotDependOnTextLength() {
+        int shortText = parceledSize(legacyArguments(repeat("a", 20)));
+        int longText = parceledSize(legacyArguments(repeat("a", 2000)));
+        int current = parceledSize(DetailsFragment.newInstance("mario").getArguments());
+
+        // El formato anterior crece con el texto; el actual es constante y más pequeño
+        assertTrue("Antes: " + shortText + " / " + longText + " bytes", longText > shortText);
+        assertTrue("Ahora: " + current + " bytes", current < shortText);
+        assertEquals(current, parceledSize(DetailsFragment.newInstance("mario").getArguments()));
+    }
+
+    /**
+     * Reproduce los argumentos que generaba la versión anterior de {@code newInstance}.
+     */
+    private static Bundle legacyArguments(String text) {
+        Bundle args = new Bundle();
+        args.putString("name", "Mario");
+        args.putInt("image", R.drawable.mario);
+        args.putString("description", text);
+        args.putString("abilities", text);
+        return args;
+    }
+
+    private static int parceledSize(Bundle bundle) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(bundle);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.Context;
+import android.os.Debug;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Comprueba que vincular filas de {@link SimpleAdapter} con imágenes ya en caché no reserva memoria.
+ *
+ * <p>Cada vinculación medida lleva un ViewHolder a una fila distinta de la que mostraba, de modo
+ * que se recorre el camino completo (texto desde la tabla o el personaje e imagen servida por
+ * {@link ImageLoader} desde la caché en memoria) y no el atajo de la misma fila.</p>
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class SimpleAdapterAllocationTest {
+
+    private static final int REBINDS = 1000;
+
+    @Test
+    public void rebind_inSteadyState_allocatesNothing() {
+        List<Character> characters = new ArrayList<>();
+        characters.add(new Character("mario", "Mario", R.drawable.mario, "", ""));
+        characters.add(new Character("luigi", "Luigi", R.drawable.luigi, "", ""));
+        characters.add(new Character("peach", "Peach", R.drawable.peach, "", ""));
+        characters.add(new Character("bowser", "Bowser", R.drawable.bowser, "", ""));
+        assertRebindsAllocateNothing(characters);
+    }
+
+    @Test
+    public void rebind_fromTable_allocatesNothing() {
+        assertRebindsAllocateNothing(new CharacterTable.Builder(4)
+                .add("mario", "Mario", R.drawable.mario)
+                .add("luigi", "Luigi", R.drawable.luigi)
+                .add("peach", "Peach", R.drawable.peach)
+                .add("bowser", "Bowser", R.drawable.bowser)
+                .build(null));
+    }
+
+    private static void assertRebindsAllocateNothing(final List<Character> characters) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        // Dejar las miniaturas decodificadas en la caché, al tamaño de la fila
+        int size = context.getResources().getDimensionPixelSize(R.dimen.character_thumbnail_size);
+        for (Character character : characters) {
+            ImageLoader.getInstance(context).warm(character.getImageResource(), size, size);
+        }
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            SimpleAdapter adapter = new SimpleAdapter(characters, character -> { });
+            FrameLayout parent = new FrameLayout(context);
+            SimpleAdapter.CharacterViewHolder[] holders = new SimpleAdapter.CharacterViewHolder[characters.size()];
+            for (int i = 0; i < holders.length; i++) {
+                holders[i] = adapter.onCreateViewHolder(parent, 0);
+            }
+
+            // Una vuelta completa para llegar al estado estable
+            rebindRotating(adapter, holders, holders.length * holders.length);
+
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            try {
+                rebindRotating(adapter, holders, REBINDS);
+            } finally {
+                Debug.stopAllocCounting();
+            }
+
+            assertEquals("Reservas durante " + REBINDS + " revinculaciones", 0, Debug.getThreadAllocCount());
+        });
+    }
+
+    /**
+     * Vincula los ViewHolder por turnos, desplazando las filas una posición en cada vuelta para
+     * que ninguno vuelva a recibir la fila que ya mostraba.
+     */
+    private static void rebindRotating(SimpleAdapter adapter, SimpleAdapter.CharacterViewHolder[] holders, int binds) {
+        int rows = adapter.getItemCount();
+        for (int n = 0; n < binds; n++) {
+            int position = (n + n / holders.length) % rows;
+            adapter.onBindViewHolder(holders[n % holders.length], position);
+            adapter.getItemId(position);
+        }
+    }
+}
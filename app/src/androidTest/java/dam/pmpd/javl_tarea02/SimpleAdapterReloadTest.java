@@ -0,0 +1,216 @@
+package dam.pmpd.javl_tarea02;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Comprueba qué pasa con las miniaturas que el carril de decodificación descarta por estar lleno.
+ *
+ * <p>Se vinculan a la vez más filas de las que admite el carril {@code DECODE} (128 en cola y dos
+ * en marcha). Cada fila tiene un tamaño de imagen distinto, de modo que ninguna petición se sirve
+ * desde la caché de otra.</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class SimpleAdapterReloadTest {
+
+    private static final int ROWS = 140;
+    private static final int[] IMAGES = {R.drawable.mario, R.drawable.luigi, R.drawable.peach, R.drawable.bowser};
+    private static final Pattern DECODE_DROPPED = Pattern.compile("^\\s*decode .* descartadas=(\\d+)", Pattern.MULTILINE);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final Context context = instrumentation.getTargetContext();
+    private SimpleAdapter adapter;
+    private SimpleAdapter.CharacterViewHolder[] holders;
+
+    @Before
+    public void setUp() {
+        CharacterTable.Builder builder = new CharacterTable.Builder(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            builder.add("character_" + i, "Personaje " + i, IMAGES[i % IMAGES.length]);
+        }
+        adapter = new SimpleAdapter(builder.build(null), character -> { });
+        holders = new SimpleAdapter.CharacterViewHolder[ROWS];
+        instrumentation.runOnMainSync(() -> {
+            ImageLoader.getInstance(context).getMemoryCache().clear();
+            AppScheduler.get().resetStats();
+        });
+    }
+
+    @Test
+    public void detachedRow_reloadsItsDroppedThumbnailOnRebind() throws Exception {
+        instrumentation.runOnMainSync(() -> bindAll(new FrameLayout(context)));
+        awaitDecodeLaneIdle();
+        assertTrue("Ninguna petición descartada", decodeDropped() > 0);
+
+        final int[] blank = new int[2];
+        instrumentation.runOnMainSync(() -> {
+            // Fuera de pantalla no se reintenta: quedan huecos hasta volver a vincular
+            blank[0] = countBlank();
+            warmAll();
+            for (int i = 0; i < ROWS; i++) {
+                adapter.onBindViewHolder(holders[i], i);
+            }
+            blank[1] = countBlank();
+        });
+
+        assertTrue("Ninguna miniatura descartada sin reintentar", blank[0] > 0);
+        assertEquals("Miniaturas sin cargar tras revincular", 0, blank[1]);
+    }
+
+    @Test
+    public void attachedRow_requeuesItsDroppedThumbnailWithoutRebinding() throws Exception {
+        try (ActivityScenario<SettingsActivity> scenario = ActivityScenario.launch(SettingsActivity.class)) {
+            final CountDownLatch loaded = new CountDownLatch(1);
+            scenario.onActivity(activity -> {
+                FrameLayout parent = new FrameLayout(activity);
+                activity.addContentView(parent, new ViewGroup.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+                parent.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+                    @Override
+                    public void onDraw() {
+                        if (countBlank() == 0) {
+                            loaded.countDown();
+                        }
+                    }
+                });
+                bindAll(parent);
+                for (SimpleAdapter.CharacterViewHolder holder : holders) {
+                    parent.addView(holder.itemView);
+                }
+            });
+
+            assertTrue("Miniaturas sin cargar en pantalla", loaded.await(20, TimeUnit.SECONDS));
+            assertTrue("Ninguna petición descartada", decodeDropped() > 0);
+        }
+    }
+
+    @Test
+    public void failedDecode_isNotRequeued() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        // El cargador lee la ruta del fichero en el hilo de decodificación: así falla la propia tarea
+        File broken = new File(context.getCacheDir(), "broken.webp") {
+            @Override
+            public String getPath() {
+                reads.incrementAndGet();
+                throw new IllegalStateException("Fichero ilegible");
+            }
+        };
+        ImageLoader.getInstance(context).registerFile(-315, broken);
+
+        try (ActivityScenario<SettingsActivity> scenario = ActivityScenario.launch(SettingsActivity.class)) {
+            final ImageView[] image = new ImageView[1];
+            scenario.onActivity(activity -> {
+                image[0] = new ImageView(activity);
+                activity.addContentView(image[0], new ViewGroup.LayoutParams(64, 64));
+                ImageLoader.getInstance(activity).load(image[0], -315);
+            });
+            awaitDecodeLaneIdle();
+            // Un reintento se encolaría desde el fallo, detrás de la primera espera
+            awaitDecodeLaneIdle();
+
+            scenario.onActivity(activity -> {
+                assertTrue(image[0].isAttachedToWindow());
+                assertNull(image[0].getDrawable());
+            });
+            assertEquals("La decodificación fallida se ha reintentado", 1, reads.get());
+        }
+    }
+
+    /**
+     * Crea un ViewHolder por fila, con un tamaño de imagen propio, y los vincula todos de una vez.
+     */
+    private void bindAll(ViewGroup parent) {
+        for (int i = 0; i < ROWS; i++) {
+            holders[i] = adapter.onCreateViewHolder(parent, 0);
+            ViewGroup.LayoutParams params = image(holders[i]).getLayoutParams();
+            params.width = 40 + i;
+            params.height = 40 + i;
+        }
+        for (int i = 0; i < ROWS; i++) {
+            adapter.onBindViewHolder(holders[i], i);
+        }
+    }
+
+    /**
+     * Deja en la caché las imágenes de todas las filas, como si se hubieran decodificado después.
+     */
+    private void warmAll() {
+        for (int i = 0; i < ROWS; i++) {
+            ImageLoader.getInstance(context).warm(IMAGES[i % IMAGES.length], 40 + i, 40 + i);
+        }
+    }
+
+    /**
+     * Espera a que terminen todas las decodificaciones y se entreguen sus resultados: dos tareas
+     * que solo acaban cuando ocupan a la vez los dos hilos del carril se ejecutan después de todo
+     * lo anterior, y sus resultados llegan al hilo principal detrás de los demás.
+     */
+    private void awaitDecodeLaneIdle() throws InterruptedException {
+        final CyclicBarrier bothThreads = new CyclicBarrier(2);
+        final CountDownLatch delivered = new CountDownLatch(2);
+        instrumentation.runOnMainSync(() -> {
+            for (int i = 0; i < 2; i++) {
+                AppScheduler.get().globalScope().submit(TaskScheduler.Lane.DECODE, () -> {
+                    bothThreads.await(20, TimeUnit.SECONDS);
+                    return null;
+                }, new TaskScheduler.Callback<Object>() {
+                    @Override
+                    public void onResult(Object result) {
+                        delivered.countDown();
+                    }
+                });
+            }
+        });
+        assertTrue("El carril de decodificación no se vacía", delivered.await(30, TimeUnit.SECONDS));
+        instrumentation.waitForIdleSync();
+    }
+
+    /**
+     * @return Tareas descartadas por el carril de decodificación desde {@link #setUp()}.
+     */
+    private static int decodeDropped() {
+        StringWriter text = new StringWriter();
+        AppScheduler.get().dump(new PrintWriter(text));
+        Matcher matcher = DECODE_DROPPED.matcher(text.toString());
+        assertTrue(text.toString(), matcher.find());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private int countBlank() {
+        int blank = 0;
+        for (SimpleAdapter.CharacterViewHolder holder : holders) {
+            if (holder == null || image(holder).getDrawable() == null) {
+                blank++;
+            }
+        }
+        return blank;
+    }
+
+    private static ImageView image(SimpleAdapter.CharacterViewHolder holder) {
+        return holder.itemView.findViewById(R.id.imageCharacter);
+    }
+}
@@ -0,0 +1,71 @@
+package dam.pmpd.javl_tarea02;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * Acceso al {@link TaskScheduler} compartido de la aplicación.
+ *
+ * <p>Los resultados se entregan en el hilo principal y los hilos de cada carril se crean con la
+ * prioridad de Android indicada por {@link TaskScheduler.Lane#priority()}. {@link #scope} crea un
+ * ámbito que se cierra solo al destruirse una actividad o la vista de un fragmento.</p>
+ *
+ * @author jvillar315
+ */
+public final class AppScheduler {
+
+    private static volatile TaskScheduler instance;
+
+    private AppScheduler() {
+    }
+
+    /**
+     * @return El planificador compartido.
+     */
+    public static TaskScheduler get() {
+        if (instance == null) {
+            synchronized (AppScheduler.class) {
+                if (instance == null) {
+                    final Handler mainHandler = new Handler(Looper.getMainLooper());
+                    instance = new TaskScheduler(mainHandler::post,
+                            lane -> Process.setThreadPriority(lane.priority()));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Crea un ámbito cuyas tareas se cancelan al destruirse el propietario. Para un fragmento se
+     * debe usar {@code getViewLifecycleOwner()} si los resultados se muestran en su vista.
+     *
+     * @param owner Actividad, fragmento o ciclo de vida de una vista.
+     * @return El ámbito; ya está cerrado si el propietario estaba destruido.
+     */
+    @MainThread
+    public static TaskScheduler.Scope scope(@NonNull LifecycleOwner owner) {
+        final TaskScheduler.Scope scope = get().newScope();
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            scope.close();
+            return scope;
+        }
+        lifecycle.addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    source.getLifecycle().removeObserver(this);
+                    scope.close();
+                }
+            }
+        });
+        return scope;
+    }
+}
@@ -0,0 +1,435 @@
+package dam.pmpd.javl_tarea02;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catálogo de personajes en formato binario compacto.
+ *
+ * <p>El fichero se genera al compilar a partir de {@code arrays.xml} y de los
+ * {@code strings.xml} de cada idioma (tarea {@code generateCatalog}) y se lee directamente de un
+ * {@link ByteBuffer}, normalmente proyectado en memoria desde los assets: no se crea ningún
+ * {@link String} hasta que se pide un texto concreto, y buscar un identificador es una búsqueda
+ * binaria sobre los bytes.</p>
+ *
+ * <p>Formato (enteros de 32 bits big-endian):</p>
+ * <pre>
+ * cabecera      magia, versión, personajes, idiomas, cadenas,
+ *               posición del directorio de idiomas, de los ids, de los desplazamientos y del pool
+ * idiomas       por idioma: cadena con la etiqueta ("" = por defecto), posición de su sección
+ * ids           cadena del identificador de cada personaje
+ * ids ordenados posiciones de los personajes ordenadas por los bytes UTF-8 del identificador
+ * secciones     por idioma y personaje: cadena del nombre, la descripción y las habilidades
+ * desplaz.      inicio de cada cadena dentro del pool, más el final de la última
+ * pool          cadenas UTF-8 sin repetir
+ * </pre>
+ *
+ * <p>Esta clase no depende de Android: la usa también la tarea de compilación para escribir el
+ * fichero con {@link Writer}, y puede probarse en la JVM.</p>
+ *
+ * @author jvillar315
+ */
+public final class BinaryCatalog {
+
+    static final int MAGIC = 0x43415431; // "CAT1"
+    static final int VERSION = 1;
+
+    /** Campos de texto de cada personaje en la sección de un idioma. */
+    public static final int FIELD_NAME = 0;
+    public static final int FIELD_DESCRIPTION = 1;
+    public static final int FIELD_ABILITIES = 2;
+    static final int FIELDS = 3;
+
+    private static final int HEADER_SIZE = 9 * 4;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int localeCount;
+    private final int stringCount;
+    private final int localesOffset;
+    private final int idsOffset;
+    private final int sortedIdsOffset;
+    private final int stringOffsetsOffset;
+    private final int poolOffset;
+
+    private BinaryCatalog(ByteBuffer buffer, int size, int localeCount, int stringCount, int localesOffset,
+                          int idsOffset, int stringOffsetsOffset, int poolOffset) {
+        this.buffer = buffer;
+        this.size = size;
+        this.localeCount = localeCount;
+        this.stringCount = stringCount;
+        this.localesOffset = localesOffset;
+        this.idsOffset = idsOffset;
+        this.sortedIdsOffset = idsOffset + size * 4;
+        this.stringOffsetsOffset = stringOffsetsOffset;
+        this.poolOffset = poolOffset;
+    }
+
+    /**
+     * Abre un catálogo comprobando que su estructura es coherente.
+     *
+     * <p>La comprobación solo recorre las tablas de enteros, sin decodificar ninguna cadena.
+     * El buffer no se copia y no debe modificarse mientras se use el catálogo.</p>
+     *
+     * @param buffer Contenido del fichero, desde la posición 0.
+     * @return El catálogo.
+     * @throws IOException Si el contenido no es un catálogo válido de esta versión.
+     */
+    public static BinaryCatalog open(ByteBuffer buffer) throws IOException {
+        int capacity = buffer.limit();
+        if (capacity < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("No es un catálogo de personajes");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Versión de catálogo no admitida: " + buffer.getInt(4));
+        }
+        int size = buffer.getInt(8);
+        int localeCount = buffer.getInt(12);
+        int stringCount = buffer.getInt(16);
+        int localesOffset = buffer.getInt(20);
+        int idsOffset = buffer.getInt(24);
+        int stringOffsetsOffset = buffer.getInt(28);
+        int poolOffset = buffer.getInt(32);
+        if (size < 0 || localeCount < 1 || stringCount < 0
+                || !fits(localesOffset, localeCount * 2L, capacity)
+                || !fits(idsOffset, size * 2L, capacity)
+                || !fits(stringOffsetsOffset, stringCount + 1L, capacity)
+                || poolOffset < 0 || poolOffset > capacity) {
+            throw new IOException("Cabecera de catálogo dañada");
+        }
+        BinaryCatalog catalog = new BinaryCatalog(buffer, size, localeCount, stringCount, localesOffset,
+                idsOffset, stringOffsetsOffset, poolOffset);
+        catalog.validate(capacity);
+        return catalog;
+    }
+
+    private static boolean fits(int offset, long ints, int capacity) {
+        return offset >= 0 && offset + ints * 4 <= capacity;
+    }
+
+    /**
+     * Comprueba que las tablas solo apuntan a cadenas y posiciones existentes.
+     */
+    private void validate(int capacity) throws IOException {
+        int previous = 0;
+        for (int i = 0; i <= stringCount; i++) {
+            int offset = buffer.getInt(stringOffsetsOffset + i * 4);
+            if (offset < previous || poolOffset + (long) offset > capacity) {
+                throw new IOException("Tabla de cadenas dañada");
+            }
+            previous = offset;
+        }
+        for (int i = 0; i < size; i++) {
+            checkString(buffer.getInt(idsOffset + i * 4));
+            int position = buffer.getInt(sortedIdsOffset + i * 4);
+            if (position < 0 || position >= size) {
+                throw new IOException("Tabla de ids dañada");
+            }
+        }
+        for (int locale = 0; locale < localeCount; locale++) {
+            checkString(buffer.getInt(localesOffset + locale * 8));
+            int section = buffer.getInt(localesOffset + locale * 8 + 4);
+            if (!fits(section, (long) size * FIELDS, capacity)) {
+                throw new IOException("Sección de idioma dañada");
+            }
+            for (int i = 0; i < size * FIELDS; i++) {
+                checkString(buffer.getInt(section + i * 4));
+            }
+        }
+    }
+
+    private void checkString(int index) throws IOException {
+        if (index < 0 || index >= stringCount) {
+            throw new IOException("Referencia a cadena inexistente: " + index);
+        }
+    }
+
+    /**
+     * @return Número de personajes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Número de idiomas.
+     */
+    public int localeCount() {
+        return localeCount;
+    }
+
+    /**
+     * @param locale Número de idioma, entre 0 y {@link #localeCount()}.
+     * @return Su etiqueta BCP 47, o una cadena vacía para los textos por defecto.
+     */
+    public String localeTag(int locale) {
+        return string(buffer.getInt(localesOffset + locale * 8));
+    }
+
+    /**
+     * Elige la sección de idioma más adecuada: la de la etiqueta exacta, la del idioma sin
+     * región, la de los textos por defecto o, si no hay ninguna, la primera.
+     *
+     * @param languageTag Etiqueta BCP 47, por ejemplo {@code en-US}.
+     * @return Número de idioma a usar con {@link #text}.
+     */
+    public int findLocale(String languageTag) {
+        int separator = languageTag.indexOf('-');
+        String language = separator > 0 ? languageTag.substring(0, separator) : languageTag;
+        int languageMatch = -1;
+        int defaultMatch = -1;
+        for (int locale = 0; locale < localeCount; locale++) {
+            String tag = localeTag(locale);
+            if (tag.equalsIgnoreCase(languageTag)) {
+                return locale;
+            } else if (tag.equalsIgnoreCase(language)) {
+                languageMatch = locale;
+            } else if (tag.isEmpty()) {
+                defaultMatch = locale;
+            }
+        }
+        if (languageMatch >= 0) {
+            return languageMatch;
+        }
+        return defaultMatch >= 0 ? defaultMatch : 0;
+    }
+
+    /**
+     * @param position Posición del personaje.
+     * @return Su identificador.
+     */
+    public String id(int position) {
+        return string(buffer.getInt(idsOffset + position * 4));
+    }
+
+    /**
+     * Busca un personaje por su identificador sin decodificar ninguna cadena.
+     *
+     * @param id Identificador.
+     * @return Su posición, o -1 si no existe.
+     */
+    public int positionOf(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = buffer.getInt(sortedIdsOffset + middle * 4);
+            int comparison = compareString(buffer.getInt(idsOffset + position * 4), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodifica un texto de un personaje.
+     *
+     * @param locale   Número de idioma, por ejemplo el devuelto por {@link #findLocale}.
+     * @param position Posición del personaje.
+     * @param field    {@link #FIELD_NAME}, {@link #FIELD_DESCRIPTION} o {@link #FIELD_ABILITIES}.
+     * @return El texto.
+     */
+    public String text(int locale, int position, int field) {
+        int section = buffer.getInt(localesOffset + locale * 8 + 4);
+        return string(buffer.getInt(section + (position * FIELDS + field) * 4));
+    }
+
+    /**
+     * Decodifica una cadena del pool. Solo usa lecturas absolutas, de modo que varios hilos
+     * pueden leer el mismo buffer a la vez.
+     */
+    private String string(int index) {
+        int start = buffer.getInt(stringOffsetsOffset + index * 4);
+        int end = buffer.getInt(stringOffsetsOffset + index * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(poolOffset + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compara los bytes de una cadena del pool con {@code key}, como enteros sin signo.
+     */
+    private int compareString(int index, byte[] key) {
+        int start = poolOffset + buffer.getInt(stringOffsetsOffset + index * 4);
+        int length = buffer.getInt(stringOffsetsOffset + index * 4 + 4) - (start - poolOffset);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Escribe un catálogo a partir de los textos de cada idioma.
+     */
+    public static final class Writer {
+        private final String[] ids;
+        private final List<String> localeTags = new ArrayList<>();
+        private final List<String[]> sections = new ArrayList<>();
+
+        /**
+         * @param ids Identificadores de los personajes, sin repetir, en el orden del catálogo.
+         */
+        public Writer(String[] ids) {
+            if (new HashSet<>(Arrays.asList(ids)).size() != ids.length) {
+                throw new IllegalArgumentException("Identificadores repetidos");
+            }
+            this.ids = ids.clone();
+        }
+
+        /**
+         * Añade los textos de un idioma.
+         *
+         * @param tag          Etiqueta BCP 47 del idioma, o "" para los textos por defecto.
+         * @param names        Nombre de cada personaje.
+         * @param descriptions Descripción de cada personaje.
+         * @param abilities    Habilidades de cada personaje.
+         * @return Este escritor.
+         */
+        public Writer addLocale(String tag, String[] names, String[] descriptions, String[] abilities) {
+            if (names.length != ids.length || descriptions.length != ids.length || abilities.length != ids.length) {
+                throw new IllegalArgumentException("El idioma '" + tag + "' no tiene textos para todos los personajes");
+            }
+            if (localeTags.contains(tag)) {
+                throw new IllegalArgumentException("Idioma repetido: '" + tag + "'");
+            }
+            String[] section = new String[ids.length * FIELDS];
+            for (int i = 0; i < ids.length; i++) {
+                section[i * FIELDS + FIELD_NAME] = names[i];
+                section[i * FIELDS + FIELD_DESCRIPTION] = descriptions[i];
+                section[i * FIELDS + FIELD_ABILITIES] = abilities[i];
+            }
+            localeTags.add(tag);
+            sections.add(section);
+            return this;
+        }
+
+        /**
+         * @return El contenido del fichero del catálogo.
+         * @throws IllegalStateException Si no se ha añadido ningún idioma.
+         */
+        public byte[] toByteArray() {
+            if (localeTags.isEmpty()) {
+                throw new IllegalStateException("El catálogo necesita al menos un idioma");
+            }
+            // Pool de cadenas sin repetir
+            Map<String, Integer> indexes = new HashMap<>();
+            List<byte[]> pool = new ArrayList<>();
+            int[] idStrings = intern(Arrays.asList(ids), indexes, pool);
+            int[] tagStrings = intern(localeTags, indexes, pool);
+            List<int[]> sectionStrings = new ArrayList<>();
+            for (String[] section : sections) {
+                sectionStrings.add(intern(Arrays.asList(section), indexes, pool));
+            }
+
+            // Posiciones ordenadas por los bytes del identificador
+            final byte[][] idBytes = new byte[ids.length][];
+            List<Integer> sorted = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                idBytes[i] = ids[i].getBytes(StandardCharsets.UTF_8);
+                sorted.add(i);
+            }
+            Collections.sort(sorted, (a, b) -> compareBytes(idBytes[a], idBytes[b]));
+
+            int localesOffset = HEADER_SIZE;
+            int idsOffset = localesOffset + localeTags.size() * 8;
+            int sectionsOffset = idsOffset + ids.length * 8;
+            int sectionSize = ids.length * FIELDS * 4;
+            int stringOffsetsOffset = sectionsOffset + sections.size() * sectionSize;
+            int poolOffset = stringOffsetsOffset + (pool.size() + 1) * 4;
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(ids.length);
+                out.writeInt(localeTags.size());
+                out.writeInt(pool.size());
+                out.writeInt(localesOffset);
+                out.writeInt(idsOffset);
+                out.writeInt(stringOffsetsOffset);
+                out.writeInt(poolOffset);
+                for (int i = 0; i < localeTags.size(); i++) {
+                    out.writeInt(tagStrings[i]);
+                    out.writeInt(sectionsOffset + i * sectionSize);
+                }
+                for (int idString : idStrings) {
+                    out.writeInt(idString);
+                }
+                for (int position : sorted) {
+                    out.writeInt(position);
+                }
+                for (int[] section : sectionStrings) {
+                    for (int string : section) {
+                        out.writeInt(string);
+                    }
+                }
+                int offset = 0;
+                for (byte[] string : pool) {
+                    out.writeInt(offset);
+                    offset += string.length;
+                }
+                out.writeInt(offset);
+                for (byte[] string : pool) {
+                    out.write(string);
+                }
+                out.flush();
+            } catch (IOException e) {
+                // ByteArrayOutputStream no lanza excepciones de E/S
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static int[] intern(List<String> strings, Map<String, Integer> indexes, List<byte[]> pool) {
+            int[] result = new int[strings.size()];
+            for (int i = 0; i < result.length; i++) {
+                String value = strings.get(i);
+                if (value == null) {
+                    throw new IllegalArgumentException("Texto nulo en el catálogo");
+                }
+                Integer index = indexes.get(value);
+                if (index == null) {
+                    index = pool.size();
+                    indexes.put(value, index);
+                    pool.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+                result[i] = index;
+            }
+            return result;
+        }
+
+        private static int compareBytes(byte[] a, byte[] b) {
+            int common = Math.min(a.length, b.length);
+            for (int i = 0; i < common; i++) {
+                int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return a.length - b.length;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Caché en memoria de bitmaps ya decodificados con política LRU.
+ *
+ * <p>El límite se expresa en bytes ocupados por los bitmaps, no en número de entradas, de forma
+ * que la misma caché sirve tanto para miniaturas pequeñas como para imágenes de detalle. Responde
+ * a {@link ComponentCallbacks2#onTrimMemory} y {@link ComponentCallbacks2#onLowMemory} liberando
+ * entradas cuando el sistema se queda sin memoria.</p>
+ *
+ * @author jvillar315
+ */
+public class BitmapMemoryCache implements ComponentCallbacks2 {
+
+    private final LruCache<Key, Bitmap> cache;
+    // Clave de consulta reutilizada, para buscar sin reservar memoria; nunca se guarda en la caché
+    private final Key probe = new Key(0, 0, 0, Bitmap.Config.ARGB_8888);
+
+    /**
+     * Crea una caché con el presupuesto indicado.
+     *
+     * @param maxBytes Tamaño máximo total de los bitmaps almacenados, en bytes.
+     */
+    public BitmapMemoryCache(int maxBytes) {
+        this.cache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(@NonNull Key key, @NonNull Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Calcula un presupuesto razonable a partir de la memoria disponible para la aplicación.
+     *
+     * @param memoryClassMb Memoria por aplicación en MB, tal y como la devuelve
+     *                      {@code ActivityManager.getMemoryClass()}.
+     * @return Un octavo de esa memoria, en bytes.
+     */
+    public static int defaultBudget(int memoryClassMb) {
+        return memoryClassMb * 1024 * 1024 / 8;
+    }
+
+    /**
+     * Busca un bitmap en la caché.
+     *
+     * @param key Clave de la imagen.
+     * @return El bitmap almacenado, o null si no está en caché.
+     */
+    @Nullable
+    public Bitmap get(@NonNull Key key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Busca un bitmap en la caché sin crear una {@link Key}.
+     *
+     * @param resId  Identificador del recurso drawable.
+     * @param width  Ancho destino en píxeles.
+     * @param height Alto destino en píxeles.
+     * @param config Configuración de píxeles utilizada al decodificar.
+     * @return El bitmap almacenado, o null si no está en caché.
+     */
+    @Nullable
+    public Bitmap get(int resId, int width, int height, @NonNull Bitmap.Config config) {
+        synchronized (probe) {
+            probe.set(resId, width, height, config);
+            return cache.get(probe);
+        }
+    }
+
+    /**
+     * Guarda un bitmap en la caché, expulsando los menos usados si se supera el presupuesto.
+     *
+     * @param key    Clave de la imagen.
+     * @param bitmap Bitmap decodificado.
+     */
+    public void put(@NonNull Key key, @NonNull Bitmap bitmap) {
+        cache.put(key, bitmap);
+    }
+
+    /**
+     * Vacía por completo la caché.
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * @return Número de búsquedas que encontraron el bitmap en caché.
+     */
+    public int getHitCount() {
+        return cache.hitCount();
+    }
+
+    /**
+     * @return Número de búsquedas que no encontraron el bitmap en caché.
+     */
+    public int getMissCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * @return Número de entradas expulsadas por falta de espacio o por presión de memoria.
+     */
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return Bytes ocupados actualmente por los bitmaps en caché.
+     */
+    public int getSizeBytes() {
+        return cache.size();
+    }
+
+    /**
+     * @return Presupuesto máximo de la caché en bytes.
+     */
+    public int getMaxSizeBytes() {
+        return cache.maxSize();
+    }
+
+    /**
+     * Libera memoria según el nivel de presión indicado por el sistema.
+     *
+     * @param level Nivel de recorte recibido en {@link ComponentCallbacks2#onTrimMemory}.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // La aplicación está cerca de ser eliminada: liberar todo
+            cache.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.trimToSize(cache.maxSize() / 4);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Vacía la caché cuando el sistema se queda sin memoria.
+     */
+    @Override
+    public void onLowMemory() {
+        cache.evictAll();
+    }
+
+    /**
+     * No se necesita ninguna acción al cambiar la configuración.
+     *
+     * @param newConfig Nueva configuración del dispositivo.
+     */
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    /**
+     * Clave de la caché: recurso, tamaño destino y configuración de píxeles.
+     */
+    public static final class Key {
+        // Solo cambian en la clave de consulta de la caché
+        private int resId;
+        private int width;
+        private int height;
+        private Bitmap.Config config;
+
+        /**
+         * @param resId  Identificador del recurso drawable.
+         * @param width  Ancho destino en píxeles.
+         * @param height Alto destino en píxeles.
+         * @param config Configuración de píxeles utilizada al decodificar.
+         */
+        public Key(int resId, int width, int height, @NonNull Bitmap.Config config) {
+            set(resId, width, height, config);
+        }
+
+        private void set(int resId, int width, int height, Bitmap.Config config) {
+            this.resId = resId;
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return resId == other.resId && width == other.width
+                    && height == other.height && config == other.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resId;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + config.hashCode();
+            return result;
+        }
+    }
+}
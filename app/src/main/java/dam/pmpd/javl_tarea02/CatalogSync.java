@@ -0,0 +1,242 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sincronización del catálogo con el servidor configurado en {@code BuildConfig.CATALOG_SYNC_URL}.
+ *
+ * <p>Una vez por proceso, cuando la lista ya se ha dibujado, ejecuta {@link CatalogSyncEngine} en
+ * un hilo de baja prioridad. Si se instala una versión nueva, {@link CharacterRepository} deja de
+ * usar los índices anteriores y los {@link Listener} recargan la pantalla en el hilo principal.
+ * Sin dirección configurada no se sincroniza nada, pero se sigue usando la última versión
+ * descargada si la hay.</p>
+ *
+ * <p>Las imágenes descargadas no son recursos, así que reciben identificadores negativos
+ * derivados de la suma de su contenido y se registran en {@link ImageLoader} con su fichero. Al
+ * cambiar la imagen cambia el identificador, y con él la entrada de la caché de miniaturas.</p>
+ *
+ * @author jvillar315
+ */
+public final class CatalogSync {
+
+    static final String TAG = "CatalogSync";
+
+    // Directorio de las versiones descargadas dentro de los ficheros de la aplicación
+    private static final String DIRECTORY = "catalog_sync";
+
+    private static volatile CatalogSync instance;
+
+    private final Context appContext;
+    private final boolean enabled;
+    private final CatalogSyncEngine engine;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+            new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "CatalogSync"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Identificador de imagen asignado a cada suma
+    private final Map<String, Integer> imageIds = new ConcurrentHashMap<>();
+    private volatile CatalogSyncEngine.Installed installed;
+    private volatile boolean installedRead;
+    private volatile CatalogSyncEngine.Result lastResult;
+    private volatile IOException lastError;
+    private volatile long lastDurationMs;
+    // Solo se accede desde el hilo principal
+    private boolean started;
+
+    private CatalogSync(Context context) {
+        this.appContext = context.getApplicationContext();
+        String url = BuildConfig.CATALOG_SYNC_URL;
+        this.enabled = !url.isEmpty();
+        this.engine = new CatalogSyncEngine(new File(appContext.getFilesDir(), DIRECTORY), url,
+                () -> CharacterRepository.mapAsset(appContext.getResources(), CharacterRepository.CATALOG_ASSET));
+    }
+
+    /**
+     * Crea la instancia compartida. No lee nada del disco.
+     *
+     * @param context Contexto de la aplicación.
+     * @return La instancia compartida.
+     */
+    public static CatalogSync init(Context context) {
+        if (instance == null) {
+            synchronized (CatalogSync.class) {
+                if (instance == null) {
+                    instance = new CatalogSync(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param context Cualquier contexto, por si aún no se hubiera inicializado.
+     * @return La instancia compartida.
+     */
+    public static CatalogSync getInstance(Context context) {
+        return init(context);
+    }
+
+    /**
+     * Devuelve la versión descargada en uso, leyéndola del disco la primera vez.
+     *
+     * @return La versión instalada, o null si se usa el catálogo del APK.
+     */
+    @WorkerThread
+    @Nullable
+    public CatalogSyncEngine.Installed installed() {
+        if (!installedRead) {
+            synchronized (this) {
+                if (!installedRead) {
+                    installed = readInstalled();
+                    installedRead = true;
+                }
+            }
+        }
+        return installed;
+    }
+
+    /**
+     * Identificador de la imagen descargada de un personaje, para usar con {@link ImageLoader}
+     * como si fuera un recurso.
+     *
+     * @param installed Versión instalada.
+     * @param id        Identificador del personaje.
+     * @return Un identificador negativo, o 0 si la versión no trae imagen para ese personaje.
+     */
+    @WorkerThread
+    public int imageFor(@NonNull CatalogSyncEngine.Installed installed, @NonNull String id) {
+        String hash = installed.getImageHashes().get(id);
+        if (hash == null) {
+            return 0;
+        }
+        Integer imageId = imageIds.get(hash);
+        if (imageId == null) {
+            imageId = (int) Long.parseLong(hash.substring(0, 8), 16) | Integer.MIN_VALUE;
+            ImageLoader.getInstance(appContext).registerFile(imageId, installed.imageFile(hash));
+            imageIds.put(hash, imageId);
+        }
+        return imageId;
+    }
+
+    /**
+     * Lanza la sincronización en segundo plano si hay servidor configurado y no se ha lanzado ya
+     * en este proceso.
+     */
+    @MainThread
+    public void syncOnce() {
+        if (!enabled || started) {
+            return;
+        }
+        started = true;
+        executor.execute(this::sync);
+    }
+
+    /**
+     * Registra un receptor de versiones nuevas del catálogo.
+     *
+     * @param listener Receptor, llamado en el hilo principal.
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Elimina un receptor de versiones nuevas del catálogo.
+     *
+     * @param listener Receptor a eliminar.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Escribe el estado de la sincronización.
+     *
+     * @param writer Destino del resumen.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        CatalogSyncEngine.Installed current = installed;
+        writer.println("Sincronización del catálogo (" + (enabled ? BuildConfig.CATALOG_SYNC_URL : "desactivada") + ")");
+        writer.println("  versión=" + (current != null ? current.getVersion() : "APK"));
+        CatalogSyncEngine.Result result = lastResult;
+        if (result != null) {
+            writer.println("  última: " + result + " en " + lastDurationMs + " ms");
+        }
+        IOException error = lastError;
+        if (error != null) {
+            writer.println("  error: " + error.getMessage());
+        }
+        writer.flush();
+    }
+
+    @WorkerThread
+    private void sync() {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            CatalogSyncEngine.Result result = engine.sync();
+            lastResult = result;
+            lastError = null;
+            if (result.isUpdated()) {
+                synchronized (this) {
+                    installed = readInstalled();
+                    installedRead = true;
+                }
+                CharacterRepository.getInstance().onCatalogUpdated();
+                mainHandler.post(() -> {
+                    SearchRepository.getInstance().invalidate();
+                    for (Listener listener : listeners) {
+                        listener.onCatalogUpdated();
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // Se conserva la versión instalada; se reintentará en el próximo arranque
+            lastError = e;
+            Log.w(TAG, "No se pudo sincronizar el catálogo", e);
+        } finally {
+            lastDurationMs = SystemClock.elapsedRealtime() - start;
+        }
+    }
+
+    private CatalogSyncEngine.Installed readInstalled() {
+        try {
+            return engine.installed();
+        } catch (IOException e) {
+            Log.w(TAG, "No se puede leer la versión descargada del catálogo", e);
+            return null;
+        }
+    }
+
+    /**
+     * Receptor de versiones nuevas del catálogo.
+     */
+    public interface Listener {
+        /**
+         * Método llamado en el hilo principal cuando se ha instalado una versión nueva; los
+         * índices pedidos a partir de ahora a {@link CharacterRepository} ya la usan.
+         */
+        void onCatalogUpdated();
+    }
+}
@@ -0,0 +1,633 @@
+package dam.pmpd.javl_tarea02;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sincroniza el catálogo de personajes con un servidor, descargando solo lo que ha cambiado.
+ *
+ * <p>El servidor publica un manifiesto de texto con la versión actual del catálogo, la suma
+ * SHA-256 y el tamaño del catálogo completo y, si la versión instalada es reciente, de un delta
+ * con solo los personajes nuevos o modificados. El delta es a su vez un {@link BinaryCatalog}, que
+ * se combina con el catálogo instalado (o con el incluido en el APK) manteniendo el orden; el
+ * resultado debe coincidir byte a byte con el catálogo completo del manifiesto y, si no coincide,
+ * se descarga el completo. Las imágenes se identifican por la suma de su contenido, de modo que
+ * solo se descargan las que aún no están en el dispositivo.</p>
+ *
+ * <p>Cada descarga pasa directamente de la red al fichero a través del resumen SHA-256, sin
+ * guardarse entera en memoria, y se descarta si su tamaño o su suma no son los anunciados. La
+ * versión nueva se prepara en un directorio aparte y se activa al final renombrando el fichero
+ * {@value #CURRENT}, así que un fallo a mitad deja la versión anterior intacta.</p>
+ *
+ * <p>Formato del manifiesto, una entrada por línea:</p>
+ * <pre>
+ * catalog-sync 1
+ * version &lt;n&gt;
+ * full &lt;sha256&gt; &lt;bytes&gt;
+ * delta &lt;versión base&gt; &lt;sha256&gt; &lt;bytes&gt;   (opcional)
+ * removed &lt;id&gt;                           (una por personaje eliminado desde la base)
+ * image &lt;id&gt; &lt;sha256&gt; &lt;bytes&gt;           (una por personaje con imagen descargable)
+ * </pre>
+ *
+ * <p>Esta clase no depende de Android y puede probarse en la JVM contra un servidor local.</p>
+ *
+ * @author jvillar315
+ */
+public final class CatalogSyncEngine {
+
+    static final String MANIFEST_HEADER = "catalog-sync 1";
+    static final String CURRENT = "current";
+    static final String CATALOG_FILE = "catalog.bin";
+    static final String IMAGES_FILE = "images.txt";
+    static final String IMAGES_DIR = "images";
+
+    private static final String STAGING_DIR = "staging";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int TIMEOUT_MS = 15_000;
+
+    private final File directory;
+    private final String baseUrl;
+    private final Base bundled;
+
+    /**
+     * @param directory Directorio privado donde se guardan las versiones descargadas.
+     * @param baseUrl   Dirección del servidor; las rutas del protocolo se resuelven a partir de ella.
+     * @param bundled   Catálogo incluido en el APK, base del primer delta.
+     */
+    public CatalogSyncEngine(File directory, String baseUrl, Base bundled) {
+        this.directory = directory;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.bundled = bundled;
+    }
+
+    /**
+     * @return La versión instalada, o null si se usa el catálogo incluido en el APK.
+     * @throws IOException Si no se puede leer la lista de imágenes de la versión instalada.
+     */
+    public synchronized Installed installed() throws IOException {
+        int version = currentVersion();
+        if (version <= 0) {
+            return null;
+        }
+        File versionDir = versionDir(version);
+        return new Installed(version, new File(versionDir, CATALOG_FILE),
+                readImages(new File(versionDir, IMAGES_FILE)), new File(directory, IMAGES_DIR));
+    }
+
+    /**
+     * Descarga e instala la última versión del catálogo si es distinta de la instalada.
+     *
+     * @return Resumen de lo transferido.
+     * @throws IOException Si falla la red, una suma de comprobación o la escritura en disco. La
+     *                     versión instalada no cambia.
+     */
+    public synchronized Result sync() throws IOException {
+        int from = currentVersion();
+        Transfer transfer = new Transfer();
+        Manifest manifest;
+        try (InputStream in = transfer.open("manifest?since=" + from)) {
+            manifest = Manifest.read(in);
+        }
+        long fullDownload = manifest.fullBytes;
+        for (ImageEntry image : manifest.images.values()) {
+            fullDownload += image.bytes;
+        }
+        if (manifest.version == from) {
+            return new Result(from, from, transfer.bytes, fullDownload, false, 0);
+        }
+
+        File staging = new File(directory, STAGING_DIR);
+        deleteRecursively(staging);
+        if (!staging.mkdirs()) {
+            throw new IOException("No se puede crear " + staging);
+        }
+        try {
+            File staged = new File(staging, CATALOG_FILE);
+            boolean usedDelta = manifest.deltaHash != null && manifest.deltaBase == from
+                    && applyDelta(from, manifest, transfer, staging, staged);
+            if (!usedDelta) {
+                download(transfer, "full/" + manifest.version + ".bin", manifest.fullHash, manifest.fullBytes, staged);
+            }
+            // El catálogo descargado debe poder abrirse antes de activarlo
+            BinaryCatalog.open(map(staged));
+
+            int imagesDownloaded = downloadImages(transfer, manifest);
+            writeImages(new File(staging, IMAGES_FILE), manifest.images);
+            install(from, manifest.version, staging);
+            return new Result(from, manifest.version, transfer.bytes, fullDownload, usedDelta, imagesDownloaded);
+        } finally {
+            deleteRecursively(staging);
+        }
+    }
+
+    /**
+     * Descarga el delta y lo combina con la versión instalada.
+     *
+     * @return false si el resultado no coincide con el catálogo completo y hay que descargarlo.
+     */
+    private boolean applyDelta(int from, Manifest manifest, Transfer transfer, File staging, File staged)
+            throws IOException {
+        File delta = new File(staging, "delta.bin");
+        download(transfer, "delta/" + from + "-" + manifest.version + ".bin",
+                manifest.deltaHash, manifest.deltaBytes, delta);
+        BinaryCatalog base = BinaryCatalog.open(from > 0 ? map(new File(versionDir(from), CATALOG_FILE)) : bundled.open());
+        byte[] merged = merge(base, BinaryCatalog.open(map(delta)), manifest.removed);
+        deleteRecursively(delta);
+        if (merged.length != manifest.fullBytes || !hex(sha256().digest(merged)).equals(manifest.fullHash)) {
+            return false;
+        }
+        try (FileOutputStream out = new FileOutputStream(staged)) {
+            out.write(merged);
+            out.getFD().sync();
+        }
+        return true;
+    }
+
+    /**
+     * Combina un catálogo con los cambios de un delta: los personajes existentes conservan su
+     * posición con los textos del delta si han cambiado, los eliminados desaparecen y los nuevos
+     * se añaden al final. Los idiomas que solo tenga uno de los dos se completan con los textos
+     * del idioma más parecido del otro.
+     *
+     * @param base    Catálogo de partida.
+     * @param changes Personajes nuevos o modificados.
+     * @param removed Identificadores eliminados.
+     * @return El contenido del catálogo combinado.
+     */
+    static byte[] merge(BinaryCatalog base, BinaryCatalog changes, Set<String> removed) {
+        List<String> tags = new ArrayList<>();
+        for (int locale = 0; locale < base.localeCount(); locale++) {
+            tags.add(base.localeTag(locale));
+        }
+        for (int locale = 0; locale < changes.localeCount(); locale++) {
+            if (!tags.contains(changes.localeTag(locale))) {
+                tags.add(changes.localeTag(locale));
+            }
+        }
+
+        // Origen de cada fila: posición >= 0 en la base o -(posición + 1) en el delta
+        List<String> ids = new ArrayList<>();
+        List<Integer> sources = new ArrayList<>();
+        for (int i = 0; i < base.size(); i++) {
+            String id = base.id(i);
+            if (!removed.contains(id)) {
+                int changed = changes.positionOf(id);
+                ids.add(id);
+                sources.add(changed >= 0 ? -(changed + 1) : i);
+            }
+        }
+        for (int i = 0; i < changes.size(); i++) {
+            String id = changes.id(i);
+            if (base.positionOf(id) < 0 && !removed.contains(id)) {
+                ids.add(id);
+                sources.add(-(i + 1));
+            }
+        }
+
+        BinaryCatalog.Writer writer = new BinaryCatalog.Writer(ids.toArray(new String[0]));
+        String[][] fields = new String[BinaryCatalog.FIELDS][ids.size()];
+        for (String tag : tags) {
+            int baseLocale = base.findLocale(tag);
+            int changesLocale = changes.findLocale(tag);
+            for (int row = 0; row < ids.size(); row++) {
+                int source = sources.get(row);
+                for (int field = 0; field < BinaryCatalog.FIELDS; field++) {
+                    fields[field][row] = source >= 0
+                            ? base.text(baseLocale, source, field)
+                            : changes.text(changesLocale, -source - 1, field);
+                }
+            }
+            writer.addLocale(tag, fields[BinaryCatalog.FIELD_NAME],
+                    fields[BinaryCatalog.FIELD_DESCRIPTION], fields[BinaryCatalog.FIELD_ABILITIES]);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Descarga las imágenes del manifiesto que aún no están guardadas.
+     *
+     * @return Número de imágenes descargadas.
+     */
+    private int downloadImages(Transfer transfer, Manifest manifest) throws IOException {
+        File imagesDir = new File(directory, IMAGES_DIR);
+        if (!imagesDir.isDirectory() && !imagesDir.mkdirs()) {
+            throw new IOException("No se puede crear " + imagesDir);
+        }
+        Set<String> done = new HashSet<>();
+        for (ImageEntry image : manifest.images.values()) {
+            File target = new File(imagesDir, image.hash);
+            // Varios personajes pueden compartir imagen
+            if (target.exists() || !done.add(image.hash)) {
+                continue;
+            }
+            File partial = new File(imagesDir, image.hash + ".part");
+            download(transfer, "images/" + image.hash, image.hash, image.bytes, partial);
+            if (!partial.renameTo(target)) {
+                throw new IOException("No se puede guardar " + target);
+            }
+        }
+        return done.size();
+    }
+
+    /**
+     * Mueve la versión preparada a su directorio, la activa y borra lo que ya no se usa.
+     */
+    private void install(int from, int version, File staging) throws IOException {
+        File versionDir = versionDir(version);
+        deleteRecursively(versionDir);
+        if (!staging.renameTo(versionDir)) {
+            throw new IOException("No se puede instalar " + versionDir);
+        }
+        File pointer = new File(directory, CURRENT + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(pointer)) {
+            out.write(Integer.toString(version).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!pointer.renameTo(new File(directory, CURRENT))) {
+            throw new IOException("No se puede activar la versión " + version);
+        }
+
+        // Se conserva la versión anterior, que puede seguir proyectada en memoria hasta recargar
+        Set<String> keep = new HashSet<>();
+        keep.add(versionDir.getName());
+        keep.add(versionDir(from).getName());
+        keep.add(IMAGES_DIR);
+        Set<String> referenced = new HashSet<>(readImages(new File(versionDir, IMAGES_FILE)).values());
+        if (from > 0) {
+            referenced.addAll(readImages(new File(versionDir(from), IMAGES_FILE)).values());
+        }
+        File[] entries = directory.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                if (!keep.contains(entry.getName()) && entry.getName().startsWith("v")) {
+                    deleteRecursively(entry);
+                }
+            }
+        }
+        File[] images = new File(directory, IMAGES_DIR).listFiles();
+        if (images != null) {
+            for (File image : images) {
+                if (!referenced.contains(image.getName())) {
+                    deleteRecursively(image);
+                }
+            }
+        }
+    }
+
+    /**
+     * Descarga un fichero comprobando su tamaño y su suma SHA-256 mientras se escribe.
+     */
+    private static void download(Transfer transfer, String path, String hash, long bytes, File target)
+            throws IOException {
+        MessageDigest digest = sha256();
+        long total = 0;
+        try (InputStream in = transfer.open(path);
+             FileOutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > bytes) {
+                    break;
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+            out.getFD().sync();
+        }
+        if (total != bytes || !hex(digest.digest()).equals(hash)) {
+            deleteRecursively(target);
+            throw new IOException("La descarga de " + path + " no coincide con el manifiesto");
+        }
+    }
+
+    private int currentVersion() {
+        File pointer = new File(directory, CURRENT);
+        if (!pointer.isFile()) {
+            return 0;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(pointer), StandardCharsets.UTF_8))) {
+            int version = Integer.parseInt(reader.readLine().trim());
+            // Una versión cuyo catálogo no existe se trata como si no hubiera ninguna
+            return new File(versionDir(version), CATALOG_FILE).isFile() ? version : 0;
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private File versionDir(int version) {
+        return new File(directory, "v" + version);
+    }
+
+    private static Map<String, String> readImages(File file) throws IOException {
+        Map<String, String> images = new HashMap<>();
+        if (!file.isFile()) {
+            return images;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    images.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return images;
+    }
+
+    private static void writeImages(File file, Map<String, ImageEntry> images) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            for (Map.Entry<String, ImageEntry> entry : images.entrySet()) {
+                writer.write(entry.getKey() + " " + entry.getValue().hash + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Proyecta un fichero en memoria; la proyección sigue siendo válida al cerrar el canal.
+     */
+    static ByteBuffer map(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+            result[2 * i + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Origen del catálogo incluido en el APK.
+     */
+    public interface Base {
+        /**
+         * @return El contenido del catálogo incluido.
+         * @throws IOException Si no se puede leer.
+         */
+        ByteBuffer open() throws IOException;
+    }
+
+    /**
+     * Versión del catálogo instalada en el dispositivo.
+     */
+    public static final class Installed {
+        private final int version;
+        private final File catalogFile;
+        private final Map<String, String> imageHashes;
+        private final File imagesDir;
+
+        Installed(int version, File catalogFile, Map<String, String> imageHashes, File imagesDir) {
+            this.version = version;
+            this.catalogFile = catalogFile;
+            this.imageHashes = Collections.unmodifiableMap(imageHashes);
+            this.imagesDir = imagesDir;
+        }
+
+        /**
+         * @return Número de versión.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * @return El fichero del {@link BinaryCatalog}.
+         */
+        public File getCatalogFile() {
+            return catalogFile;
+        }
+
+        /**
+         * @return Suma SHA-256 de la imagen descargada de cada personaje que tiene una.
+         */
+        public Map<String, String> getImageHashes() {
+            return imageHashes;
+        }
+
+        /**
+         * @param hash Suma de una imagen de {@link #getImageHashes()}.
+         * @return El fichero con esa imagen.
+         */
+        public File imageFile(String hash) {
+            return new File(imagesDir, hash);
+        }
+    }
+
+    /**
+     * Resumen de una sincronización.
+     */
+    public static final class Result {
+        public final int fromVersion;
+        public final int toVersion;
+        // Bytes recibidos del servidor, incluido el manifiesto
+        public final long bytesTransferred;
+        // Bytes que habría costado descargar el catálogo completo y todas sus imágenes
+        public final long fullDownloadBytes;
+        public final boolean usedDelta;
+        public final int imagesDownloaded;
+
+        Result(int fromVersion, int toVersion, long bytesTransferred, long fullDownloadBytes,
+               boolean usedDelta, int imagesDownloaded) {
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+            this.bytesTransferred = bytesTransferred;
+            this.fullDownloadBytes = fullDownloadBytes;
+            this.usedDelta = usedDelta;
+            this.imagesDownloaded = imagesDownloaded;
+        }
+
+        /**
+         * @return true si se ha instalado una versión nueva.
+         */
+        public boolean isUpdated() {
+            return toVersion != fromVersion;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "v%d -> v%d: %d de %d bytes (%.1f%%)%s, %d imágenes",
+                    fromVersion, toVersion, bytesTransferred, fullDownloadBytes,
+                    fullDownloadBytes == 0 ? 0 : 100.0 * bytesTransferred / fullDownloadBytes,
+                    usedDelta ? " con delta" : "", imagesDownloaded);
+        }
+    }
+
+    /**
+     * Manifiesto publicado por el servidor.
+     */
+    private static final class Manifest {
+        int version;
+        String fullHash;
+        long fullBytes;
+        int deltaBase = -1;
+        String deltaHash;
+        long deltaBytes;
+        final Set<String> removed = new HashSet<>();
+        final Map<String, ImageEntry> images = new LinkedHashMap<>();
+
+        static Manifest read(InputStream in) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            if (!MANIFEST_HEADER.equals(reader.readLine())) {
+                throw new IOException("Manifiesto no reconocido");
+            }
+            Manifest manifest = new Manifest();
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.trim().split(" ");
+                    switch (parts[0]) {
+                        case "version":
+                            manifest.version = Integer.parseInt(parts[1]);
+                            break;
+                        case "full":
+                            manifest.fullHash = parts[1];
+                            manifest.fullBytes = Long.parseLong(parts[2]);
+                            break;
+                        case "delta":
+                            manifest.deltaBase = Integer.parseInt(parts[1]);
+                            manifest.deltaHash = parts[2];
+                            manifest.deltaBytes = Long.parseLong(parts[3]);
+                            break;
+                        case "removed":
+                            manifest.removed.add(parts[1]);
+                            break;
+                        case "image":
+                            checkHash(parts[2]);
+                            manifest.images.put(parts[1], new ImageEntry(parts[2], Long.parseLong(parts[3])));
+                            break;
+                        default:
+                            // Entradas de versiones posteriores del protocolo
+                            break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Manifiesto incorrecto", e);
+            }
+            if (manifest.version <= 0 || manifest.fullHash == null) {
+                throw new IOException("Manifiesto incompleto");
+            }
+            return manifest;
+        }
+
+        /**
+         * Las sumas se usan como nombres de fichero y no pueden contener rutas.
+         */
+        private static void checkHash(String hash) {
+            if (!hash.matches("[0-9a-f]{64}")) {
+                throw new IllegalArgumentException("Suma incorrecta: " + hash);
+            }
+        }
+    }
+
+    private static final class ImageEntry {
+        final String hash;
+        final long bytes;
+
+        ImageEntry(String hash, long bytes) {
+            this.hash = hash;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Peticiones de una sincronización, con la cuenta de los bytes recibidos.
+     */
+    private final class Transfer {
+        long bytes;
+
+        InputStream open(String path) throws IOException {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                throw new IOException("HTTP " + code + " en " + path);
+            }
+            return new FilterInputStream(connection.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int value = super.read();
+                    if (value >= 0) {
+                        bytes++;
+                    }
+                    return value;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        bytes += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        connection.disconnect();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -6,30 +6,62 @@ package dam.pmpd.javl_tarea02;
  * <p>Esta clase se utiliza para encapsular la información relacionada con un personaje,
  * como su nombre, un recurso de imagen asociado, su descripción y sus habilidades.</p>
  *
+ * <p>La descripción y las habilidades pueden cargarse bajo demanda a través de un
+ * {@link DetailsSource}, de forma que la lista solo necesita el identificador, el nombre
+ * y la imagen de cada personaje.</p>
+ *
  * @author jvillar315
  */
 public class Character {
 
+    private final String id;
     private final String name;
     private final int imageResource;
-    private final String description;
-    private final String abilities;
+    private final DetailsSource detailsSource;
+    private String description;
+    private String abilities;
 
     /**
      * Constructor para inicializar un personaje con su nombre, imagen, descripción y habilidades.
      *
+     * @param id            Identificador estable del personaje.
      * @param name          El nombre del personaje.
      * @param imageResource El recurso de imagen asociado al personaje.
      * @param description   La descripción del personaje.
      * @param abilities     Las habilidades del personaje.
      */
-    public Character(String name, int imageResource, String description, String abilities) {
+    public Character(String id, String name, int imageResource, String description, String abilities) {
+        this.id = id;
         this.name = name;
         this.imageResource = imageResource;
+        this.detailsSource = null;
         this.description = description;
         this.abilities = abilities;
     }
 
+    /**
+     * Constructor para un personaje cuya descripción y habilidades se cargan bajo demanda.
+     *
+     * @param id            Identificador estable del personaje.
+     * @param name          El nombre del personaje.
+     * @param imageResource El recurso de imagen asociado al personaje.
+     * @param detailsSource Origen del que obtener la descripción y las habilidades.
+     */
+    public Character(String id, String name, int imageResource, DetailsSource detailsSource) {
+        this.id = id;
+        this.name = name;
+        this.imageResource = imageResource;
+        this.detailsSource = detailsSource;
+    }
+
+    /**
+     *
+     * @return El identificador estable del personaje.
+     */
+    public String getId() {
+        return id;
+    }
+
     /**
      *
      * @return El nombre del personaje.
@@ -50,7 +82,10 @@ public class Character {
      *
      * @return La descripción del personaje.
      */
-    public String getDescription() {
+    public synchronized String getDescription() {
+        if (description == null && detailsSource != null) {
+            description = detailsSource.loadDescription(id);
+        }
         return description;
     }
 
@@ -58,7 +93,75 @@ public class Character {
      *
      * @return Las habilidades del personaje.
      */
-    public String getAbilities() {
+    public synchronized String getAbilities() {
+        if (abilities == null && detailsSource != null) {
+            abilities = detailsSource.loadAbilities(id);
+        }
         return abilities;
     }
+
+    /**
+     * Devuelve un identificador numérico estable derivado de {@link #getId()}.
+     *
+     * <p>Se utiliza como id estable en el RecyclerView; se calcula con FNV-1a de 64 bits,
+     * por lo que es el mismo en cada ejecución y para cualquier idioma.</p>
+     *
+     * @return El identificador numérico del personaje.
+     */
+    public long getStableId() {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Dos personajes son iguales si tienen el mismo identificador, nombre e imagen.
+     *
+     * <p>Los textos largos no se comparan porque se cargan bajo demanda y dependen del
+     * mismo identificador e idioma que el nombre.</p>
+     *
+     * @param o Objeto a comparar.
+     * @return true si representan el mismo contenido visible en la lista.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Character)) {
+            return false;
+        }
+        Character other = (Character) o;
+        return imageResource == other.imageResource
+                && id.equals(other.id)
+                && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = id.hashCode();
+        result = 31 * result + name.hashCode();
+        result = 31 * result + imageResource;
+        return result;
+    }
+
+    /**
+     * Origen de los textos largos de un personaje, consultado solo cuando se necesitan.
+     */
+    public interface DetailsSource {
+        /**
+         * @param id Identificador del personaje.
+         * @return La descripción del personaje.
+         */
+        String loadDescription(String id);
+
+        /**
+         * @param id Identificador del personaje.
+         * @return Las habilidades del personaje.
+         */
+        String loadAbilities(String id);
+    }
 }
@@ -0,0 +1,405 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.LruCache;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repositorio del catálogo de personajes.
+ *
+ * <p>Los textos del catálogo se leen del asset {@value #CATALOG_ASSET}, un {@link BinaryCatalog}
+ * generado al compilar a partir de {@code arrays.xml} y los {@code strings.xml} de cada idioma. El
+ * asset se guarda sin comprimir y se proyecta en memoria una sola vez. El índice de cada idioma
+ * copia los identificadores, los nombres y las imágenes en una {@link CharacterTable} por
+ * columnas, de la que la lista se vincula sin crear objetos; la descripción y las habilidades no
+ * se decodifican hasta que alguien las solicita.</p>
+ *
+ * <p>Se conserva un índice por idioma, de modo que cambiar de idioma con un índice ya
+ * precargado consiste solo en entregar otra lista al adaptador.</p>
+ *
+ * <p>Si {@link CatalogSync} ha descargado una versión más reciente del catálogo se usa esa en
+ * lugar del asset. Las imágenes se buscan por identificador: primero la descargada y, si no hay,
+ * el recurso que el APK trae para ese personaje.</p>
+ *
+ * @author jvillar315
+ */
+public class CharacterRepository {
+
+    static final String CATALOG_ASSET = "catalog.bin";
+
+    private static volatile CharacterRepository instance;
+
+    // Índices ya construidos, uno por idioma
+    private final Map<Locale, Index> indexesByLocale = new ConcurrentHashMap<>();
+    // Catálogo binario compartido por los índices de todos los idiomas
+    private Catalog catalog;
+    // Catálogo incluido en el APK, cuyas posiciones corresponden a las de character_images
+    private BinaryCatalog bundled;
+    private int[] bundledImages;
+    private volatile CatalogSync catalogSync;
+
+    private CharacterRepository() {
+    }
+
+    /**
+     * @return La instancia compartida del repositorio.
+     */
+    public static CharacterRepository getInstance() {
+        if (instance == null) {
+            synchronized (CharacterRepository.class) {
+                if (instance == null) {
+                    instance = new CharacterRepository();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Indica de dónde obtener la versión descargada del catálogo. Sin llamar a este método solo
+     * se usa el catálogo incluido en el APK.
+     *
+     * @param catalogSync Sincronización del catálogo.
+     */
+    public void setCatalogSync(@Nullable CatalogSync catalogSync) {
+        this.catalogSync = catalogSync;
+    }
+
+    /**
+     * Descarta los índices construidos para que los siguientes usen la versión del catálogo
+     * recién instalada. Los índices entregados siguen funcionando con la versión anterior.
+     */
+    @WorkerThread
+    public void onCatalogUpdated() {
+        synchronized (this) {
+            catalog = null;
+            indexesByLocale.clear();
+        }
+    }
+
+    /**
+     * Carga el índice del catálogo en el carril de disco y lo entrega en el hilo principal.
+     *
+     * <p>Si ya existe un índice para el mismo idioma se entrega inmediatamente.</p>
+     *
+     * @param resources Recursos con el idioma en el que se mostrará el catálogo.
+     * @param scope     Ámbito de quien lo pide; si se cierra antes, el índice no se entrega.
+     * @param callback  Receptor del índice cargado.
+     */
+    @MainThread
+    public void loadIndex(@NonNull final Resources resources, @NonNull TaskScheduler.Scope scope,
+                          @NonNull final Callback callback) {
+        Index cached = getCachedIndex(resources);
+        if (cached != null) {
+            callback.onIndexLoaded(cached);
+            return;
+        }
+        scope.submit(TaskScheduler.Lane.DISK, () -> loadIndexSync(resources), callback::onIndexLoaded);
+    }
+
+    /**
+     * Devuelve el índice en memoria si corresponde al idioma de los recursos indicados.
+     *
+     * @param resources Recursos con el idioma deseado.
+     * @return El índice en caché, o null si no hay ninguno para ese idioma.
+     */
+    @Nullable
+    public Index getCachedIndex(@NonNull Resources resources) {
+        return indexesByLocale.get(localeOf(resources));
+    }
+
+    /**
+     * Construye con baja prioridad el índice de otro idioma para tenerlo listo antes de cambiar.
+     *
+     * @param context  Contexto de la aplicación.
+     * @param language Código del idioma a precargar.
+     */
+    public void preloadIndex(@NonNull final Context context, @NonNull final String language) {
+        AppScheduler.get().globalScope().execute(TaskScheduler.Lane.INDEX,
+                () -> loadIndexSync(LocaleHelper.localizedResources(context, language)));
+    }
+
+    /**
+     * Construye el índice del catálogo de forma síncrona.
+     *
+     * @param resources Recursos con el idioma en el que se resolverán los nombres.
+     * @return El índice construido.
+     */
+    @WorkerThread
+    public Index loadIndexSync(@NonNull Resources resources) {
+        Index cached = getCachedIndex(resources);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Con el repositorio bloqueado el índice no puede mezclarse con una versión que se está
+        // descartando
+        synchronized (this) {
+            cached = getCachedIndex(resources);
+            if (cached != null) {
+                return cached;
+            }
+            Catalog current = openCatalog(resources);
+            Index index = new Index(resources, current.binary, current.images, current.version);
+            indexesByLocale.put(index.locale, index);
+            return index;
+        }
+    }
+
+    /**
+     * Abre el catálogo binario la primera vez que se necesita: la versión descargada si la hay o,
+     * si no, el asset.
+     */
+    @WorkerThread
+    private synchronized Catalog openCatalog(Resources resources) {
+        Catalog result = catalog;
+        if (result != null) {
+            return result;
+        }
+        try {
+            if (bundled == null) {
+                bundled = BinaryCatalog.open(mapAsset(resources, CATALOG_ASSET));
+                bundledImages = readResourceIds(resources, R.array.character_images, bundled.size());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("No se puede leer el catálogo " + CATALOG_ASSET, e);
+        }
+
+        CatalogSync sync = catalogSync;
+        CatalogSyncEngine.Installed installed = sync != null ? sync.installed() : null;
+        BinaryCatalog binary = bundled;
+        int version = 0;
+        if (installed != null) {
+            try {
+                binary = BinaryCatalog.open(CatalogSyncEngine.map(installed.getCatalogFile()));
+                version = installed.getVersion();
+            } catch (IOException e) {
+                // Se sigue con el asset; la próxima sincronización volverá a descargar el catálogo
+                installed = null;
+            }
+        }
+
+        int[] images = new int[binary.size()];
+        for (int i = 0; i < images.length; i++) {
+            String id = binary.id(i);
+            int image = installed != null ? sync.imageFor(installed, id) : 0;
+            if (image == 0) {
+                int position = binary == bundled ? i : bundled.positionOf(id);
+                image = position >= 0 ? bundledImages[position] : R.drawable.logo;
+            }
+            images[i] = image;
+        }
+        result = new Catalog(binary, images, version);
+        catalog = result;
+        return result;
+    }
+
+    /**
+     * Proyecta en memoria un asset guardado sin comprimir. Si el asset está comprimido no tiene
+     * descriptor propio y se copia entero en memoria.
+     */
+    static ByteBuffer mapAsset(Resources resources, String name) throws IOException {
+        try (AssetFileDescriptor descriptor = resources.getAssets().openFd(name);
+             FileInputStream stream = descriptor.createInputStream();
+             FileChannel channel = stream.getChannel()) {
+            // La proyección sigue siendo válida después de cerrar el canal
+            return channel.map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+        } catch (IOException e) {
+            try (InputStream in = resources.getAssets().open(name)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return ByteBuffer.wrap(out.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Lee un array tipado de referencias a recursos como un array de identificadores.
+     */
+    private static int[] readResourceIds(Resources resources, int arrayRes, int length) {
+        TypedArray typedArray = resources.obtainTypedArray(arrayRes);
+        try {
+            int[] result = new int[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = typedArray.getResourceId(i, 0);
+            }
+            return result;
+        } finally {
+            typedArray.recycle();
+        }
+    }
+
+    private static Locale localeOf(Resources resources) {
+        return resources.getConfiguration().getLocales().get(0);
+    }
+
+    /**
+     * Versión del catálogo en uso con la imagen de cada posición.
+     */
+    private static final class Catalog {
+        final BinaryCatalog binary;
+        final int[] images;
+        final int version;
+
+        Catalog(BinaryCatalog binary, int[] images, int version) {
+            this.binary = binary;
+            this.images = images;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Receptor del índice del catálogo.
+     */
+    public interface Callback {
+        /**
+         * Método llamado en el hilo principal cuando el índice está disponible.
+         *
+         * @param index Índice del catálogo.
+         */
+        void onIndexLoaded(Index index);
+    }
+
+    /**
+     * Índice ligero del catálogo para un idioma concreto.
+     *
+     * <p>Guarda la sección de idioma del {@link BinaryCatalog} para los textos largos y una
+     * {@link CharacterTable} con los datos de la lista. Las imágenes no forman parte del catálogo:
+     * son recursos compilados o ficheros descargados, resueltos por el repositorio.</p>
+     */
+    public static final class Index implements Character.DetailsSource {
+        // Personajes cuyos textos largos se conservan decodificados
+        private static final int RECENT_DETAILS = 32;
+
+        private final Locale locale;
+        private final BinaryCatalog catalog;
+        private final int section;
+        private final CharacterTable table;
+        private final int version;
+        // Descripción y habilidades decodificadas recientemente, por identificador
+        private final LruCache<String, String[]> recentDetails = new LruCache<>(RECENT_DETAILS);
+
+        Index(Resources resources, BinaryCatalog catalog, int[] images, int version) {
+            this.locale = localeOf(resources);
+            this.catalog = catalog;
+            this.version = version;
+            this.section = catalog.findLocale(locale.toLanguageTag());
+            CharacterTable.Builder builder = new CharacterTable.Builder(catalog.size());
+            for (int i = 0; i < catalog.size(); i++) {
+                builder.add(catalog.id(i), catalog.text(section, i, BinaryCatalog.FIELD_NAME), images[i]);
+            }
+            this.table = builder.build(this);
+        }
+
+        /**
+         * @return Idioma de los textos del índice.
+         */
+        public Locale getLocale() {
+            return locale;
+        }
+
+        /**
+         * @return Versión descargada del catálogo, o 0 si es el incluido en el APK.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * @return Los personajes del catálogo como tabla por columnas, lista para el adaptador.
+         */
+        public CharacterTable getTable() {
+            return table;
+        }
+
+        /**
+         * @return Número de personajes del catálogo.
+         */
+        public int size() {
+            return catalog.size();
+        }
+
+        /**
+         * @param id Identificador del personaje.
+         * @return Su posición en el catálogo, o -1 si no existe.
+         */
+        public int positionOf(String id) {
+            return id != null ? catalog.positionOf(id) : -1;
+        }
+
+        /**
+         * Crea el personaje de una posición; sus textos largos se cargan bajo demanda.
+         *
+         * @param position Posición en el catálogo.
+         * @return El personaje correspondiente.
+         */
+        public Character createCharacter(int position) {
+            return table.get(position);
+        }
+
+        /**
+         * Busca un personaje por su identificador.
+         *
+         * @param id Identificador del personaje.
+         * @return El personaje, o null si no forma parte del catálogo.
+         */
+        @Nullable
+        public Character findById(String id) {
+            int position = positionOf(id);
+            return position >= 0 ? createCharacter(position) : null;
+        }
+
+        @Override
+        public String loadDescription(String id) {
+            String[] details = details(id);
+            return details != null ? details[0] : null;
+        }
+
+        @Override
+        public String loadAbilities(String id) {
+            String[] details = details(id);
+            return details != null ? details[1] : null;
+        }
+
+        /**
+         * Decodifica la descripción y las habilidades juntas, ya que se muestran juntas, y las
+         * conserva para las siguientes consultas del mismo personaje.
+         */
+        @Nullable
+        private String[] details(String id) {
+            String[] details = recentDetails.get(id);
+            if (details == null) {
+                int position = positionOf(id);
+                if (position < 0) {
+                    return null;
+                }
+                details = new String[]{
+                        catalog.text(section, position, BinaryCatalog.FIELD_DESCRIPTION),
+                        catalog.text(section, position, BinaryCatalog.FIELD_ABILITIES)};
+                recentDetails.put(id, details);
+            }
+            return details;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dam.pmpd.javl_tarea02;
+
+/**
+ * Lista de personajes respaldada por las filas de una {@link CharacterTable}, como la propia
+ * tabla o los resultados de una búsqueda.
+ *
+ * <p>Permite que {@link SimpleAdapter} vincule cada fila leyendo directamente las columnas de la
+ * tabla, sin crear objetos {@link Character}.</p>
+ *
+ * @author jvillar315
+ */
+public interface CharacterRows {
+
+    /**
+     * @return La tabla que contiene las filas.
+     */
+    CharacterTable getTable();
+
+    /**
+     * @param position Posición en la lista.
+     * @return Fila de la tabla que ocupa esa posición.
+     */
+    int rowAt(int position);
+}
@@ -0,0 +1,255 @@
+package dam.pmpd.javl_tarea02;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Catálogo de personajes almacenado por columnas.
+ *
+ * <p>En lugar de un {@link Character} por fila, con su cabecera de objeto y dos {@link String}
+ * propias, la tabla guarda cada columna en un array primitivo: los identificadores y los nombres
+ * en dos pools de caracteres con sus desplazamientos, y las imágenes en un {@code int[]}. Los
+ * nombres repetidos se guardan una sola vez y cada fila apunta a su entrada del pool. La
+ * descripción y las habilidades no se guardan: la fila es el asa con la que se piden a un
+ * {@link Character.DetailsSource} cuando hacen falta.</p>
+ *
+ * <p>Los accesores por posición ({@link #nameChars()}, {@link #nameStart(int)},
+ * {@link #nameLength(int)}, {@link #imageResource(int)} y {@link #stableId(int)}) no reservan
+ * memoria, de modo que el adaptador puede vincular una fila sin crear objetos. Como lista,
+ * {@link #get(int)} crea un {@link Character} nuevo en cada llamada; solo se usa al comparar
+ * listas o al seleccionar un personaje.</p>
+ *
+ * <p>Con 50.000 personajes de nombres distintos las columnas ocupan unos 75 bytes por fila,
+ * frente a los más de 125 que necesita como mínimo un objeto {@link Character} con sus dos
+ * cadenas (ver {@code CharacterTableTest}). Esta clase no depende de Android y puede probarse en
+ * la JVM.</p>
+ *
+ * @author jvillar315
+ */
+public final class CharacterTable extends AbstractList<Character> implements RandomAccess, CharacterRows {
+
+    private final int size;
+    private final char[] idChars;
+    // Inicio de cada identificador en idChars, más el final del último
+    private final int[] idOffsets;
+    private final char[] nameChars;
+    // Inicio de cada nombre distinto en nameChars, más el final del último
+    private final int[] nameOffsets;
+    // Nombre distinto de cada fila
+    private final int[] nameSlots;
+    private final int[] images;
+    private final Character.DetailsSource details;
+
+    private CharacterTable(Builder builder, Character.DetailsSource details) {
+        this.size = builder.size;
+        this.idChars = builder.idChars.toString().toCharArray();
+        this.idOffsets = Arrays.copyOf(builder.idOffsets, size + 1);
+        this.nameChars = builder.nameChars.toString().toCharArray();
+        this.nameOffsets = Arrays.copyOf(builder.nameOffsets, builder.nameIndexes.size() + 1);
+        this.nameSlots = Arrays.copyOf(builder.nameSlots, size);
+        this.images = Arrays.copyOf(builder.images, size);
+        this.details = details;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Crea un personaje con los datos de una fila; sus textos largos se cargan bajo demanda.
+     *
+     * @param position Posición de la fila.
+     * @return Un personaje nuevo.
+     */
+    @Override
+    public Character get(int position) {
+        checkPosition(position);
+        return new Character(id(position), name(position), images[position], details);
+    }
+
+    /**
+     * @param position Posición de la fila.
+     * @return Identificador del personaje.
+     */
+    public String id(int position) {
+        checkPosition(position);
+        return new String(idChars, idOffsets[position], idOffsets[position + 1] - idOffsets[position]);
+    }
+
+    /**
+     * @param position Posición de la fila.
+     * @return Nombre del personaje.
+     */
+    public String name(int position) {
+        return new String(nameChars, nameStart(position), nameLength(position));
+    }
+
+    /**
+     * Pool compartido de los nombres; no se debe modificar.
+     *
+     * @return Los caracteres de todos los nombres.
+     * @see #nameStart(int)
+     * @see #nameLength(int)
+     */
+    public char[] nameChars() {
+        return nameChars;
+    }
+
+    /**
+     * @param position Posición de la fila.
+     * @return Inicio de su nombre en {@link #nameChars()}.
+     */
+    public int nameStart(int position) {
+        return nameOffsets[nameSlots[position]];
+    }
+
+    /**
+     * @param position Posición de la fila.
+     * @return Longitud de su nombre en {@link #nameChars()}.
+     */
+    public int nameLength(int position) {
+        int slot = nameSlots[position];
+        return nameOffsets[slot + 1] - nameOffsets[slot];
+    }
+
+    /**
+     * @param position Posición de la fila.
+     * @return Identificador del recurso de imagen.
+     */
+    public int imageResource(int position) {
+        return images[position];
+    }
+
+    /**
+     * Calcula el mismo id estable que {@link Character#getStableId()} directamente sobre el pool
+     * de identificadores.
+     *
+     * @param position Posición de la fila.
+     * @return Id estable del personaje.
+     */
+    public long stableId(int position) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = idOffsets[position]; i < idOffsets[position + 1]; i++) {
+            hash ^= idChars[i];
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @param position Posición de la fila.
+     * @return Descripción del personaje, leída en ese momento de su origen.
+     */
+    public String description(int position) {
+        return details != null ? details.loadDescription(id(position)) : null;
+    }
+
+    /**
+     * @param position Posición de la fila.
+     * @return Habilidades del personaje, leídas en ese momento de su origen.
+     */
+    public String abilities(int position) {
+        return details != null ? details.loadAbilities(id(position)) : null;
+    }
+
+    @Override
+    public CharacterTable getTable() {
+        return this;
+    }
+
+    @Override
+    public int rowAt(int position) {
+        return position;
+    }
+
+    /**
+     * @return Bytes que ocupan los arrays de las columnas, contando 16 bytes de cabecera por array.
+     */
+    long columnBytes() {
+        return arrayBytes(idChars.length, java.lang.Character.BYTES) + arrayBytes(idOffsets.length, Integer.BYTES)
+                + arrayBytes(nameChars.length, java.lang.Character.BYTES) + arrayBytes(nameOffsets.length, Integer.BYTES)
+                + arrayBytes(nameSlots.length, Integer.BYTES) + arrayBytes(images.length, Integer.BYTES);
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return 16 + (long) length * elementBytes;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Posición " + position + " fuera de rango");
+        }
+    }
+
+    /**
+     * Constructor de la tabla, fila a fila.
+     */
+    public static final class Builder {
+        private int size;
+        private final StringBuilder idChars = new StringBuilder();
+        private int[] idOffsets;
+        private final StringBuilder nameChars = new StringBuilder();
+        private int[] nameOffsets;
+        private int[] nameSlots;
+        private int[] images;
+        // Posición de cada nombre distinto en el pool
+        private final Map<String, Integer> nameIndexes = new HashMap<>();
+
+        /**
+         * @param expectedSize Número de filas previsto; la tabla crece si se añaden más.
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 1);
+            idOffsets = new int[capacity + 1];
+            nameOffsets = new int[capacity + 1];
+            nameSlots = new int[capacity];
+            images = new int[capacity];
+        }
+
+        /**
+         * Añade una fila al final de la tabla.
+         *
+         * @param id            Identificador del personaje.
+         * @param name          Nombre del personaje.
+         * @param imageResource Recurso de imagen del personaje.
+         * @return Este constructor.
+         */
+        public Builder add(String id, String name, int imageResource) {
+            if (size == images.length) {
+                int capacity = size * 2;
+                idOffsets = Arrays.copyOf(idOffsets, capacity + 1);
+                nameSlots = Arrays.copyOf(nameSlots, capacity);
+                images = Arrays.copyOf(images, capacity);
+            }
+            idChars.append(id);
+            idOffsets[size + 1] = idChars.length();
+
+            Integer slot = nameIndexes.get(name);
+            if (slot == null) {
+                slot = nameIndexes.size();
+                if (slot + 1 == nameOffsets.length) {
+                    nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+                }
+                nameChars.append(name);
+                nameOffsets[slot + 1] = nameChars.length();
+                nameIndexes.put(name, slot);
+            }
+            nameSlots[size] = slot;
+            images[size] = imageResource;
+            size++;
+            return this;
+        }
+
+        /**
+         * @param details Origen de la descripción y las habilidades, o null si no hay.
+         * @return La tabla construida.
+         */
+        public CharacterTable build(Character.DetailsSource details) {
+            return new CharacterTable(this, details);
+        }
+    }
+}
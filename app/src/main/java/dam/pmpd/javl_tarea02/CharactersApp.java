@@ -0,0 +1,33 @@
+package dam.pmpd.javl_tarea02;
+
+import android.app.Application;
+
+/**
+ * Clase de aplicación que inicializa los servicios compartidos al arrancar el proceso.
+ *
+ * <p>Empieza a leer las preferencias en segundo plano lo antes posible, para que estén
+ * disponibles en memoria cuando las pida la primera pantalla, conecta el repositorio del
+ * catálogo con la versión descargada por {@link CatalogSync} y recupera los personajes vistos y
+ * favoritos de {@link UsageStore}.</p>
+ *
+ * @author jvillar315
+ */
+public class CharactersApp extends Application {
+
+    /**
+     * Método llamado al crear el proceso de la aplicación.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Lanzar la lectura asíncrona de las preferencias
+        SettingsStore.init(this);
+
+        // El catálogo descargado, si lo hay, se lee al construir el primer índice
+        CharacterRepository.getInstance().setCatalogSync(CatalogSync.init(this));
+
+        // Recuperar en el carril de disco los personajes vistos y favoritos
+        UsageStore.init(this);
+    }
+}
@@ -0,0 +1,295 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Precarga los detalles de los personajes hacia los que se desplaza la lista.
+ *
+ * <p>Escucha el desplazamiento de la lista y, según el sentido, la velocidad y las filas visibles
+ * (ver {@link PrefetchPlanner}), prepara para las siguientes filas lo mismo que necesitará
+ * {@link DetailsFragment} al abrirlas: la imagen decodificada al tamaño del detalle en la caché de
+ * {@link ImageLoader} y la descripción y las habilidades en la caché del índice del catálogo.</p>
+ *
+ * <p>El trabajo se hace en el carril {@link TaskScheduler.Lane#PREFETCH} de {@link AppScheduler},
+ * cuya cola acotada descarta las peticiones más antiguas cuando llegan otras nuevas. Lo pendiente
+ * se cancela cuando la lista cambia de sentido, cuando cambia su contenido y cuando la aplicación
+ * pasa a segundo plano.</p>
+ *
+ * <p>{@link #onOpened(Character)} anota si el personaje abierto estaba precargado; el resumen de
+ * {@link #dump(PrintWriter)} (con {@code dumpsys activity <paquete>/.MainActivity prefetch})
+ * muestra la tasa de aciertos y las peticiones descartadas, para ajustar cuántas filas se
+ * precargan.</p>
+ *
+ * @author jvillar315
+ */
+public final class DetailPrefetcher extends RecyclerView.OnScrollListener implements ComponentCallbacks2 {
+
+    /**
+     * Filas que se precargan por defecto por delante del borde visible.
+     */
+    public static final int DEFAULT_AHEAD = 4;
+
+    /**
+     * Máximo de filas a precargar: la cola del carril de precarga no admite más.
+     */
+    public static final int MAX_AHEAD = 16;
+
+    // Personajes precargados que se recuerdan para medir los aciertos
+    private static final int WARMED_CAPACITY = 32;
+
+    private final Context appContext;
+    private final SimpleAdapter adapter;
+    private final int imageSize;
+    private final PrefetchPlanner planner;
+    private final int[] plan;
+    private final TaskScheduler.Scope scope = AppScheduler.get().newScope();
+    // Se incrementa al cancelar; las tareas de una generación anterior no hacen nada
+    private final AtomicInteger generation = new AtomicInteger();
+    // Identificadores precargados, del más antiguo al más reciente
+    private final Set<String> warmed = Collections.newSetFromMap(
+            new LinkedHashMap<String, Boolean>(WARMED_CAPACITY, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > WARMED_CAPACITY;
+                }
+            });
+    private RecyclerView recyclerView;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private long opened;
+    private long hits;
+    // Aperturas de personajes precargados y aperturas con la imagen en caché, por cualquier motivo
+    private long prefetchedOpens;
+    private long imageHits;
+
+    /**
+     * @param context Contexto de la actividad.
+     * @param adapter Adaptador de la lista, del que se obtienen los personajes de cada fila.
+     * @param ahead   Filas a precargar por delante del borde visible; se limita al intervalo
+     *                de 0 a {@link #MAX_AHEAD}.
+     */
+    public DetailPrefetcher(@NonNull Context context, @NonNull SimpleAdapter adapter, int ahead) {
+        this.appContext = context.getApplicationContext();
+        this.adapter = adapter;
+        this.imageSize = context.getResources().getDimensionPixelSize(R.dimen.character_detail_size);
+        ahead = Math.max(0, Math.min(ahead, MAX_AHEAD));
+        // Por encima de dos pantallas por segundo el usuario no está eligiendo personaje
+        this.planner = new PrefetchPlanner(ahead, 2f * context.getResources().getDisplayMetrics().heightPixels);
+        this.plan = new int[ahead];
+        appContext.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Empieza a seguir el desplazamiento de una lista.
+     *
+     * @param recyclerView Lista con un {@link LinearLayoutManager} y el adaptador de este objeto.
+     */
+    @MainThread
+    public void attach(@NonNull RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        recyclerView.addOnScrollListener(this);
+    }
+
+    /**
+     * Descarta lo pendiente tras cambiar el contenido de la lista y precarga según las filas que
+     * se muestren ahora.
+     */
+    @MainThread
+    public void onListChanged() {
+        cancel();
+        if (recyclerView != null) {
+            final RecyclerView list = recyclerView;
+            // Las posiciones visibles se conocen tras la siguiente pasada de diseño
+            list.post(() -> schedule(list));
+        }
+    }
+
+    /**
+     * Anota la apertura del detalle de un personaje para la tasa de aciertos. Se debe llamar
+     * antes de vincularlo, ya que al hacerlo la imagen y los textos pasan a la caché.
+     *
+     * @param character Personaje abierto.
+     */
+    @MainThread
+    public void onOpened(@NonNull Character character) {
+        boolean prefetched;
+        synchronized (warmed) {
+            prefetched = warmed.contains(character.getId());
+        }
+        boolean image = ImageLoader.getInstance(appContext)
+                .isCached(character.getImageResource(), imageSize, imageSize);
+        opened++;
+        if (prefetched) {
+            prefetchedOpens++;
+        }
+        if (image) {
+            imageHits++;
+        }
+        // Un acierto es un personaje precargado cuya imagen no se ha expulsado de la caché
+        if (prefetched && image) {
+            hits++;
+        }
+    }
+
+    /**
+     * Cancela las precargas pendientes; la que esté en curso termina sin guardar la imagen si aún
+     * no había empezado a decodificarla.
+     */
+    @MainThread
+    public void cancel() {
+        generation.incrementAndGet();
+        cancelled.addAndGet(scope.cancelAll());
+        planner.reset();
+    }
+
+    /**
+     * Deja de seguir la lista y cancela las precargas pendientes.
+     */
+    @MainThread
+    public void release() {
+        cancel();
+        if (recyclerView != null) {
+            recyclerView.removeOnScrollListener(this);
+            recyclerView = null;
+        }
+        appContext.unregisterComponentCallbacks(this);
+        scope.close();
+    }
+
+    /**
+     * Escribe las métricas de la precarga.
+     *
+     * @param writer Destino del resumen.
+     */
+    @MainThread
+    public void dump(@NonNull PrintWriter writer) {
+        writer.println("Precarga de detalles (" + planner.ahead() + " filas por delante)");
+        writer.println(String.format(Locale.ROOT, "  peticiones=%d completadas=%d canceladas=%d",
+                requested.get(), completed.get(), cancelled.get()));
+        writer.println(String.format(Locale.ROOT,
+                "  aperturas=%d aciertos=%d (%.1f%%) precargadas=%d imagen en caché=%d",
+                opened, hits, opened == 0 ? 0 : 100.0 * hits / opened, prefetchedOpens, imageHits));
+        writer.flush();
+    }
+
+    /**
+     * Borra las métricas acumuladas.
+     */
+    @MainThread
+    public void resetStats() {
+        requested.set(0);
+        completed.set(0);
+        cancelled.set(0);
+        opened = 0;
+        hits = 0;
+        prefetchedOpens = 0;
+        imageHits = 0;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (planner.onScrolled(dy, System.nanoTime())) {
+            cancel();
+        }
+        schedule(recyclerView);
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            planner.onIdle();
+            schedule(recyclerView);
+        }
+    }
+
+    /**
+     * Pide las filas que propone el planificador según las posiciones visibles.
+     */
+    private void schedule(RecyclerView recyclerView) {
+        if (scope.isClosed() || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        List<Character> characters = adapter.getCurrentList();
+        int count = planner.plan(layoutManager.findFirstVisibleItemPosition(),
+                layoutManager.findLastVisibleItemPosition(), characters.size(), plan);
+        for (int i = 0; i < count; i++) {
+            submit(characters.get(plan[i]));
+        }
+    }
+
+    private void submit(final Character character) {
+        final int expected = generation.get();
+        requested.incrementAndGet();
+        scope.submit(TaskScheduler.Lane.PREFETCH, () -> {
+            if (generation.get() != expected) {
+                cancelled.incrementAndGet();
+                return null;
+            }
+            // Los textos se quedan en la caché del índice del que procede el personaje
+            character.getDescription();
+            character.getAbilities();
+            if (generation.get() != expected) {
+                cancelled.incrementAndGet();
+                return null;
+            }
+            ImageLoader.getInstance(appContext).warm(character.getImageResource(), imageSize, imageSize);
+            synchronized (warmed) {
+                warmed.add(character.getId());
+            }
+            completed.incrementAndGet();
+            return null;
+        }, new TaskScheduler.Callback<Object>() {
+            @Override
+            public void onResult(Object result) {
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                // Descartada por el carril al llegar peticiones más recientes, o fallida
+                cancelled.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Cancela la precarga cuando la interfaz deja de estar visible (todos los niveles desde
+     * {@link #TRIM_MEMORY_UI_HIDDEN}) o cuando empieza a faltar memoria.
+     *
+     * @param level Nivel de recorte recibido del sistema.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            cancel();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        cancel();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
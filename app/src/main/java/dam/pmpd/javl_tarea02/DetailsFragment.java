@@ -4,9 +4,11 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
 import androidx.fragment.app.Fragment;
 
 import dam.pmpd.javl_tarea02.databinding.FragmentDetailsBinding;
@@ -15,90 +17,153 @@ import dam.pmpd.javl_tarea02.databinding.FragmentDetailsBinding;
  * Fragmento que muestra los detalles de un personaje.
  *
  * <p>Este fragmento utiliza View Binding para mostrar información como el nombre, imagen,
- * descripción y habilidades de un personaje específico. Recibe los datos a través de argumentos
- * que se configuran mediante el método {@link #newInstance}.</p>
+ * descripción y habilidades de un personaje específico. Solo recibe el identificador del
+ * personaje a través de {@link #newInstance}; el resto de datos se obtiene del
+ * {@link CharacterRepository} compartido, de modo que el estado guardado no depende de la
+ * longitud de los textos.</p>
+ *
+ * <p>El diseño se infla en segundo plano con {@link AsyncLayoutInflater}: la vista del fragmento
+ * es un contenedor vacío al que se añade el contenido cuando está listo. {@link MainActivity}
+ * añade el fragmento oculto en cuanto la lista está dibujada y después lo reutiliza para todos
+ * los personajes con {@link #showCharacter(String)}, que solo vuelve a vincular las vistas.</p>
+ *
+ * <p>La estrella marca o desmarca el personaje como favorito en {@link UsageStore}.</p>
  *
  * @author jvillar315
  */
 public class DetailsFragment extends Fragment {
+
+    // Clave del argumento con el identificador del personaje
+    static final String ARG_CHARACTER_ID = "character_id";
+
+    // Secciones medidas por FrameMonitor
+    private static final FrameMonitor.Section ATTACH_SECTION = FrameMonitor.section("DetailsFragment#attachInflated");
+    private static final FrameMonitor.Section BIND_SECTION = FrameMonitor.section("DetailsFragment#bind");
+
     private FragmentDetailsBinding binding;
+    // Tareas ligadas a la vista actual; se cancelan al destruirla
+    private TaskScheduler.Scope viewScope;
 
     /**
-     * Crea y devuelve la vista jerárquica asociada al fragmento.
+     * Crea un contenedor vacío y lanza el inflado del diseño en segundo plano.
      *
      * @param inflater  El objeto LayoutInflater que se utiliza para inflar el diseño del fragmento.
      * @param container El contenedor al que se agregará el fragmento (puede ser null).
      * @param savedInstanceState Estado previamente guardado del fragmento (puede ser null).
-     * @return La vista inflada y configurada del fragmento.
+     * @return El contenedor que recibirá el diseño inflado.
      */
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        // Inflar el diseño del fragmento con View Binding
-        binding = FragmentDetailsBinding.inflate(inflater, container, false);
-
-        // Obtener los argumentos y asignarlos a las vistas
-        if (getArguments() != null) {
-            String characterName = getArguments().getString("name");
-            int characterImage = getArguments().getInt("image", 0);
-            String characterDescription = getArguments().getString("description");
-            String characterAbilities = getArguments().getString("abilities");
+        final FrameLayout root = new FrameLayout(inflater.getContext());
+        root.setLayoutParams(new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        new AsyncLayoutInflater(inflater.getContext()).inflate(R.layout.fragment_details, root,
+                (view, resid, parent) -> onLayoutInflated(root, view));
+        return root;
+    }
 
-            // Configurar los datos en las vistas
-            binding.nameCharacter.setText(characterName);
-            binding.imageCharacter.setImageResource(characterImage);
-            binding.descriptionCharacter.setText(characterDescription);
-            binding.abilitiesCharacter.setText(characterAbilities);
+    /**
+     * Añade el diseño inflado al contenedor y vincula el personaje, si la vista sigue viva.
+     */
+    private void onLayoutInflated(FrameLayout root, View content) {
+        if (getView() != root) {
+            return;
         }
-
-        return binding.getRoot();
+        long start = ATTACH_SECTION.begin();
+        try {
+            root.addView(content);
+            binding = FragmentDetailsBinding.bind(content);
+            viewScope = AppScheduler.scope(getViewLifecycleOwner());
+        } finally {
+            ATTACH_SECTION.end(start);
+        }
+        refresh();
     }
 
     /**
-     * Crea una nueva instancia de {@link DetailsFragment} con los detalles del personaje.
+     * Crea una nueva instancia de {@link DetailsFragment} para un personaje.
      *
-     * @param name          Nombre del personaje.
-     * @param imageResource Recurso de imagen asociado al personaje.
-     * @param description   Descripción del personaje.
-     * @param abilities     Habilidades del personaje.
+     * @param characterId Identificador del personaje, o null para preparar el fragmento sin
+     *                    contenido hasta que se llame a {@link #showCharacter(String)}.
      * @return Una instancia configurada de {@link DetailsFragment}.
      */
-    public static DetailsFragment newInstance(String name, int imageResource, String description, String abilities) {
+    public static DetailsFragment newInstance(@Nullable String characterId) {
         DetailsFragment fragment = new DetailsFragment();
         Bundle args = new Bundle();
-        args.putString("name", name);
-        args.putInt("image", imageResource);
-        args.putString("description", description);
-        args.putString("abilities", abilities);
+        args.putString(ARG_CHARACTER_ID, characterId);
         fragment.setArguments(args);
         return fragment;
     }
 
     /**
-     * Método llamado después de que la vista jerárquica del fragmento ha sido creada.
+     * Muestra otro personaje reutilizando las vistas ya infladas.
      *
-     * <p>Este método se utiliza para procesar cualquier lógica adicional después de que la
-     * vista ha sido inflada y configurada.</p>
+     * <p>El identificador se guarda en los argumentos para que se conserve al recrear el
+     * fragmento. Si el diseño aún se está inflando, el personaje se vincula al terminar.</p>
      *
-     * @param view               La vista principal del fragmento.
-     * @param savedInstanceState Estado previamente guardado del fragmento (puede ser null).
+     * @param characterId Identificador del personaje.
      */
-    @Override
-    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
-        super.onViewCreated(view, savedInstanceState);
+    public void showCharacter(@NonNull String characterId) {
+        requireArguments().putString(ARG_CHARACTER_ID, characterId);
+        refresh();
+    }
+
+    /**
+     * Vuelve a resolver el personaje y a vincular las vistas, por ejemplo tras un cambio de idioma.
+     */
+    public void refresh() {
+        final String characterId = requireArguments().getString(ARG_CHARACTER_ID);
+        if (binding == null || characterId == null) {
+            return;
+        }
+        // Si la vista se destruye mientras se carga el índice, el ámbito descarta la entrega
+        CharacterRepository.getInstance().loadIndex(getResources(), viewScope, index -> {
+            Character character = index.findById(characterId);
+            if (character != null) {
+                bind(character);
+            }
+        });
+    }
 
-        // Recibir los argumentos enviados y configurar las vistas
-        if (getArguments() != null) {
-            String characterName = getArguments().getString("name");
-            int characterImage = getArguments().getInt("image", 0);
-            String characterDescription = getArguments().getString("description");
-            String characterAbilities = getArguments().getString("abilities");
+    /**
+     * Libera la referencia al binding cuando se destruye la vista.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        binding = null;
+        viewScope = null;
+    }
 
-            // Mostrar los datos en las vistas
-            binding.nameCharacter.setText(characterName);
-            binding.imageCharacter.setImageResource(characterImage);
-            binding.descriptionCharacter.setText(characterDescription);
-            binding.abilitiesCharacter.setText(characterAbilities);
+    /**
+     * Muestra los datos del personaje en las vistas.
+     *
+     * @param character Personaje a mostrar.
+     */
+    private void bind(Character character) {
+        long start = BIND_SECTION.begin();
+        try {
+            binding.getRoot().scrollTo(0, 0);
+            binding.nameCharacter.setText(character.getName());
+            ImageLoader.getInstance(requireContext()).load(binding.imageCharacter, character.getImageResource());
+            binding.descriptionCharacter.setText(character.getDescription());
+            binding.abilitiesCharacter.setText(character.getAbilities());
+            bindFavorite(character.getId());
+        } finally {
+            BIND_SECTION.end(start);
         }
     }
+
+    /**
+     * Muestra si el personaje es favorito y guarda los cambios de la estrella.
+     */
+    private void bindFavorite(final String characterId) {
+        final UsageStore usage = UsageStore.getInstance(requireContext());
+        // Sin receptor mientras se fija el valor, para no anotarlo como un cambio del usuario
+        binding.favoriteCharacter.setOnCheckedChangeListener(null);
+        binding.favoriteCharacter.setChecked(usage.isFavorite(characterId));
+        binding.favoriteCharacter.setOnCheckedChangeListener(
+                (button, checked) -> usage.setFavorite(characterId, checked));
+    }
 }
@@ -0,0 +1,351 @@
+package dam.pmpd.javl_tarea02;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Trace;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.Window;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumentación de fotogramas y de secciones críticas de la interfaz.
+ *
+ * <p>Escucha las {@link FrameMetrics} de las ventanas registradas con {@link #track} y acumula
+ * la duración de cada fotograma en un {@link LatencyHistogram} por cada estado de la interfaz
+ * activo mientras se dibujaba: la pantalla ({@code screen=main}, {@code screen=splash}), el
+ * desplazamiento de la lista, la animación del menú lateral o una transacción de fragmentos. Un
+ * fotograma cuenta como salto (jank) si dura más del doble de lo que dura un refresco de la
+ * pantalla, el mismo criterio que usa JankStats por defecto.</p>
+ *
+ * <p>Las {@link Section secciones} miden fragmentos de código como la creación y vinculación de
+ * filas o la decodificación de imágenes: aparecen en las trazas del sistema y su duración se
+ * acumula en otro histograma. Una vez que cada estado ha aparecido por primera vez, ni los
+ * cambios de estado ni el registro de fotogramas y secciones reservan memoria.</p>
+ *
+ * <p>Los resultados se consultan bajo demanda con {@link #dump(PrintWriter)},
+ * {@link #dumpToLog()} o {@link #dumpToFile(Context)}; en cualquier compilación se pueden pedir
+ * con {@code adb shell dumpsys activity <paquete>/.MainActivity frames [log|file|reset]}.</p>
+ *
+ * @author jvillar315
+ */
+public final class FrameMonitor {
+
+    static final String TAG = "FrameMonitor";
+
+    // Claves y valores de los estados de la interfaz
+    public static final String STATE_LIST = "list";
+    public static final String STATE_DRAWER = "drawer";
+    public static final String STATE_FRAGMENT = "fragment";
+    public static final String SCROLLING = "scrolling";
+    public static final String ANIMATING = "animating";
+    public static final String TRANSACTION = "transaction";
+
+    // Etiqueta que reciben todos los fotogramas
+    private static final String ALL_FRAMES = "all";
+
+    // Un fotograma es un salto si supera este múltiplo del periodo de refresco
+    private static final float JANK_MULTIPLIER = 2f;
+
+    // Tiempo que se recuerdan los estados terminados para etiquetar fotogramas tardíos
+    private static final long STATE_RETENTION_NS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final UiStateLog states = new UiStateLog(STATE_RETENTION_NS);
+    private static final Map<String, FrameStats> frameStats = new HashMap<>();
+    private static final List<Section> sections = new CopyOnWriteArrayList<>();
+    private static final Map<Window, FrameListener> listeners = new HashMap<>();
+    private static Handler metricsHandler;
+    private static long droppedReports;
+
+    private FrameMonitor() {
+    }
+
+    /**
+     * Empieza a medir los fotogramas de una actividad.
+     *
+     * @param activity Actividad cuya ventana se quiere medir.
+     * @param screen   Nombre de la pantalla con el que se etiquetan sus fotogramas.
+     */
+    @MainThread
+    @SuppressWarnings("deprecation")
+    public static void track(@NonNull Activity activity, @NonNull String screen) {
+        Window window = activity.getWindow();
+        if (listeners.containsKey(window)) {
+            return;
+        }
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        long frameNanos = (long) (TimeUnit.SECONDS.toNanos(1) / (refreshRate > 0 ? refreshRate : 60f));
+        FrameListener listener = new FrameListener("screen=" + screen, (long) (frameNanos * JANK_MULTIPLIER));
+        try {
+            window.addOnFrameMetricsAvailableListener(listener, metricsHandler());
+            listeners.put(window, listener);
+        } catch (IllegalStateException e) {
+            // Ventana sin aceleración por hardware: no hay métricas de fotogramas
+            Log.w(TAG, "No se pueden medir los fotogramas de " + screen, e);
+        }
+    }
+
+    /**
+     * Deja de medir los fotogramas de una actividad.
+     *
+     * @param activity Actividad registrada con {@link #track}.
+     */
+    @MainThread
+    public static void untrack(@NonNull Activity activity) {
+        Window window = activity.getWindow();
+        FrameListener listener = listeners.remove(window);
+        if (listener != null) {
+            window.removeOnFrameMetricsAvailableListener(listener);
+        }
+    }
+
+    /**
+     * Activa un estado de la interfaz; los fotogramas siguientes se etiquetan con él.
+     *
+     * @param key   Clave del estado, por ejemplo {@link #STATE_LIST}.
+     * @param value Valor del estado, por ejemplo {@link #SCROLLING}.
+     */
+    public static void putState(@NonNull String key, @NonNull String value) {
+        states.put(key, value, System.nanoTime());
+    }
+
+    /**
+     * Termina un estado de la interfaz.
+     *
+     * @param key Clave del estado.
+     */
+    public static void removeState(@NonNull String key) {
+        states.remove(key, System.nanoTime());
+    }
+
+    /**
+     * Termina un estado después de que se dibuje el siguiente fotograma de la vista, para que ese
+     * fotograma (en el que suele aparecer el contenido nuevo) quede etiquetado.
+     *
+     * @param key  Clave del estado.
+     * @param view Vista cuyo siguiente fotograma se espera.
+     */
+    @MainThread
+    public static void removeStateAfterNextFrame(@NonNull final String key, @NonNull final View view) {
+        view.postOnAnimation(() -> view.post(() -> removeState(key)));
+    }
+
+    /**
+     * Crea una sección medida. Se debe guardar en un campo estático y reutilizar.
+     *
+     * @param name Nombre de la sección en las trazas y en los informes (máximo 127 caracteres).
+     * @return La sección creada.
+     */
+    @NonNull
+    public static Section section(@NonNull String name) {
+        Section section = new Section(name);
+        sections.add(section);
+        return section;
+    }
+
+    /**
+     * Escribe el resumen de fotogramas y secciones.
+     *
+     * @param writer Destino del resumen.
+     */
+    public static void dump(@NonNull PrintWriter writer) {
+        writer.println("Fotogramas (duración total; salto si supera " + JANK_MULTIPLIER + "x el refresco)");
+        synchronized (frameStats) {
+            for (Map.Entry<String, FrameStats> entry : new TreeMap<>(frameStats).entrySet()) {
+                FrameStats stats = entry.getValue();
+                long count = stats.durations.count();
+                writer.println(String.format(Locale.ROOT, "  %-22s saltos=%d (%.1f%%) %s", entry.getKey(),
+                        stats.janky, count == 0 ? 0 : 100.0 * stats.janky / count,
+                        stats.durations.summary(1000, "ms")));
+            }
+            if (droppedReports > 0) {
+                writer.println("  Informes de fotogramas perdidos: " + droppedReports);
+            }
+        }
+        writer.println("Secciones");
+        for (Section section : sections) {
+            if (section.durations.count() > 0) {
+                writer.println(String.format(Locale.ROOT, "  %-36s %s", section.name,
+                        section.durations.summary(1000, "ms")));
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Escribe el resumen en logcat con la etiqueta {@value #TAG}.
+     */
+    public static void dumpToLog() {
+        StringWriter text = new StringWriter();
+        dump(new PrintWriter(text));
+        for (String line : text.toString().split("\n")) {
+            Log.i(TAG, line);
+        }
+    }
+
+    /**
+     * Escribe el resumen en un fichero de la aplicación accesible por adb.
+     *
+     * @param context Contexto de la aplicación.
+     * @return El fichero escrito.
+     * @throws IOException Si no se puede escribir.
+     */
+    @NonNull
+    public static File dumpToFile(@NonNull Context context) throws IOException {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            directory = context.getFilesDir();
+        }
+        File file = new File(directory, "frame-metrics.txt");
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            dump(writer);
+        }
+        return file;
+    }
+
+    /**
+     * Borra los datos acumulados de fotogramas y secciones.
+     */
+    public static void reset() {
+        synchronized (frameStats) {
+            frameStats.clear();
+            droppedReports = 0;
+        }
+        for (Section section : sections) {
+            section.durations.reset();
+        }
+    }
+
+    /**
+     * Hilo en el que se reciben las métricas, para no cargar el hilo principal.
+     */
+    private static synchronized Handler metricsHandler() {
+        if (metricsHandler == null) {
+            HandlerThread thread = new HandlerThread("FrameMetrics");
+            thread.start();
+            metricsHandler = new Handler(thread.getLooper());
+        }
+        return metricsHandler;
+    }
+
+    /**
+     * Acumula un fotograma en las estadísticas de cada una de sus etiquetas.
+     */
+    private static void record(List<String> tags, long durationNanos, boolean janky, int dropped) {
+        long micros = durationNanos / 1000;
+        synchronized (frameStats) {
+            droppedReports += dropped;
+            for (int i = 0; i < tags.size(); i++) {
+                FrameStats stats = frameStats.get(tags.get(i));
+                if (stats == null) {
+                    stats = new FrameStats();
+                    frameStats.put(tags.get(i), stats);
+                }
+                stats.durations.record(micros);
+                if (janky) {
+                    stats.janky++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sección de código medida con una traza del sistema y un histograma de duraciones.
+     *
+     * <pre>
+     * long start = SECTION.begin();
+     * try { ... } finally { SECTION.end(start); }
+     * </pre>
+     */
+    public static final class Section {
+        private final String name;
+        private final LatencyHistogram durations = new LatencyHistogram();
+
+        private Section(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Abre la sección en el hilo actual.
+         *
+         * @return Marca de tiempo que se debe pasar a {@link #end(long)}.
+         */
+        public long begin() {
+            Trace.beginSection(name);
+            return System.nanoTime();
+        }
+
+        /**
+         * Cierra la sección abierta en el hilo actual y registra su duración.
+         *
+         * @param start Valor devuelto por {@link #begin()}.
+         */
+        public void end(long start) {
+            durations.record((System.nanoTime() - start) / 1000);
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Duraciones de los fotogramas de una etiqueta y cuántos fueron saltos.
+     */
+    private static final class FrameStats {
+        final LatencyHistogram durations = new LatencyHistogram();
+        long janky;
+    }
+
+    /**
+     * Receptor de las métricas de una ventana. Se ejecuta siempre en el hilo de métricas.
+     */
+    private static final class FrameListener implements Window.OnFrameMetricsAvailableListener {
+        private final String screenTag;
+        private final long jankThresholdNanos;
+        // Reutilizada en cada fotograma
+        private final List<String> tags = new ArrayList<>();
+
+        FrameListener(String screenTag, long jankThresholdNanos) {
+            this.screenTag = screenTag;
+            this.jankThresholdNanos = jankThresholdNanos;
+        }
+
+        @Override
+        public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+            long duration = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            long start;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                start = frameMetrics.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP);
+            } else {
+                // Sin marca de inicio se estima a partir del momento de entrega
+                start = System.nanoTime() - duration;
+            }
+            tags.clear();
+            tags.add(ALL_FRAMES);
+            tags.add(screenTag);
+            states.collect(start, start + duration, tags);
+            record(tags, duration, duration > jankThresholdNanos, dropCountSinceLastInvocation);
+        }
+    }
+}
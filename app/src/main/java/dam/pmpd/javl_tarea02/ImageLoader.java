@@ -0,0 +1,580 @@
+package dam.pmpd.javl_tarea02;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cargador de imágenes que decodifica los recursos al tamaño real del {@link ImageView} destino.
+ *
+ * <p>En lugar de decodificar el drawable completo en el hilo principal, mide la vista, calcula
+ * el {@code inSampleSize} adecuado y realiza la decodificación en un hilo en segundo plano.
+ * El resultado se entrega en el hilo principal solo si la vista sigue esperando esa imagen. Las
+ * decodificaciones para vistas van al carril {@link TaskScheduler.Lane#DECODE} de
+ * {@link AppScheduler} y las precargas al carril {@link TaskScheduler.Lane#PREFETCH}.</p>
+ *
+ * <p>Los bitmaps decodificados se guardan en una {@link BitmapMemoryCache}, de modo que volver a
+ * vincular una fila o abrir de nuevo el mismo detalle no repite la decodificación. Las miniaturas
+ * además se recortan al tamaño exacto de la vista y se persisten en una {@link ThumbnailDiskCache}
+ * para que los arranques en frío no vuelvan a decodificar los PNG originales.</p>
+ *
+ * <p>Las imágenes descargadas por {@link CatalogSync} se registran con {@link #registerFile} bajo
+ * un identificador negativo y a partir de ahí se tratan igual que los recursos.</p>
+ *
+ * @author jvillar315
+ */
+public class ImageLoader {
+
+    // Secciones medidas por FrameMonitor para distinguir cada camino de decodificación
+    private static final FrameMonitor.Section RESOURCE_SECTION = FrameMonitor.section("ImageLoader#decodeResource");
+    private static final FrameMonitor.Section DISK_SECTION = FrameMonitor.section("ImageLoader#readThumbnail");
+
+    // Veces que una petición descartada por el carril se vuelve a encolar mientras su vista espera
+    static final int MAX_REQUEUES = 3;
+
+    private static volatile ImageLoader instance;
+
+    private final Resources resources;
+    private final TaskScheduler.Scope scope = AppScheduler.get().globalScope();
+    private final BitmapMemoryCache memoryCache;
+    private final Context appContext;
+    private ThumbnailDiskCache diskCache;
+    // Ficheros de las imágenes descargadas, por su identificador negativo
+    private final Map<Integer, File> files = new ConcurrentHashMap<>();
+
+    private ImageLoader(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.resources = appContext.getResources();
+
+        // Reservar para bitmaps una fracción de la memoria asignada a la aplicación
+        ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        this.memoryCache = new BitmapMemoryCache(BitmapMemoryCache.defaultBudget(activityManager.getMemoryClass()));
+        appContext.registerComponentCallbacks(memoryCache);
+    }
+
+    /**
+     * Devuelve la instancia compartida del cargador.
+     *
+     * @param context Cualquier contexto de la aplicación.
+     * @return La instancia única de {@link ImageLoader}.
+     */
+    public static ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ImageLoader.class) {
+                if (instance == null) {
+                    instance = new ImageLoader(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Asocia un fichero de imagen a un identificador que no es de recurso, para cargarlo con los
+     * mismos métodos que los recursos.
+     *
+     * @param imageId Identificador negativo de la imagen.
+     * @param file    Fichero con la imagen codificada.
+     */
+    public void registerFile(int imageId, @NonNull File file) {
+        if (imageId >= 0) {
+            throw new IllegalArgumentException("Los identificadores de fichero son negativos: " + imageId);
+        }
+        files.put(imageId, file);
+    }
+
+    /**
+     * Carga un recurso de imagen en la vista usando la configuración ARGB_8888.
+     *
+     * @param imageView Vista destino.
+     * @param resId     Identificador del recurso drawable.
+     */
+    public void load(@NonNull ImageView imageView, int resId) {
+        load(imageView, resId, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Carga un recurso de imagen en la vista decodificándolo al tamaño de la misma.
+     *
+     * <p>Si la vista todavía no tiene tamaño se espera a la siguiente pasada de dibujo.
+     * Cualquier petición anterior sobre la misma vista se cancela. Si la anterior ya había
+     * terminado se reutiliza, de modo que una imagen que está en la caché en memoria se muestra
+     * sin reservar memoria.</p>
+     *
+     * @param imageView Vista destino.
+     * @param resId     Identificador del recurso drawable.
+     * @param config    Configuración de píxeles con la que decodificar.
+     */
+    public void load(@NonNull final ImageView imageView, final int resId, @NonNull final Bitmap.Config config) {
+        Request previous = (Request) imageView.getTag(R.id.image_loader_request);
+        if (previous != null) {
+            if (previous.resId == resId && previous.config == config && !previous.cancelled
+                    && previous.targetSizeUnchanged()) {
+                // La vista ya está mostrando (o cargando) esta misma imagen
+                return;
+            }
+            previous.cancel();
+        }
+
+        final Request request;
+        if (previous != null && previous.settled) {
+            request = previous;
+            request.reset(resId, config);
+        } else {
+            request = new Request(imageView, resId, config);
+            imageView.setTag(R.id.image_loader_request, request);
+        }
+
+        if (!request.resolveTargetSize()) {
+            imageView.setImageDrawable(null);
+
+            // Esperar a que la vista tenga dimensiones antes de decodificar
+            final ViewTreeObserver observer = imageView.getViewTreeObserver();
+            observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    if (request.cancelled) {
+                        removeListener();
+                        return true;
+                    }
+                    if (request.resolveTargetSize()) {
+                        removeListener();
+                        start(request);
+                    }
+                    return true;
+                }
+
+                private void removeListener() {
+                    ViewTreeObserver current = imageView.getViewTreeObserver();
+                    if (current.isAlive()) {
+                        current.removeOnPreDrawListener(this);
+                    }
+                }
+            });
+            return;
+        }
+        start(request);
+    }
+
+    /**
+     * Decodifica una imagen por adelantado para que la primera vinculación la encuentre en caché.
+     *
+     * <p>El tamaño debe coincidir con el de la vista que la mostrará, ya que forma parte de
+     * la clave de la caché.</p>
+     *
+     * @param resId      Identificador del recurso drawable.
+     * @param width      Ancho destino en píxeles.
+     * @param height     Alto destino en píxeles.
+     * @param onComplete Acción a ejecutar en el hilo principal al terminar, aunque la precarga se
+     *                   haya descartado, o null.
+     */
+    public void prefetch(final int resId, final int width, final int height, @Nullable final Runnable onComplete) {
+        scope.submit(TaskScheduler.Lane.PREFETCH, () -> {
+            warm(resId, width, height);
+            return null;
+        }, new TaskScheduler.Callback<Object>() {
+            @Override
+            public void onResult(Object result) {
+                if (onComplete != null) {
+                    onComplete.run();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                onResult(null);
+            }
+        });
+    }
+
+    /**
+     * Decodifica una imagen en la caché en el hilo que llama, para quien ya está ejecutando una
+     * tarea en segundo plano. Tiene las mismas condiciones de tamaño que {@link #prefetch}.
+     *
+     * @param resId  Identificador del recurso drawable.
+     * @param width  Ancho destino en píxeles.
+     * @param height Alto destino en píxeles.
+     */
+    @WorkerThread
+    public void warm(int resId, int width, int height) {
+        BitmapMemoryCache.Key key = new BitmapMemoryCache.Key(resId, width, height, Bitmap.Config.ARGB_8888);
+        if (memoryCache.get(key) == null) {
+            Bitmap bitmap = decode(resId, width, height, Bitmap.Config.ARGB_8888);
+            if (bitmap != null) {
+                memoryCache.put(key, bitmap);
+            }
+        }
+    }
+
+    /**
+     * @param resId  Identificador del recurso drawable.
+     * @param width  Ancho destino en píxeles.
+     * @param height Alto destino en píxeles.
+     * @return true si la imagen ya está decodificada a ese tamaño en la caché en memoria.
+     */
+    public boolean isCached(int resId, int width, int height) {
+        return memoryCache.get(new BitmapMemoryCache.Key(resId, width, height, Bitmap.Config.ARGB_8888)) != null;
+    }
+
+    /**
+     * Recoge la imagen que muestra una vista junto con su clave de la caché, para devolverla con
+     * {@link #restoreShown} a las vistas de la actividad recreada.
+     *
+     * @param imageView Vista cargada con {@link #load}.
+     * @param out       Destino; no se añade nada si la vista no muestra una imagen ya cargada.
+     */
+    public void collectShown(@NonNull ImageView imageView, @NonNull Map<BitmapMemoryCache.Key, Bitmap> out) {
+        Request request = (Request) imageView.getTag(R.id.image_loader_request);
+        if (request == null || request.cancelled || !(imageView.getDrawable() instanceof BitmapDrawable)) {
+            return;
+        }
+        Bitmap bitmap = ((BitmapDrawable) imageView.getDrawable()).getBitmap();
+        if (bitmap != null && request.width > 0 && request.height > 0) {
+            out.put(request.key(), bitmap);
+        }
+    }
+
+    /**
+     * Devuelve a la caché en memoria imágenes recogidas con {@link #collectShown}, como las más
+     * recientes, de modo que las vistas que las pidan de nuevo las encuentren sin decodificar
+     * aunque la caché las hubiera expulsado mientras tanto.
+     *
+     * @param images Imágenes por clave.
+     */
+    public void restoreShown(@NonNull Map<BitmapMemoryCache.Key, Bitmap> images) {
+        for (Map.Entry<BitmapMemoryCache.Key, Bitmap> image : images.entrySet()) {
+            if (!image.getValue().isRecycled()) {
+                memoryCache.put(image.getKey(), image.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return La caché en memoria utilizada por el cargador.
+     */
+    public BitmapMemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Cancela la carga pendiente de una vista, si la hay.
+     *
+     * @param imageView Vista cuya petición se desea cancelar.
+     */
+    public void cancel(@NonNull ImageView imageView) {
+        Request previous = (Request) imageView.getTag(R.id.image_loader_request);
+        if (previous != null) {
+            previous.cancel();
+            imageView.setTag(R.id.image_loader_request, null);
+        }
+    }
+
+    /**
+     * Sirve la petición desde la caché en memoria o la envía al carril de decodificación.
+     */
+    private void start(final Request request) {
+        Bitmap cached = memoryCache.get(request.resId, request.width, request.height, request.config);
+        if (cached != null) {
+            request.imageView.setImageBitmap(cached);
+            request.settled = true;
+            return;
+        }
+
+        final BitmapMemoryCache.Key key = request.key();
+        request.imageView.setImageDrawable(null);
+        request.task = scope.submit(TaskScheduler.Lane.DECODE, () -> {
+            if (request.cancelled) {
+                return null;
+            }
+            Bitmap bitmap = decode(request.resId, request.width, request.height, request.config);
+            if (bitmap != null) {
+                memoryCache.put(key, bitmap);
+            }
+            return bitmap;
+        }, new TaskScheduler.Callback<Bitmap>() {
+            @Override
+            public void onResult(Bitmap bitmap) {
+                deliver(request, bitmap);
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                request.settled = true;
+                if (!TaskScheduler.isDropped(error)) {
+                    // Falló la decodificación: la vista se queda sin imagen y no se reintenta
+                    return;
+                }
+                // Descartada por el carril. Si la vista sigue en pantalla esperándola, se vuelve a
+                // poner al final de la cola unas pocas veces; si no, la siguiente llamada a load()
+                // la vuelve a pedir
+                if (!request.cancelled && request.requeues < MAX_REQUEUES && isWaiting(request)) {
+                    request.requeues++;
+                    request.settled = false;
+                    start(request);
+                    return;
+                }
+                request.cancelled = true;
+            }
+        });
+    }
+
+    /**
+     * @return true si la vista está en pantalla y sigue esperando esta petición.
+     */
+    private static boolean isWaiting(Request request) {
+        ImageView imageView = request.imageView;
+        return imageView.isAttachedToWindow() && imageView.getTag(R.id.image_loader_request) == request;
+    }
+
+    /**
+     * Obtiene la imagen desde la caché en disco o decodificándola del recurso original.
+     *
+     * <p>Se ejecuta en el hilo de decodificación.</p>
+     */
+    @Nullable
+    private Bitmap decode(int resId, int width, int height, Bitmap.Config config) {
+        if (!ThumbnailDiskCache.accepts(width, height, config)) {
+            return decodeResource(resId, width, height, config);
+        }
+
+        ThumbnailDiskCache disk = getDiskCache();
+        long start = DISK_SECTION.begin();
+        Bitmap thumbnail;
+        try {
+            thumbnail = disk.get(resId, width, height);
+        } finally {
+            DISK_SECTION.end(start);
+        }
+        if (thumbnail == null) {
+            Bitmap sampled = decodeResource(resId, width, height, config);
+            if (sampled == null) {
+                return null;
+            }
+            thumbnail = scaleCenterCrop(sampled, width, height);
+            disk.put(resId, thumbnail);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Decodifica el recurso original registrando la duración en {@link FrameMonitor}.
+     */
+    @Nullable
+    private Bitmap decodeResource(int resId, int width, int height, Bitmap.Config config) {
+        long start = RESOURCE_SECTION.begin();
+        try {
+            File file = files.get(resId);
+            if (file != null) {
+                return decodeSampledFile(file, width, height, config);
+            }
+            return decodeSampledResource(resources, resId, width, height, config);
+        } finally {
+            RESOURCE_SECTION.end(start);
+        }
+    }
+
+    /**
+     * Abre la caché en disco la primera vez que se necesita, fuera del hilo principal.
+     */
+    private synchronized ThumbnailDiskCache getDiskCache() {
+        if (diskCache == null) {
+            diskCache = new ThumbnailDiskCache(appContext);
+        }
+        return diskCache;
+    }
+
+    /**
+     * Escala y recorta un bitmap al tamaño exacto indicado, igual que {@code scaleType="centerCrop"}.
+     *
+     * @param source Bitmap de origen.
+     * @param width  Ancho final.
+     * @param height Alto final.
+     * @return Un bitmap de exactamente {@code width} x {@code height} píxeles.
+     */
+    static Bitmap scaleCenterCrop(Bitmap source, int width, int height) {
+        if (source.getWidth() == width && source.getHeight() == height) {
+            return source;
+        }
+        float scale = Math.max((float) width / source.getWidth(), (float) height / source.getHeight());
+        float dx = (width - source.getWidth() * scale) / 2f;
+        float dy = (height - source.getHeight() * scale) / 2f;
+
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        matrix.postTranslate(dx, dy);
+
+        Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(result).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        source.recycle();
+        return result;
+    }
+
+    /**
+     * Entrega el bitmap en el hilo principal si la vista sigue esperando esta petición.
+     */
+    private void deliver(Request request, @Nullable Bitmap bitmap) {
+        request.settled = true;
+        ImageView imageView = request.imageView;
+        if (request.cancelled || imageView.getTag(R.id.image_loader_request) != request) {
+            return;
+        }
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Decodifica un recurso reduciéndolo al tamaño solicitado.
+     *
+     * @param resources Recursos de la aplicación.
+     * @param resId     Identificador del recurso drawable.
+     * @param reqWidth  Ancho deseado en píxeles.
+     * @param reqHeight Alto deseado en píxeles.
+     * @param config    Configuración de píxeles preferida.
+     * @return El bitmap decodificado, o null si el recurso no se pudo decodificar.
+     */
+    @Nullable
+    static Bitmap decodeSampledResource(Resources resources, int resId, int reqWidth, int reqHeight,
+                                        Bitmap.Config config) {
+        // Leer solo las dimensiones originales de la imagen
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, resId, options);
+
+        // Decodificar con el factor de reducción calculado
+        options.inSampleSize = ImageSizing.calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        return BitmapFactory.decodeResource(resources, resId, options);
+    }
+
+    /**
+     * Decodifica un fichero de imagen reduciéndolo al tamaño solicitado.
+     *
+     * @return El bitmap decodificado, o null si el fichero no existe o no se pudo decodificar.
+     */
+    @Nullable
+    private static Bitmap decodeSampledFile(File file, int reqWidth, int reqHeight, Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0) {
+            return null;
+        }
+        options.inSampleSize = ImageSizing.calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    /**
+     * Petición de carga asociada a una vista concreta.
+     */
+    private static final class Request {
+        final ImageView imageView;
+        int resId;
+        Bitmap.Config config;
+        int width;
+        int height;
+        volatile boolean cancelled;
+        TaskScheduler.Task<Bitmap> task;
+        // Sin decodificación ni espera de tamaño pendientes: se puede reutilizar (hilo principal)
+        boolean settled;
+        // Veces que se ha vuelto a encolar tras ser descartada por el carril
+        int requeues;
+
+        Request(ImageView imageView, int resId, Bitmap.Config config) {
+            this.imageView = imageView;
+            this.resId = resId;
+            this.config = config;
+        }
+
+        /**
+         * Prepara una petición ya terminada para otra imagen de la misma vista.
+         */
+        void reset(int resId, Bitmap.Config config) {
+            this.resId = resId;
+            this.config = config;
+            width = 0;
+            height = 0;
+            cancelled = false;
+            task = null;
+            settled = false;
+            requeues = 0;
+        }
+
+        /**
+         * Intenta obtener el tamaño de la vista, ya sea fijado en el layout o medido.
+         *
+         * @return true si se conoce el tamaño destino.
+         */
+        boolean resolveTargetSize() {
+            width = targetDimension(imageView.getWidth(),
+                    imageView.getPaddingLeft() + imageView.getPaddingRight(),
+                    imageView.getLayoutParams() != null ? imageView.getLayoutParams().width : 0);
+            height = targetDimension(imageView.getHeight(),
+                    imageView.getPaddingTop() + imageView.getPaddingBottom(),
+                    imageView.getLayoutParams() != null ? imageView.getLayoutParams().height : 0);
+            return width > 0 && height > 0;
+        }
+
+        /**
+         * Comprueba si la vista sigue teniendo el tamaño con el que se pidió la imagen, por
+         * ejemplo tras cambiar el número de columnas de una cuadrícula.
+         *
+         * @return true si el tamaño no ha cambiado o aún no se conocía.
+         */
+        boolean targetSizeUnchanged() {
+            if (width == 0 || height == 0) {
+                return true;
+            }
+            int previousWidth = width;
+            int previousHeight = height;
+            boolean resolved = resolveTargetSize();
+            boolean unchanged = !resolved || (width == previousWidth && height == previousHeight);
+            width = previousWidth;
+            height = previousHeight;
+            return unchanged;
+        }
+
+        private static int targetDimension(int measured, int padding, int layoutParam) {
+            // Un tamaño fijo en el layout manda sobre el medido, que puede ser de antes de cambiarlo
+            // (los valores negativos son MATCH_PARENT/WRAP_CONTENT)
+            if (layoutParam > 0) {
+                return Math.max(layoutParam - padding, 1);
+            }
+            if (measured > 0) {
+                return Math.max(measured - padding, 1);
+            }
+            return 0;
+        }
+
+        BitmapMemoryCache.Key key() {
+            return new BitmapMemoryCache.Key(resId, width, height, config);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (task != null) {
+                task.cancel();
+            }
+        }
+    }
+}
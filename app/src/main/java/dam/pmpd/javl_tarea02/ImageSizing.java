@@ -0,0 +1,39 @@
+package dam.pmpd.javl_tarea02;
+
+/**
+ * Cálculos de tamaño para decodificar imágenes reducidas.
+ *
+ * <p>No depende de Android, de modo que el mismo cálculo que usa {@link ImageLoader} puede
+ * medirse y probarse en la JVM.</p>
+ *
+ * @author jvillar315
+ */
+public final class ImageSizing {
+
+    private ImageSizing() {
+    }
+
+    /**
+     * Calcula la mayor potencia de dos que mantiene la imagen igual o mayor que el tamaño pedido.
+     *
+     * @param width     Ancho original.
+     * @param height    Alto original.
+     * @param reqWidth  Ancho deseado.
+     * @param reqHeight Alto deseado.
+     * @return El valor de {@code inSampleSize} a utilizar.
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        if (height > reqHeight || width > reqWidth) {
+            final int halfHeight = height / 2;
+            final int halfWidth = width / 2;
+            while ((halfHeight / inSampleSize) >= reqHeight && (halfWidth / inSampleSize) >= reqWidth) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+}
@@ -1,7 +1,6 @@
 package dam.pmpd.javl_tarea02;
 
-import android.content.Intent;
-import android.content.SharedPreferences;
+import android.content.Context;
 import android.os.Bundle;
 import android.widget.CompoundButton;
 
@@ -13,8 +12,8 @@ import dam.pmpd.javl_tarea02.databinding.ActivityLanguageBinding;
  * Actividad para gestionar el cambio de idioma de la aplicación.
  *
  * <p>Esta actividad permite al usuario seleccionar entre diferentes idiomas usando un interruptor
- * (Switch). El idioma seleccionado se guarda en SharedPreferences y se aplica utilizando
- * {@link LocaleHelper}.</p>
+ * (Switch). El idioma seleccionado se guarda en {@link SettingsStore} y la actividad se crea
+ * con el idioma actual mediante {@link LocaleHelper}.</p>
  *
  * @author jvillar
  */
@@ -22,10 +21,20 @@ public class LanguageActivity extends AppCompatActivity {
 
     private ActivityLanguageBinding binding;
 
+    // Idioma con el que se ha creado la actividad
+    private String language;
+
+    // Receptor que vuelve a crear la pantalla si se creó antes de leer el idioma guardado
+    private final SettingsStore.Listener settingsListener = (previous, current) -> {
+        if (!current.getLanguage().equals(language)) {
+            recreate();
+        }
+    };
+
     /**
      * Método llamado cuando se crea la actividad.
      *
-     * <p>Este método configura la vista, recupera el idioma actual desde SharedPreferences,
+     * <p>Este método configura la vista, recupera el idioma actual desde {@link SettingsStore},
      * ajusta el estado del interruptor de idioma y configura un listener para manejar los cambios.</p>
      *
      * @param savedInstanceState Estado previamente guardado de la actividad (puede ser null).
@@ -38,12 +47,11 @@ public class LanguageActivity extends AppCompatActivity {
         binding = ActivityLanguageBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        // Recuperar el idioma actual de SharedPreferences
-        SharedPreferences prefs = getSharedPreferences("Settings", MODE_PRIVATE);
-        String currentLanguage = prefs.getString("App_Language", "en");
+        // Recuperar el idioma actual desde el almacén de preferencias
+        SettingsStore.getInstance(this).addListener(settingsListener);
 
         // Configurar el estado del interruptor según el idioma actual
-        binding.languageSwitch.setChecked("es".equals(currentLanguage));
+        binding.languageSwitch.setChecked("es".equals(language));
 
         // Configurar el listener para manejar cambios en el interruptor
         binding.languageSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
@@ -54,27 +62,40 @@ public class LanguageActivity extends AppCompatActivity {
     }
 
     /**
-     * Cambia el idioma de la aplicación y reinicia la actividad principal.
+     * Deja de escuchar los cambios de idioma.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        SettingsStore.getInstance(this).removeListener(settingsListener);
+    }
+
+    /**
+     * Crea la actividad con el idioma guardado, o con el de por defecto si aún no se ha leído.
      *
-     * <p>Este método aplica el idioma seleccionado utilizando {@link LocaleHelper},
-     * guarda el idioma en SharedPreferences y reinicia la actividad principal para reflejar
-     * los cambios.</p>
+     * @param newBase Contexto base de la actividad.
+     */
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        language = SettingsStore.getInstance(newBase).peek().getLanguage();
+        super.attachBaseContext(LocaleHelper.wrap(newBase, language));
+    }
+
+    /**
+     * Cambia el idioma de la aplicación y vuelve a la actividad principal.
+     *
+     * <p>Este método guarda el idioma seleccionado en {@link SettingsStore}. La actividad
+     * principal recibe el cambio y lo aplica en caliente, sin reiniciar la tarea ni perder
+     * la pila de navegación.</p>
      *
      * @param language El código del idioma a aplicar (por ejemplo, "es" para español o "en" para inglés).
      */
     private void changeLanguage(String language) {
-        // Usar LocaleHelper para establecer el idioma
-        LocaleHelper.setLocale(this, language);
-
-        // Guardar el idioma seleccionado en SharedPreferences
-        getSharedPreferences("Settings", MODE_PRIVATE)
-                .edit()
-                .putString("App_Language", language)
-                .apply();
-
-        // Reiniciar la actividad principal para reflejar el cambio de idioma
-        Intent intent = new Intent(this, MainActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        startActivity(intent);
+        // Guardar el idioma seleccionado; la escritura en disco se hace en segundo plano
+        SettingsStore.getInstance(this).removeListener(settingsListener);
+        SettingsStore.getInstance(this).setLanguage(language);
+
+        // Volver a la pantalla anterior, que ya muestra el nuevo idioma
+        finish();
     }
 }
@@ -0,0 +1,144 @@
+package dam.pmpd.javl_tarea02;
+
+import java.util.Locale;
+
+/**
+ * Histograma de duraciones con cubetas logarítmicas de tamaño fijo.
+ *
+ * <p>Cada potencia de dos se divide en {@value #SUB_BUCKETS} cubetas lineales, de modo que el
+ * error relativo de los percentiles es menor del 7% sea cual sea la escala, y la memoria es
+ * constante. Registrar un valor no reserva memoria, por lo que puede llamarse desde caminos
+ * críticos como la vinculación de filas o el callback de cada fotograma. Esta clase no depende de
+ * Android y puede probarse en la JVM.</p>
+ *
+ * @author jvillar315
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Valores hasta 2^40 (unos 12 días en microsegundos); los mayores se acumulan en la última cubeta
+    private static final int MAX_MAGNITUDE = 40;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Registra un valor. Los negativos se cuentan como cero.
+     *
+     * @param value Duración, en la unidad que use quien registra (por ejemplo, microsegundos).
+     */
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * @return Número de valores registrados.
+     */
+    public synchronized long count() {
+        return count;
+    }
+
+    /**
+     * @return Mayor valor registrado, o 0 si no hay ninguno.
+     */
+    public synchronized long max() {
+        return max;
+    }
+
+    /**
+     * @return Media de los valores registrados, o 0 si no hay ninguno.
+     */
+    public synchronized double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Calcula un percentil aproximado.
+     *
+     * @param percentile Percentil entre 0 y 100.
+     * @return El límite superior de la cubeta que contiene el percentil, sin superar el máximo
+     * registrado; 0 si no hay valores.
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // La última cubeta no tiene límite superior: se usa el máximo
+                return i == counts.length - 1 ? max : Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Borra todos los valores registrados.
+     */
+    public synchronized void reset() {
+        java.util.Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * Resume el histograma en una línea, dividiendo los valores por {@code divisor}.
+     *
+     * @param divisor Factor de conversión (por ejemplo, 1000 para pasar de µs a ms).
+     * @param unit    Unidad resultante.
+     * @return Texto con el número de valores, la media, los percentiles 50/90/99 y el máximo.
+     */
+    public synchronized String summary(double divisor, String unit) {
+        return String.format(Locale.ROOT, "n=%d media=%.2f%s p50=%.2f%s p90=%.2f%s p99=%.2f%s max=%.2f%s",
+                count, mean() / divisor, unit, percentile(50) / divisor, unit,
+                percentile(90) / divisor, unit, percentile(99) / divisor, unit, max / divisor, unit);
+    }
+
+    /**
+     * Cubeta de un valor: los {@value #SUB_BUCKETS} primeros valores tienen cubeta propia y a
+     * partir de ahí cada potencia de dos se reparte en {@value #SUB_BUCKETS} cubetas.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Mayor valor que cae en la cubeta indicada.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,318 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseIntArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Configuración común de las listas de la aplicación.
+ *
+ * <p>Aplica a cada {@link RecyclerView} que se le entrega con {@link #attach} el tamaño fijo,
+ * la caché de vistas, la precarga inicial y los ids estables de su {@link Config}, y le asigna un
+ * {@link RecyclerView.RecycledViewPool} propio del motor. Todas las listas de una misma actividad
+ * deben usar el mismo motor para compartir ese conjunto de filas recicladas; no se debe compartir
+ * entre actividades, porque cada fila conserva el contexto con el que se infló.</p>
+ *
+ * <p>Con {@link #preInflate} el motor crea filas cuando el hilo principal está ocioso (por
+ * ejemplo, justo después de mostrar la lista tras la pantalla de presentación) y las deja en el
+ * conjunto compartido, de modo que el primer desplazamiento no tenga que inflarlas.</p>
+ *
+ * <p>Las listas usan un {@link GridLayoutManager}; con {@link #setLayout} se le cambia el número
+ * de columnas y la disposición del adaptador sin volver a crear ninguno de los dos, por ejemplo al
+ * girar la pantalla o redimensionar la ventana.</p>
+ *
+ * @author jvillar315
+ */
+public final class ListEngine {
+
+    // Tamaño del conjunto de RecyclerView para los tipos de vista sin tamaño configurado
+    private static final int DEFAULT_POOL_SIZE = 5;
+
+    private final Config config;
+    private final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+    private MessageQueue.IdleHandler pendingPreInflation;
+
+    /**
+     * @param config Parámetros de las listas.
+     */
+    public ListEngine(@NonNull Config config) {
+        this.config = config;
+        for (int i = 0; i < config.poolSizes.size(); i++) {
+            pool.setMaxRecycledViews(config.poolSizes.keyAt(i), config.poolSizes.valueAt(i));
+        }
+    }
+
+    /**
+     * Configura una lista vertical de una columna y le asigna el adaptador.
+     *
+     * <p>Si la configuración pide ids estables, el adaptador debe sobrescribir
+     * {@link RecyclerView.Adapter#getItemId(int)}.</p>
+     *
+     * @param recyclerView Lista a configurar.
+     * @param adapter      Adaptador de la lista.
+     */
+    @MainThread
+    public void attach(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.Adapter<?> adapter) {
+        GridLayoutManager layoutManager = new GridLayoutManager(recyclerView.getContext(), 1);
+        // Solo tiene efecto si la lista está anidada dentro de otra, pero no cuesta nada
+        layoutManager.setInitialPrefetchItemCount(config.initialPrefetch);
+
+        recyclerView.setHasFixedSize(config.fixedSize);
+        recyclerView.setItemViewCacheSize(config.itemViewCacheSize);
+        recyclerView.setRecycledViewPool(pool);
+        recyclerView.setLayoutManager(layoutManager);
+        if (config.stableIds && !adapter.hasStableIds()) {
+            adapter.setHasStableIds(true);
+        }
+        recyclerView.setAdapter(adapter);
+    }
+
+    /**
+     * Aplica una disposición a una lista configurada con {@link #attach}: cambia el número de
+     * columnas y el tipo de vista y el tamaño de imagen del adaptador, conservando la posición.
+     *
+     * <p>Si cambia el tipo de vista, las vistas del tipo anterior que acaban en el conjunto
+     * compartido tras la siguiente pasada de diseño se descartan, porque ya no se van a usar y
+     * retienen sus imágenes.</p>
+     *
+     * @param recyclerView Lista ya configurada con {@link #attach}.
+     * @param adapter      Adaptador de la lista.
+     * @param layout       Disposición a aplicar.
+     */
+    @MainThread
+    public void setLayout(@NonNull RecyclerView recyclerView, @NonNull SimpleAdapter adapter,
+                          @NonNull ListLayout layout) {
+        ListLayout previous = adapter.getLayout();
+        if (layout.equals(previous)) {
+            return;
+        }
+        if (recyclerView.getLayoutManager() instanceof GridLayoutManager) {
+            ((GridLayoutManager) recyclerView.getLayoutManager()).setSpanCount(layout.getSpanCount());
+        }
+        adapter.setLayout(layout);
+        if (previous != null && previous.getViewType() != layout.getViewType()) {
+            final int oldType = previous.getViewType();
+            recyclerView.post(() -> {
+                int size = config.poolSizes.get(oldType, DEFAULT_POOL_SIZE);
+                pool.setMaxRecycledViews(oldType, 0);
+                pool.setMaxRecycledViews(oldType, size);
+            });
+        }
+    }
+
+    /**
+     * Infla filas en los momentos ociosos del hilo principal, una en cada uno, hasta que el
+     * conjunto compartido tenga las indicadas en la configuración para ese tipo de vista.
+     *
+     * @param recyclerView Lista ya configurada con {@link #attach}.
+     * @param viewType     Tipo de vista a inflar.
+     */
+    @MainThread
+    public void preInflate(@NonNull final RecyclerView recyclerView, final int viewType) {
+        cancelPreInflation();
+        final RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+        if (adapter == null || config.preInflateCount <= 0) {
+            return;
+        }
+        pendingPreInflation = new MessageQueue.IdleHandler() {
+            // Filas creadas; limita el trabajo si el conjunto admite menos de las pedidas
+            private int created;
+
+            @Override
+            public boolean queueIdle() {
+                if (!recyclerView.isAttachedToWindow() || recyclerView.getAdapter() != adapter
+                        || created >= config.preInflateCount
+                        || pool.getRecycledViewCount(viewType) >= config.preInflateCount) {
+                    pendingPreInflation = null;
+                    return false;
+                }
+                pool.putRecycledView(adapter.createViewHolder(recyclerView, viewType));
+                created++;
+                return true;
+            }
+        };
+        Looper.myQueue().addIdleHandler(pendingPreInflation);
+    }
+
+    /**
+     * Cancela la preinflación pendiente, por ejemplo al destruir la actividad.
+     */
+    @MainThread
+    public void cancelPreInflation() {
+        if (pendingPreInflation != null) {
+            Looper.myQueue().removeIdleHandler(pendingPreInflation);
+            pendingPreInflation = null;
+        }
+    }
+
+    /**
+     * @return El conjunto de filas recicladas compartido por las listas de este motor.
+     */
+    @NonNull
+    public RecyclerView.RecycledViewPool getRecycledViewPool() {
+        return pool;
+    }
+
+    /**
+     * Calcula la disposición de la lista de personajes para la ventana actual.
+     *
+     * @param resources Recursos de la actividad, con la configuración de la ventana.
+     * @return La disposición de la lista.
+     */
+    @NonNull
+    public static ListLayout layoutFor(@NonNull Resources resources) {
+        Configuration configuration = resources.getConfiguration();
+        int thumbnailSize = resources.getDimensionPixelSize(R.dimen.character_thumbnail_size);
+        return ListLayout.forWindow(configuration.screenWidthDp, resources.getDisplayMetrics().density, thumbnailSize);
+    }
+
+    /**
+     * Estima cuántos personajes de la lista caben en la pantalla.
+     *
+     * @param resources Recursos de la actividad.
+     * @return Número de elementos visibles, contando la fila que queda cortada.
+     */
+    public static int estimateVisibleItems(@NonNull Resources resources) {
+        return layoutFor(resources).visibleItems(resources.getDisplayMetrics().heightPixels);
+    }
+
+    /**
+     * Parámetros de las listas, creados con {@link Builder}.
+     */
+    public static final class Config {
+        final boolean fixedSize;
+        final boolean stableIds;
+        final int itemViewCacheSize;
+        final int initialPrefetch;
+        final int preInflateCount;
+        final SparseIntArray poolSizes;
+
+        private Config(Builder builder) {
+            this.fixedSize = builder.fixedSize;
+            this.stableIds = builder.stableIds;
+            this.itemViewCacheSize = builder.itemViewCacheSize;
+            this.initialPrefetch = builder.initialPrefetch;
+            this.preInflateCount = builder.preInflateCount;
+            this.poolSizes = builder.poolSizes.clone();
+        }
+
+        /**
+         * Configuración ajustada para la lista de personajes, en filas o en cuadrícula.
+         *
+         * <p>La caché guarda unas pocas filas recién ocultas para volver atrás sin revincular, y
+         * el conjunto compartido admite una pantalla completa más esa caché. Se preinflan los
+         * elementos que el primer desplazamiento necesitaría además de los visibles. En la
+         * cuadrícula cada fila son tantos elementos como columnas.</p>
+         *
+         * @param resources Recursos de la actividad, para estimar los elementos visibles.
+         * @return La configuración ajustada.
+         */
+        @NonNull
+        public static Config tuned(@NonNull Resources resources) {
+            ListLayout layout = layoutFor(resources);
+            int visibleItems = layout.visibleItems(resources.getDisplayMetrics().heightPixels);
+            int cacheSize = Math.max(4, 2 * layout.getSpanCount());
+            return new Builder()
+                    .setFixedSize(true)
+                    .setStableIds(true)
+                    .setItemViewCacheSize(cacheSize)
+                    .setInitialPrefetch(visibleItems)
+                    .setPoolSize(ListLayout.VIEW_TYPE_ROW, visibleItems + cacheSize)
+                    .setPoolSize(ListLayout.VIEW_TYPE_CELL, visibleItems + cacheSize)
+                    .setPreInflateCount(cacheSize + 2 * layout.getSpanCount())
+                    .build();
+        }
+
+        /**
+         * Configuración por defecto de {@link RecyclerView}, sin ajustes ni preinflación. Sirve
+         * de referencia en las pruebas de rendimiento.
+         *
+         * @return La configuración por defecto.
+         */
+        @NonNull
+        public static Config defaults() {
+            return new Builder().build();
+        }
+    }
+
+    /**
+     * Constructor de {@link Config}. Los valores iniciales son los de {@link RecyclerView}.
+     */
+    public static final class Builder {
+        private boolean fixedSize;
+        private boolean stableIds;
+        private int itemViewCacheSize = 2;
+        private int initialPrefetch = 2;
+        private int preInflateCount;
+        private final SparseIntArray poolSizes = new SparseIntArray();
+
+        /**
+         * @param fixedSize true si el tamaño de la lista no depende de su contenido.
+         * @return Este constructor.
+         */
+        public Builder setFixedSize(boolean fixedSize) {
+            this.fixedSize = fixedSize;
+            return this;
+        }
+
+        /**
+         * @param stableIds true para activar los ids estables en el adaptador.
+         * @return Este constructor.
+         */
+        public Builder setStableIds(boolean stableIds) {
+            this.stableIds = stableIds;
+            return this;
+        }
+
+        /**
+         * @param size Filas ocultas que se conservan vinculadas.
+         * @return Este constructor.
+         */
+        public Builder setItemViewCacheSize(int size) {
+            this.itemViewCacheSize = size;
+            return this;
+        }
+
+        /**
+         * @param count Filas que se precargan cuando la lista aparece anidada en otra.
+         * @return Este constructor.
+         */
+        public Builder setInitialPrefetch(int count) {
+            this.initialPrefetch = count;
+            return this;
+        }
+
+        /**
+         * @param viewType Tipo de vista.
+         * @param size     Filas de ese tipo que guarda el conjunto compartido.
+         * @return Este constructor.
+         */
+        public Builder setPoolSize(int viewType, int size) {
+            poolSizes.put(viewType, size);
+            return this;
+        }
+
+        /**
+         * @param count Filas que {@link #preInflate} deja en el conjunto compartido.
+         * @return Este constructor.
+         */
+        public Builder setPreInflateCount(int count) {
+            this.preInflateCount = count;
+            return this;
+        }
+
+        /**
+         * @return La configuración construida.
+         */
+        public Config build() {
+            return new Config(this);
+        }
+    }
+}
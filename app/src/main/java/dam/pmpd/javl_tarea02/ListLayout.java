@@ -0,0 +1,149 @@
+package dam.pmpd.javl_tarea02;
+
+/**
+ * Disposición de la lista de personajes según el tamaño de la ventana.
+ *
+ * <p>En ventanas estrechas la lista es una columna de filas con miniatura; a partir de
+ * {@link #GRID_MIN_WIDTH_DP} pasa a ser una cuadrícula de celdas con la imagen encima del nombre,
+ * con tantas columnas de al menos {@link #MIN_CELL_DP} como quepan. La imagen de cada celda tiene
+ * el tamaño exacto en píxeles que le corresponde a su columna, y ese mismo tamaño es el que se
+ * pide a {@link ImageLoader}, de modo que nunca se decodifica una imagen mayor que la vista.</p>
+ *
+ * <p>No depende de Android, para poder probar el cálculo en la JVM. Las medidas en dp deben
+ * coincidir con las de {@code activity_main.xml}, {@code item_character.xml} e
+ * {@code item_character_cell.xml}.</p>
+ *
+ * @author jvillar315
+ */
+public final class ListLayout {
+
+    /** Tipo de vista de las filas de la lista de una columna. */
+    public static final int VIEW_TYPE_ROW = 0;
+
+    /** Tipo de vista de las celdas de la cuadrícula. */
+    public static final int VIEW_TYPE_CELL = 1;
+
+    /** Ancho de ventana a partir del cual se usa la cuadrícula. */
+    public static final int GRID_MIN_WIDTH_DP = 600;
+
+    /** Ancho mínimo de cada columna de la cuadrícula. */
+    public static final int MIN_CELL_DP = 160;
+
+    /** Número máximo de columnas, para que las imágenes no queden demasiado pequeñas. */
+    public static final int MAX_SPANS = 6;
+
+    // Relleno de la lista y margen de cada tarjeta
+    private static final int LIST_PADDING_DP = 16;
+    private static final int CARD_MARGIN_DP = 8;
+    // Alto de una fila o de una celda además de su imagen: relleno, márgenes y nombre
+    private static final int ROW_EXTRA_DP = 48;
+    private static final int CELL_EXTRA_DP = 56;
+
+    private final int viewType;
+    private final int spanCount;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final int itemHeight;
+
+    private ListLayout(int viewType, int spanCount, int imageWidth, int imageHeight, int itemHeight) {
+        this.viewType = viewType;
+        this.spanCount = spanCount;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.itemHeight = itemHeight;
+    }
+
+    /**
+     * Calcula la disposición para una ventana.
+     *
+     * @param windowWidthDp Ancho de la ventana en dp.
+     * @param density       Píxeles por dp.
+     * @param thumbnailPx   Tamaño en píxeles de la miniatura de las filas.
+     * @return La disposición de la lista.
+     */
+    public static ListLayout forWindow(int windowWidthDp, float density, int thumbnailPx) {
+        if (windowWidthDp < GRID_MIN_WIDTH_DP) {
+            return new ListLayout(VIEW_TYPE_ROW, 1, thumbnailPx, thumbnailPx, thumbnailPx + px(ROW_EXTRA_DP, density));
+        }
+        int contentDp = windowWidthDp - 2 * LIST_PADDING_DP;
+        int spanCount = Math.max(2, Math.min(MAX_SPANS, contentDp / MIN_CELL_DP));
+        // GridLayoutManager reparte el sobrante entre las columnas; se toma la más estrecha
+        int cellPx = px(contentDp, density) / spanCount;
+        int imagePx = Math.max(1, cellPx - 2 * px(CARD_MARGIN_DP, density));
+        return new ListLayout(VIEW_TYPE_CELL, spanCount, imagePx, imagePx, imagePx + px(CELL_EXTRA_DP, density));
+    }
+
+    private static int px(int dp, float density) {
+        return Math.round(dp * density);
+    }
+
+    /**
+     * @return {@link #VIEW_TYPE_ROW} o {@link #VIEW_TYPE_CELL}.
+     */
+    public int getViewType() {
+        return viewType;
+    }
+
+    /**
+     * @return Número de columnas.
+     */
+    public int getSpanCount() {
+        return spanCount;
+    }
+
+    /**
+     * @return Ancho en píxeles de la imagen de cada elemento.
+     */
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    /**
+     * @return Alto en píxeles de la imagen de cada elemento.
+     */
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    /**
+     * Estima cuántos elementos caben en una ventana.
+     *
+     * @param windowHeightPx Alto de la ventana en píxeles.
+     * @return Elementos visibles, contando la fila que queda cortada.
+     */
+    public int visibleItems(int windowHeightPx) {
+        return (windowHeightPx / itemHeight + 1) * spanCount;
+    }
+
+    /**
+     * @param other Otra disposición, o null.
+     * @return true si las imágenes de ambas tienen el mismo tamaño y tipo de vista.
+     */
+    public boolean sameImages(ListLayout other) {
+        return other != null && viewType == other.viewType
+                && imageWidth == other.imageWidth && imageHeight == other.imageHeight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ListLayout)) {
+            return false;
+        }
+        ListLayout other = (ListLayout) o;
+        return sameImages(other) && spanCount == other.spanCount && itemHeight == other.itemHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((viewType * 31 + spanCount) * 31 + imageWidth) * 31 + imageHeight;
+    }
+
+    @Override
+    public String toString() {
+        return (viewType == VIEW_TYPE_CELL ? "cuadrícula" : "lista") + " columnas=" + spanCount
+                + " imagen=" + imageWidth + "x" + imageHeight;
+    }
+}
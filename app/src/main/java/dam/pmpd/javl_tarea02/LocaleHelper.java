@@ -7,41 +7,74 @@ import android.content.res.Resources;
 import java.util.Locale;
 
 /**
- * Clase auxiliar para gestionar el cambio de idioma en la aplicación.
+ * Clase auxiliar para gestionar el idioma de la aplicación.
  *
- * <p>Esta clase proporciona un método estático para cambiar el idioma del contexto de la aplicación.
- * Modifica la configuración de {@link Resources} para aplicar un idioma específico.</p>
+ * <p>Esta clase proporciona métodos estáticos para obtener contextos y recursos en un idioma
+ * concreto mediante {@link Context#createConfigurationContext}. No modifica el
+ * {@link Locale} por defecto del proceso ni la configuración compartida de los recursos,
+ * por lo que el cambio de idioma no obliga a recrear las actividades.</p>
  *
  * @author jvillar315
  */
 public class LocaleHelper {
 
     /**
-     * Establece el idioma de la aplicación.
+     * Idiomas disponibles en la aplicación.
+     */
+    public static final String[] SUPPORTED_LANGUAGES = {"es", "en"};
+
+    /**
+     * Devuelve un contexto que utiliza el idioma indicado.
      *
-     * <p>Este método configura un nuevo {@link Locale} basado en el código de idioma proporcionado,
-     * lo aplica como predeterminado y actualiza los recursos del contexto.</p>
+     * <p>Pensado para {@code attachBaseContext}, de modo que la actividad se cree ya con el
+     * idioma guardado.</p>
      *
-     * @param context       El contexto de la aplicación o actividad en el que se aplicará el cambio de idioma.
+     * @param base          El contexto original.
      * @param languageCode  El código del idioma a aplicar (por ejemplo, "es" para español o "en" para inglés).
+     * @return Un contexto con la configuración de idioma aplicada.
      */
-    public static void setLocale(Context context, String languageCode) {
-        // Crear una instancia de Locale con el código de idioma proporcionado
-        Locale locale = new Locale(languageCode);
+    public static Context wrap(Context base, String languageCode) {
+        return base.createConfigurationContext(
+                localizedConfiguration(base.getResources().getConfiguration(), languageCode));
+    }
 
-        // Establecer el idioma como predeterminado
-        Locale.setDefault(locale);
+    /**
+     * Obtiene unos recursos con el idioma indicado sin modificar la configuración global.
+     *
+     * <p>Puede llamarse desde cualquier hilo, por ejemplo para precargar textos durante el arranque.</p>
+     *
+     * @param context      Contexto del que partir.
+     * @param languageCode El código del idioma (por ejemplo, "es" o "en").
+     * @return Recursos configurados con ese idioma.
+     */
+    public static Resources localizedResources(Context context, String languageCode) {
+        return wrap(context, languageCode).getResources();
+    }
 
-        // Obtener los recursos y la configuración actual del contexto
-        Resources resources = context.getResources();
-        Configuration config = resources.getConfiguration();
+    /**
+     * Obtiene unos recursos con el idioma indicado a partir de una configuración concreta.
+     *
+     * <p>Pensado para {@code onConfigurationChanged} en las actividades que gestionan por sí mismas
+     * los giros o cambios de tamaño: los recursos creados antes conservan el tamaño de ventana, la
+     * orientación y la densidad anteriores.</p>
+     *
+     * @param context       Contexto del que partir.
+     * @param configuration Configuración nueva de la ventana.
+     * @param languageCode  El código del idioma (por ejemplo, "es" o "en").
+     * @return Recursos con esa configuración y ese idioma.
+     */
+    public static Resources localizedResources(Context context, Configuration configuration, String languageCode) {
+        return context.createConfigurationContext(localizedConfiguration(configuration, languageCode)).getResources();
+    }
 
-        // Aplicar el nuevo Locale a la configuración
+    /**
+     * Crea una copia de la configuración con el idioma y la dirección del texto indicados.
+     */
+    private static Configuration localizedConfiguration(Configuration base, String languageCode) {
+        Locale locale = new Locale(languageCode);
+        Configuration config = new Configuration(base);
         config.setLocale(locale);
         config.setLayoutDirection(locale);
-
-        // Actualizar la configuración de los recursos del contexto
-        context.getResources().updateConfiguration(config, resources.getDisplayMetrics());
+        return config;
     }
 }
-
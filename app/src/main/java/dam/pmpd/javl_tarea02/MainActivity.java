@@ -1,22 +1,40 @@
 package dam.pmpd.javl_tarea02;
 
+import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.ImageView;
 import androidx.appcompat.app.AlertDialog;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.drawerlayout.widget.DrawerLayout;
+import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
-import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.navigation.NavigationView;
 import com.google.android.material.snackbar.Snackbar;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import dam.pmpd.javl_tarea02.databinding.ActivityMainBinding;
 
@@ -31,8 +49,109 @@ import dam.pmpd.javl_tarea02.databinding.ActivityMainBinding;
  */
 public class MainActivity extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
 
+    /**
+     * Extra booleano del Intent que desactiva el ajuste de la lista (por defecto activado), para
+     * comparar ambas configuraciones en las pruebas de rendimiento.
+     */
+    public static final String EXTRA_LIST_TUNING = "list_tuning";
+
+    /**
+     * Extra entero del Intent con las filas que se precargan por delante de la lista (por defecto
+     * {@link DetailPrefetcher#DEFAULT_AHEAD}; 0 la desactiva y los valores fuera de 0 a
+     * {@link DetailPrefetcher#MAX_AHEAD} se limitan a ese intervalo), para ajustar la precarga.
+     */
+    public static final String EXTRA_PREFETCH_AHEAD = "prefetch_ahead";
+
+    // Etiqueta del fragmento de detalles, que se reutiliza para todos los personajes
+    private static final String DETAILS_TAG = "details";
+
     private ActivityMainBinding binding;
 
+    // Adaptador de la lista de personajes
+    private SimpleAdapter adapter;
+
+    // Configuración y filas recicladas compartidas de las listas de esta actividad
+    private ListEngine listEngine;
+
+    // Precarga de los detalles de las filas hacia las que se desplaza la lista
+    private DetailPrefetcher prefetcher;
+
+    // Fragmento de detalles reutilizado (null hasta que se prepara o se restaura)
+    private DetailsFragment detailsFragment;
+
+    // Recursos del idioma elegido tras un cambio en caliente o de ventana (null mientras no haya cambios)
+    private Resources localizedResources;
+
+    // Idioma con el que se muestra la actividad
+    private String language;
+
+    // Tareas en segundo plano de la actividad; se cancelan al destruirla
+    private TaskScheduler.Scope scope;
+
+    // Catálogo mostrado y búsqueda activa, conservados si la actividad se recrea
+    private MainViewModel state;
+
+    // Receptor de cambios de idioma que actualiza la pantalla sin recrearla; también recibe el
+    // idioma guardado si la actividad se creó antes de terminar de leer las preferencias
+    private final SettingsStore.Listener settingsListener = (previous, current) -> {
+        if (!current.getLanguage().equals(language)) {
+            applyLanguage(current.getLanguage());
+        }
+    };
+
+    // Receptor que repite la búsqueda activa cuando el índice se completa
+    private final SearchRepository.Listener searchListener = locale -> {
+        CharacterRepository.Index catalog = state.getCatalog();
+        if (catalog != null && locale.equals(catalog.getLocale()) && !state.getSearchQuery().isEmpty()) {
+            submitCatalog(null);
+        }
+    };
+
+    // Receptor que vuelve a cargar la lista cuando se instala una versión nueva del catálogo
+    private final CatalogSync.Listener catalogSyncListener = () -> {
+        if (state.getCatalog() != null) {
+            CharacterRepository.getInstance().loadIndex(getResources(), scope, index -> {
+                state.setCatalog(index);
+                submitCatalog(null);
+                SearchRepository.getInstance().prepare(this, index);
+            });
+        }
+    };
+
+    // Tras cada cambio en la pila de fragmentos: etiquetar el fotograma y ocultar la lista si
+    // el detalle la tapa por completo
+    private final FragmentManager.OnBackStackChangedListener backStackListener = () -> {
+        FrameMonitor.putState(FrameMonitor.STATE_FRAGMENT, FrameMonitor.TRANSACTION);
+        FrameMonitor.removeStateAfterNextFrame(FrameMonitor.STATE_FRAGMENT, binding.getRoot());
+        updateListVisibility();
+    };
+
+    /**
+     * Crea la actividad directamente con el idioma guardado, sin esperar a leerlo de disco: si
+     * aún no se ha leído se usa el idioma por defecto y el receptor de preferencias aplica el
+     * guardado en cuanto está disponible.
+     *
+     * @param newBase Contexto base de la actividad.
+     */
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        language = SettingsStore.getInstance(newBase).peek().getLanguage();
+        super.attachBaseContext(LocaleHelper.wrap(newBase, language));
+    }
+
+    /**
+     * Devuelve los recursos del idioma activo.
+     *
+     * <p>Tras un cambio de idioma en caliente se devuelven los recursos del nuevo idioma, de modo
+     * que los textos, diálogos y fragmentos creados después lo utilicen sin recrear la actividad.</p>
+     *
+     * @return Los recursos a utilizar por la actividad.
+     */
+    @Override
+    public Resources getResources() {
+        return localizedResources != null ? localizedResources : super.getResources();
+    }
+
     /**
      * Inicializa la actividad, configurando el idioma, el menú de navegación y el RecyclerView.
      *
@@ -42,13 +161,16 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-
-        // Configurar el idioma de la aplicación
-        loadLocale();
+        scope = AppScheduler.scope(this);
+        state = new ViewModelProvider(this).get(MainViewModel.class);
 
         // Configuración de ViewBinding
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
+        StartupMetrics.observeFirstFrame(this);
+        FrameMonitor.track(this, "main");
+        getSupportFragmentManager().addOnBackStackChangedListener(backStackListener);
+        updateListVisibility();
 
         // Configurar el Navigation Drawer
         setupDrawer();
@@ -56,10 +178,67 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         // Configurar el RecyclerView
         setupRecyclerView();
 
+        // Escuchar los cambios de idioma para aplicarlos en caliente
+        SettingsStore.getInstance(this).addListener(settingsListener);
+        SearchRepository.getInstance().addListener(searchListener);
+        CatalogSync.getInstance(this).addListener(catalogSyncListener);
+
         // Mostrar mensaje de bienvenida
         Snackbar.make(binding.getRoot(), getString(R.string.welcome_message), Snackbar.LENGTH_LONG).show();
     }
 
+    /**
+     * Deja de escuchar los cambios de idioma y del índice de búsqueda y de medir fotogramas. Si la
+     * actividad se va a recrear, guarda antes las miniaturas visibles en {@link MainViewModel}.
+     */
+    @Override
+    protected void onDestroy() {
+        if (isChangingConfigurations()) {
+            retainShownImages();
+        }
+        super.onDestroy();
+        FrameMonitor.untrack(this);
+        listEngine.cancelPreInflation();
+        prefetcher.release();
+        SettingsStore.getInstance(this).removeListener(settingsListener);
+        SearchRepository.getInstance().removeListener(searchListener);
+        CatalogSync.getInstance(this).removeListener(catalogSyncListener);
+    }
+
+    /**
+     * Ajusta la lista a la nueva ventana al girar la pantalla o redimensionarla.
+     *
+     * <p>La actividad declara esos cambios en el manifiesto para no recrearse: el adaptador, las
+     * vistas recicladas y las miniaturas en memoria se conservan, y {@link ListEngine} solo cambia
+     * el número de columnas y el tamaño de las imágenes. Los recursos de la actividad se vuelven a
+     * crear a partir de la configuración nueva con el idioma elegido, ya que los anteriores
+     * conservan el ancho, la densidad y la orientación de la ventana anterior.</p>
+     *
+     * @param newConfig Nueva configuración.
+     */
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        localizedResources = LocaleHelper.localizedResources(getBaseContext(), newConfig, language);
+        listEngine.setLayout(binding.recyclerViewCharacters, adapter, ListEngine.layoutFor(getResources()));
+    }
+
+    /**
+     * Recoge las miniaturas de las filas visibles para entregarlas a la actividad recreada.
+     */
+    private void retainShownImages() {
+        Map<BitmapMemoryCache.Key, Bitmap> images = new HashMap<>();
+        ImageLoader loader = ImageLoader.getInstance(this);
+        RecyclerView list = binding.recyclerViewCharacters;
+        for (int i = 0; i < list.getChildCount(); i++) {
+            ImageView image = list.getChildAt(i).findViewById(R.id.imageCharacter);
+            if (image != null) {
+                loader.collectShown(image, images);
+            }
+        }
+        state.retainShownImages(images);
+    }
+
     /**
      * Configura el menú de navegación con un botón de alternancia y un oyente de selección.
      */
@@ -70,55 +249,174 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         binding.drawerLayout.addDrawerListener(toggle);
         toggle.syncState();
 
+        // Etiquetar los fotogramas mientras el menú se abre o se cierra
+        binding.drawerLayout.addDrawerListener(new DrawerLayout.SimpleDrawerListener() {
+            @Override
+            public void onDrawerStateChanged(int newState) {
+                if (newState == DrawerLayout.STATE_IDLE) {
+                    FrameMonitor.removeState(FrameMonitor.STATE_DRAWER);
+                } else {
+                    FrameMonitor.putState(FrameMonitor.STATE_DRAWER, FrameMonitor.ANIMATING);
+                }
+            }
+        });
+
         binding.navigationView.setNavigationItemSelectedListener(this);
     }
 
     /**
-     * Rellena el RecyclerView con una lista de personajes y configura el oyente de clics.
+     * Configura el RecyclerView y lo rellena con el catálogo de personajes.
+     *
+     * <p>El índice del catálogo se carga en segundo plano a través de {@link CharacterRepository}
+     * y se entrega al adaptador como una lista paginada. La lista se ajusta con {@link ListEngine},
+     * que además infla filas de reserva en cuanto la primera pantalla está dibujada, y
+     * {@link DetailPrefetcher} prepara los detalles de las filas hacia las que se desplaza. En
+     * ventanas anchas la lista se muestra en cuadrícula según {@link ListLayout}.</p>
+     *
+     * <p>Si la actividad se ha recreado y {@link MainViewModel} conserva el índice del mismo
+     * idioma, la lista se rellena al momento con él y con las miniaturas que ya estaban visibles,
+     * de modo que el primer diseño restaura la posición de desplazamiento sin cargar nada.</p>
      */
     private void setupRecyclerView() {
-        ArrayList<Character> characters = new ArrayList<>();
-        characters.add(new Character(
-                getString(R.string.mario_name),
-                R.drawable.mario,
-                getString(R.string.mario_description),
-                getString(R.string.mario_abilities)
-        ));
-        characters.add(new Character(
-                getString(R.string.luigi_name),
-                R.drawable.luigi,
-                getString(R.string.luigi_description),
-                getString(R.string.luigi_abilities)
-        ));
-        characters.add(new Character(
-                getString(R.string.peach_name),
-                R.drawable.peach,
-                getString(R.string.peach_description),
-                getString(R.string.peach_abilities)
-        ));
-        characters.add(new Character(
-                getString(R.string.bowser_name),
-                R.drawable.bowser,
-                getString(R.string.bowser_description),
-                getString(R.string.bowser_abilities)
-        ));
-
-        binding.recyclerViewCharacters.setLayoutManager(new LinearLayoutManager(this));
-        SimpleAdapter adapter = new SimpleAdapter(characters, character -> {
-            DetailsFragment fragment = DetailsFragment.newInstance(
-                    character.getName(),
-                    character.getImageResource(),
-                    character.getDescription(),
-                    character.getAbilities()
-            );
-
-            FragmentManager fragmentManager = getSupportFragmentManager();
-            fragmentManager.beginTransaction()
-                    .replace(R.id.fragmentContainer, fragment)
-                    .addToBackStack(null)
-                    .commit();
+        boolean tuned = getIntent().getBooleanExtra(EXTRA_LIST_TUNING, true);
+        listEngine = new ListEngine(tuned ? ListEngine.Config.tuned(getResources()) : ListEngine.Config.defaults());
+        adapter = new SimpleAdapter(this::showDetails);
+        listEngine.attach(binding.recyclerViewCharacters, adapter);
+        listEngine.setLayout(binding.recyclerViewCharacters, adapter, ListEngine.layoutFor(getResources()));
+        prefetcher = new DetailPrefetcher(this, adapter,
+                getIntent().getIntExtra(EXTRA_PREFETCH_AHEAD, DetailPrefetcher.DEFAULT_AHEAD));
+        prefetcher.attach(binding.recyclerViewCharacters);
+
+        // Etiquetar los fotogramas mientras la lista se desplaza
+        binding.recyclerViewCharacters.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    FrameMonitor.removeState(FrameMonitor.STATE_LIST);
+                } else {
+                    FrameMonitor.putState(FrameMonitor.STATE_LIST, FrameMonitor.SCROLLING);
+                }
+            }
         });
-        binding.recyclerViewCharacters.setAdapter(adapter);
+        CharacterRepository.Index retained = state.getCatalog();
+        if (retained != null && retained.getLocale().equals(getResources().getConfiguration().getLocales().get(0))) {
+            ImageLoader.getInstance(this).restoreShown(state.takeShownImages());
+            showCatalog(retained);
+        } else {
+            CharacterRepository.getInstance().loadIndex(getResources(), scope, this::showCatalog);
+        }
+    }
+
+    /**
+     * Muestra el índice cargado y, una vez aplicado, prepara el resto de la pantalla.
+     *
+     * @param index Índice del catálogo en el idioma de la actividad.
+     */
+    private void showCatalog(final CharacterRepository.Index index) {
+        state.setCatalog(index);
+        submitCatalog(() -> {
+            StartupMetrics.markFullyDrawn(this);
+            listEngine.preInflate(binding.recyclerViewCharacters, adapter.getLayout().getViewType());
+            prepareDetails();
+            preloadOtherLanguages();
+            SearchRepository.getInstance().prepare(this, index);
+            CatalogSync.getInstance(this).syncOnce();
+        });
+    }
+
+    /**
+     * Entrega al adaptador el catálogo completo o, si hay una búsqueda activa, sus resultados.
+     *
+     * @param onCommitted Acción a ejecutar cuando la lista esté aplicada, o null.
+     */
+    private void submitCatalog(@Nullable final Runnable onCommitted) {
+        Runnable committed = () -> {
+            prefetcher.onListChanged();
+            if (onCommitted != null) {
+                onCommitted.run();
+            }
+        };
+        CharacterRepository.Index catalog = state.getCatalog();
+        String searchQuery = state.getSearchQuery();
+        if (searchQuery.isEmpty()) {
+            adapter.submitList(catalog.getTable(), committed);
+        } else {
+            SearchRepository.getInstance().prepare(this, catalog);
+            adapter.submitList(SearchRepository.getInstance().search(catalog, searchQuery), committed);
+        }
+    }
+
+    /**
+     * Prepara en segundo plano las tablas del catálogo del resto de idiomas para que
+     * un cambio de idioma no tenga que esperar a leer los recursos.
+     */
+    private void preloadOtherLanguages() {
+        for (String other : LocaleHelper.SUPPORTED_LANGUAGES) {
+            if (!other.equals(language)) {
+                CharacterRepository.getInstance().preloadIndex(getApplicationContext(), other);
+            }
+        }
+    }
+
+    /**
+     * Añade oculto el fragmento de detalles, si no existe ya, para que su diseño se infle antes
+     * de que el usuario toque un personaje.
+     *
+     * @return El fragmento de detalles.
+     */
+    private DetailsFragment prepareDetails() {
+        if (detailsFragment != null) {
+            return detailsFragment;
+        }
+        // Tras recrear la actividad el fragmento ya existe en el FragmentManager
+        Fragment existing = getSupportFragmentManager().findFragmentByTag(DETAILS_TAG);
+        if (existing instanceof DetailsFragment) {
+            detailsFragment = (DetailsFragment) existing;
+            return detailsFragment;
+        }
+        detailsFragment = DetailsFragment.newInstance(null);
+        // El fragmento oculto no forma parte del estado visible, así que no importa perderlo
+        getSupportFragmentManager().beginTransaction()
+                .setReorderingAllowed(true)
+                .add(R.id.fragmentContainer, detailsFragment, DETAILS_TAG)
+                .hide(detailsFragment)
+                .commitAllowingStateLoss();
+        return detailsFragment;
+    }
+
+    /**
+     * Muestra el detalle del personaje seleccionado.
+     *
+     * <p>Se reutiliza el fragmento preparado: solo se vinculan los datos del personaje y se
+     * muestra con una transacción que se puede deshacer con el botón atrás. La visita se anota
+     * en {@link UsageStore} sin tocar el disco.</p>
+     *
+     * @param character El personaje seleccionado en la lista.
+     */
+    private void showDetails(Character character) {
+        prefetcher.onOpened(character);
+        UsageStore.getInstance(this).recordView(character.getId());
+        DetailsFragment fragment = prepareDetails();
+        fragment.showCharacter(character.getId());
+        if (!fragment.isHidden() && getSupportFragmentManager().getBackStackEntryCount() > 0) {
+            return;
+        }
+        FrameMonitor.putState(FrameMonitor.STATE_FRAGMENT, FrameMonitor.TRANSACTION);
+        getSupportFragmentManager().beginTransaction()
+                .setReorderingAllowed(true)
+                .show(fragment)
+                .addToBackStack(null)
+                .commit();
+    }
+
+    /**
+     * Oculta la lista mientras el detalle la tapa, para no medirla ni dibujarla por debajo.
+     */
+    private void updateListVisibility() {
+        Fragment details = detailsFragment != null
+                ? detailsFragment : getSupportFragmentManager().findFragmentByTag(DETAILS_TAG);
+        boolean detailsVisible = details != null && details.isAdded() && !details.isHidden();
+        binding.recyclerViewCharacters.setVisibility(detailsVisible ? View.INVISIBLE : View.VISIBLE);
     }
 
     /**
@@ -132,9 +430,8 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         int id = item.getItemId();
 
         if (id == R.id.nav_home) {
-            // Mostrar la lista de personajes
-            binding.fragmentContainer.setVisibility(View.GONE);
-            binding.recyclerViewCharacters.setVisibility(View.VISIBLE);
+            // Volver a la lista de personajes cerrando el detalle, si está abierto
+            getSupportFragmentManager().popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
 
         } else if (id == R.id.nav_settings) {
             // Abrir la actividad de configuración
@@ -159,9 +456,41 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.context_menu, menu);
+        setupSearch(menu.findItem(R.id.menu_search));
         return true;
     }
 
+    /**
+     * Configura el cuadro de búsqueda de la barra, conservando la consulta activa si el menú se
+     * vuelve a crear (por ejemplo, tras un cambio de idioma).
+     *
+     * @param item Elemento de menú con el {@link SearchView}.
+     */
+    private void setupSearch(MenuItem item) {
+        SearchView searchView = (SearchView) item.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        if (!state.getSearchQuery().isEmpty()) {
+            item.expandActionView();
+            searchView.setQuery(state.getSearchQuery(), false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                state.setSearchQuery(newText.trim());
+                if (state.getCatalog() != null) {
+                    submitCatalog(null);
+                }
+                return true;
+            }
+        });
+    }
+
     /**
      * Maneja la selección de un ítem del menú contextual.
      *
@@ -191,28 +520,48 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     }
 
     /**
-     * Carga el idioma de la aplicación desde las preferencias compartidas.
+     * Guarda el idioma elegido; el cambio se aplica a través del receptor de preferencias.
+     *
+     * @param languageCode El código del idioma a establecer (por ejemplo, "en" o "es").
      */
-    private void loadLocale() {
-        SharedPreferences prefs = getSharedPreferences("Settings", MODE_PRIVATE);
-        String language = prefs.getString("App_Language", "es"); // Por defecto, español
-        LocaleHelper.setLocale(this, language);
+    private void setLanguage(String languageCode) {
+        SettingsStore.getInstance(this).setLanguage(languageCode);
     }
 
     /**
-     * Establece el idioma de la aplicación y reinicia la actividad para aplicar los cambios.
+     * Aplica un nuevo idioma sin recrear la actividad.
      *
-     * @param languageCode El código del idioma a establecer (por ejemplo, "en" o "es").
+     * <p>Se cambian los recursos de la actividad, se actualizan los textos del menú y la barra,
+     * y el catálogo del nuevo idioma (normalmente ya precargado) se entrega al adaptador, que
+     * solo vuelve a vincular las filas que han cambiado.</p>
+     *
+     * @param languageCode El código del nuevo idioma.
      */
-    private void setLanguage(String languageCode) {
-        SharedPreferences.Editor editor = getSharedPreferences("Settings", MODE_PRIVATE).edit();
-        editor.putString("App_Language", languageCode);
-        editor.apply();
+    private void applyLanguage(String languageCode) {
+        language = languageCode;
+        // A partir de la configuración actual, que puede ser de después de girar la pantalla
+        localizedResources = LocaleHelper.localizedResources(getBaseContext(),
+                getResources().getConfiguration(), languageCode);
 
-        LocaleHelper.setLocale(this, languageCode);
+        // Textos de la barra y del menú lateral
+        setTitle(R.string.app_name);
+        Menu navigationMenu = binding.navigationView.getMenu();
+        navigationMenu.findItem(R.id.nav_home).setTitle(R.string.home);
+        navigationMenu.findItem(R.id.nav_settings).setTitle(R.string.settings);
+        navigationMenu.findItem(R.id.nav_language).setTitle(R.string.language);
+        invalidateOptionsMenu();
+
+        // Catálogo del nuevo idioma a través del cálculo de diferencias del adaptador
+        CharacterRepository.getInstance().loadIndex(localizedResources, scope, index -> {
+            state.setCatalog(index);
+            submitCatalog(null);
+            Fragment details = getSupportFragmentManager().findFragmentByTag(DETAILS_TAG);
+            if (details instanceof DetailsFragment) {
+                ((DetailsFragment) details).refresh();
+            }
+        });
 
-        // Reiniciar actividad para aplicar los cambios
-        recreate();
+        Snackbar.make(binding.getRoot(), getString(R.string.language_changed), Snackbar.LENGTH_SHORT).show();
     }
 
     /**
@@ -231,4 +580,67 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 .create()
                 .show();
     }
+
+    /**
+     * Añade al volcado de la actividad las métricas de fotogramas y de precarga.
+     *
+     * <p>Con {@code adb shell dumpsys activity <paquete>/.MainActivity frames} se escribe el
+     * resumen de {@link FrameMonitor}; con los argumentos adicionales {@code log} y {@code file}
+     * se copia además a logcat o a un fichero, y con {@code reset} se empieza de cero. Con
+     * {@code prefetch [reset]} se escriben (o reinician) las métricas de {@link DetailPrefetcher},
+     * con {@code sync} el estado de {@link CatalogSync}, con {@code tasks [reset]} las métricas
+     * de los carriles de {@link AppScheduler} y con {@code usage} el registro de {@link UsageStore}.</p>
+     *
+     * @param prefix Prefijo de cada línea.
+     * @param fd     Descriptor de la salida.
+     * @param writer Salida del volcado.
+     * @param args   Argumentos pasados a dumpsys.
+     */
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer,
+                     @Nullable String[] args) {
+        List<String> options = args != null ? Arrays.asList(args) : Collections.<String>emptyList();
+        if (options.contains("prefetch")) {
+            prefetcher.dump(writer);
+            if (options.contains("reset")) {
+                prefetcher.resetStats();
+            }
+            return;
+        }
+        if (options.contains("tasks")) {
+            AppScheduler.get().dump(writer);
+            if (options.contains("reset")) {
+                AppScheduler.get().resetStats();
+            }
+            return;
+        }
+        if (options.contains("sync")) {
+            CatalogSync.getInstance(this).dump(writer);
+            return;
+        }
+        if (options.contains("usage")) {
+            UsageStore.getInstance(this).dump(writer);
+            return;
+        }
+        if (!options.contains("frames")) {
+            super.dump(prefix, fd, writer, args);
+            return;
+        }
+        FrameMonitor.dump(writer);
+        if (options.contains("log")) {
+            FrameMonitor.dumpToLog();
+        }
+        if (options.contains("file")) {
+            try {
+                File file = FrameMonitor.dumpToFile(this);
+                writer.println("Guardado en " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.w(FrameMonitor.TAG, "No se pudo guardar el volcado", e);
+                writer.println("No se pudo guardar: " + e.getMessage());
+            }
+        }
+        if (options.contains("reset")) {
+            FrameMonitor.reset();
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package dam.pmpd.javl_tarea02;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.ViewModel;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Estado de {@link MainActivity} que sobrevive a la recreación de la actividad por un cambio de
+ * configuración (tema, escala de fuente, densidad o cualquier cambio que la actividad no gestiona
+ * por sí misma).
+ *
+ * <p>Conserva el índice que se está mostrando y la búsqueda activa, para que la actividad nueva
+ * rellene la lista antes de su primer diseño y {@link androidx.recyclerview.widget.RecyclerView}
+ * pueda restaurar la posición de desplazamiento guardada. También guarda las miniaturas visibles
+ * en el momento de destruirse, que se devuelven a {@link ImageLoader} para que las vistas nuevas
+ * las muestren sin decodificar. El personaje abierto en {@link DetailsFragment} ya se restaura con
+ * los argumentos del fragmento.</p>
+ *
+ * @author jvillar315
+ */
+public class MainViewModel extends ViewModel {
+
+    // Catálogo mostrado y consulta de búsqueda activa (vacía si se muestra todo el catálogo)
+    private CharacterRepository.Index catalog;
+    private String searchQuery = "";
+
+    // Miniaturas visibles al destruirse la actividad anterior, por clave de la caché
+    private Map<BitmapMemoryCache.Key, Bitmap> shownImages = Collections.emptyMap();
+
+    /**
+     * @return El índice mostrado, o null si aún no se ha cargado ninguno.
+     */
+    @Nullable
+    public CharacterRepository.Index getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @param catalog Índice que pasa a mostrarse.
+     */
+    @MainThread
+    public void setCatalog(@NonNull CharacterRepository.Index catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * @return La consulta de búsqueda activa, vacía si no hay ninguna.
+     */
+    @NonNull
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+
+    /**
+     * @param searchQuery Consulta de búsqueda ya recortada.
+     */
+    @MainThread
+    public void setSearchQuery(@NonNull String searchQuery) {
+        this.searchQuery = searchQuery;
+    }
+
+    /**
+     * Guarda las miniaturas que muestra la actividad que se va a recrear.
+     *
+     * @param images Miniaturas recogidas con {@link ImageLoader#collectShown}.
+     */
+    @MainThread
+    public void retainShownImages(@NonNull Map<BitmapMemoryCache.Key, Bitmap> images) {
+        shownImages = images;
+    }
+
+    /**
+     * Entrega las miniaturas guardadas y deja de retenerlas.
+     *
+     * @return Las miniaturas, vacío si no hay ninguna.
+     */
+    @MainThread
+    @NonNull
+    public Map<BitmapMemoryCache.Key, Bitmap> takeShownImages() {
+        Map<BitmapMemoryCache.Key, Bitmap> images = shownImages;
+        shownImages = Collections.emptyMap();
+        return images;
+    }
+
+    /**
+     * Suelta las miniaturas al cerrarse definitivamente la actividad.
+     */
+    @Override
+    protected void onCleared() {
+        shownImages = Collections.emptyMap();
+    }
+}
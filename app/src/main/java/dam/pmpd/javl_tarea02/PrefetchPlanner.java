@@ -0,0 +1,144 @@
+package dam.pmpd.javl_tarea02;
+
+import java.util.BitSet;
+
+/**
+ * Decide qué filas de una lista conviene precargar a partir de cómo se desplaza.
+ *
+ * <p>Sigue el sentido del desplazamiento y una media móvil de su velocidad. Mientras la lista se
+ * mueve a una velocidad moderada propone las {@link #ahead} filas siguientes al borde visible en
+ * ese sentido; durante un lanzamiento rápido no propone ninguna, porque el usuario no va a tocar
+ * filas que pasan de largo y se volverían a descartar. Antes del primer desplazamiento propone
+ * las primeras filas visibles. Cada fila se propone una sola vez hasta que se llama a
+ * {@link #reset()}, por ejemplo al cambiar de sentido o de lista.</p>
+ *
+ * <p>Esta clase no depende de Android y puede probarse en la JVM.</p>
+ *
+ * @author jvillar315
+ */
+final class PrefetchPlanner {
+
+    static final int NONE = 0;
+    static final int FORWARD = 1;
+    static final int BACKWARD = -1;
+
+    // Peso de cada muestra nueva en la media móvil de la velocidad
+    private static final float SMOOTHING = 0.3f;
+
+    private final int ahead;
+    private final float maxVelocity;
+    // Filas ya propuestas desde el último reinicio
+    private final BitSet issued = new BitSet();
+    private int direction = NONE;
+    private float velocity;
+    private long lastScrollNanos;
+
+    /**
+     * @param ahead       Filas a precargar por delante del borde visible, 0 o más.
+     * @param maxVelocity Velocidad, en píxeles por segundo, a partir de la cual no se precarga.
+     */
+    PrefetchPlanner(int ahead, float maxVelocity) {
+        if (ahead < 0) {
+            throw new IllegalArgumentException("Filas a precargar negativas: " + ahead);
+        }
+        this.ahead = ahead;
+        this.maxVelocity = maxVelocity;
+    }
+
+    /**
+     * Registra un desplazamiento de la lista.
+     *
+     * @param delta Píxeles desplazados; positivo hacia el final de la lista.
+     * @param now   Instante del desplazamiento, en nanosegundos.
+     * @return true si la lista ha cambiado de sentido; lo pendiente ya no sirve.
+     */
+    boolean onScrolled(int delta, long now) {
+        if (delta == 0) {
+            return false;
+        }
+        int newDirection = delta > 0 ? FORWARD : BACKWARD;
+        boolean reversed = direction != NONE && newDirection != direction;
+        if (reversed) {
+            velocity = 0;
+            lastScrollNanos = 0;
+        }
+        if (lastScrollNanos != 0 && now > lastScrollNanos) {
+            float sample = Math.abs(delta) * 1e9f / (now - lastScrollNanos);
+            velocity = velocity == 0 ? sample : velocity + SMOOTHING * (sample - velocity);
+        }
+        lastScrollNanos = now;
+        direction = newDirection;
+        return reversed;
+    }
+
+    /**
+     * Registra que la lista se ha detenido. Se conserva el último sentido.
+     */
+    void onIdle() {
+        velocity = 0;
+        lastScrollNanos = 0;
+    }
+
+    /**
+     * Calcula las filas nuevas a precargar, de la más cercana al borde visible a la más lejana.
+     *
+     * @param firstVisible Primera fila visible, o negativa si no hay ninguna.
+     * @param lastVisible  Última fila visible, o negativa si no hay ninguna.
+     * @param itemCount    Número de filas de la lista.
+     * @param out          Destino de las filas; debe tener al menos {@link #ahead} posiciones.
+     * @return Número de filas escritas en {@code out}.
+     */
+    int plan(int firstVisible, int lastVisible, int itemCount, int[] out) {
+        if (firstVisible < 0 || lastVisible < firstVisible || velocity > maxVelocity) {
+            return 0;
+        }
+        int start;
+        int step;
+        if (direction == FORWARD) {
+            start = lastVisible + 1;
+            step = 1;
+        } else if (direction == BACKWARD) {
+            start = firstVisible - 1;
+            step = -1;
+        } else {
+            start = firstVisible;
+            step = 1;
+        }
+        int count = 0;
+        for (int i = 0, row = start; i < ahead && row >= 0 && row < itemCount; i++, row += step) {
+            if (!issued.get(row)) {
+                issued.set(row);
+                out[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Olvida las filas ya propuestas para poder volver a proponerlas.
+     */
+    void reset() {
+        issued.clear();
+    }
+
+    /**
+     * @return Sentido del último desplazamiento: {@link #FORWARD}, {@link #BACKWARD} o {@link #NONE}.
+     */
+    int direction() {
+        return direction;
+    }
+
+    /**
+     * @return Velocidad estimada en píxeles por segundo, o 0 si la lista está parada.
+     */
+    float velocity() {
+        return velocity;
+    }
+
+    /**
+     * @return Filas que se precargan por delante del borde visible.
+     */
+    int ahead() {
+        return ahead;
+    }
+}
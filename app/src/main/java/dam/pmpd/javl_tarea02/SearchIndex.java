@@ -0,0 +1,415 @@
+package dam.pmpd.javl_tarea02;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Índice invertido para buscar personajes por nombre, descripción y habilidades.
+ *
+ * <p>Los textos se normalizan a minúsculas y sin tildes ni diéresis, de modo que "habilidad"
+ * encuentra "Habilidád" y "pinguino" encuentra "pingüino". Los términos se guardan ordenados,
+ * por lo que cada palabra de la consulta se busca como prefijo con una búsqueda binaria. Cada
+ * aparición guarda el documento y los campos en los que aparece el término, y el resultado se
+ * ordena por relevancia: pesa más el nombre que las habilidades, y estas más que la descripción;
+ * una palabra completa pesa más que un prefijo.</p>
+ *
+ * <p>Los documentos son las posiciones del catálogo. El índice es inmutable y se construye con
+ * {@link Builder}, que admite ir añadiendo documentos por tandas. Puede guardarse en disco para
+ * no reconstruirlo en cada arranque. Esta clase no depende de Android y puede probarse en la
+ * JVM.</p>
+ *
+ * @author jvillar315
+ */
+public final class SearchIndex {
+
+    // "SIDX" en ASCII
+    static final int MAGIC = 0x53494458;
+    static final int FORMAT_VERSION = 1;
+
+    static final int FIELD_NAME = 1;
+    static final int FIELD_ABILITIES = 1 << 1;
+    static final int FIELD_DESCRIPTION = 1 << 2;
+    private static final int FIELD_BITS = 3;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    private static final int WEIGHT_NAME = 8;
+    private static final int WEIGHT_ABILITIES = 3;
+    private static final int WEIGHT_DESCRIPTION = 1;
+    // Multiplicador cuando la palabra de la consulta coincide con el término completo
+    private static final int EXACT_BONUS = 2;
+
+    private static final int[] NO_RESULTS = new int[0];
+
+    private final int documentCount;
+    // Términos normalizados en orden lexicográfico
+    private final String[] terms;
+    // Apariciones de cada término: (documento << FIELD_BITS) | campos, en orden de documento
+    private final int[][] postings;
+
+    private SearchIndex(int documentCount, String[] terms, int[][] postings) {
+        this.documentCount = documentCount;
+        this.terms = terms;
+        this.postings = postings;
+    }
+
+    /**
+     * @return Número de documentos indexados.
+     */
+    public int documentCount() {
+        return documentCount;
+    }
+
+    /**
+     * @return Número de términos distintos.
+     */
+    public int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * Busca los documentos que contienen todas las palabras de la consulta.
+     *
+     * <p>Cada palabra se trata como prefijo: "bow" encuentra "Bowser".</p>
+     *
+     * @param query Texto de la consulta.
+     * @param limit Número máximo de resultados.
+     * @return Posiciones de los documentos, de más a menos relevante; vacío si la consulta no
+     * tiene palabras.
+     */
+    public int[] search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || documentCount == 0 || limit <= 0) {
+            return NO_RESULTS;
+        }
+
+        int[] scores = new int[documentCount];
+        int[] matchedWords = new int[documentCount];
+        int[] wordScores = new int[documentCount];
+        int[] touched = new int[documentCount];
+
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            int touchedCount = 0;
+            int end = prefixEnd(word);
+            for (int t = prefixStart(word); t < end; t++) {
+                int bonus = terms[t].length() == word.length() ? EXACT_BONUS : 1;
+                for (int posting : postings[t]) {
+                    int doc = posting >>> FIELD_BITS;
+                    // Solo siguen siendo candidatos los documentos que contienen las palabras anteriores
+                    if (matchedWords[doc] != w) {
+                        continue;
+                    }
+                    int score = weight(posting & FIELD_MASK) * bonus;
+                    if (wordScores[doc] == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                    if (score > wordScores[doc]) {
+                        wordScores[doc] = score;
+                    }
+                }
+            }
+            if (touchedCount == 0) {
+                return NO_RESULTS;
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                scores[doc] += wordScores[doc];
+                matchedWords[doc] = w + 1;
+                wordScores[doc] = 0;
+            }
+        }
+
+        // Ordenar por puntuación descendente y, a igualdad, por posición en el catálogo
+        int required = words.size();
+        int count = 0;
+        for (int doc = 0; doc < documentCount; doc++) {
+            if (matchedWords[doc] == required) {
+                count++;
+            }
+        }
+        long[] ranked = new long[count];
+        count = 0;
+        for (int doc = 0; doc < documentCount; doc++) {
+            if (matchedWords[doc] == required) {
+                ranked[count++] = ((long) -scores[doc] << 32) | doc;
+            }
+        }
+        Arrays.sort(ranked);
+        int[] result = new int[Math.min(count, limit)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) ranked[i];
+        }
+        return result;
+    }
+
+    /**
+     * Guarda el índice en disco de forma atómica.
+     *
+     * @param path  Fichero de destino.
+     * @param stamp Marca de los datos de origen (versión, idioma...); se comprueba al leer.
+     * @throws IOException Si no se pudo escribir.
+     */
+    public void writeTo(File path, long stamp) throws IOException {
+        File temp = new File(path.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(stamp);
+            out.writeInt(documentCount);
+            out.writeInt(terms.length);
+            for (int t = 0; t < terms.length; t++) {
+                out.writeUTF(terms[t]);
+                int[] list = postings[t];
+                writeVarInt(out, list.length);
+                // Documentos como diferencia con el anterior para ocupar menos
+                int previousDoc = 0;
+                for (int posting : list) {
+                    int doc = posting >>> FIELD_BITS;
+                    writeVarInt(out, doc - previousDoc);
+                    out.writeByte(posting & FIELD_MASK);
+                    previousDoc = doc;
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(path)) {
+            temp.delete();
+            throw new IOException("No se pudo reemplazar " + path);
+        }
+    }
+
+    /**
+     * Lee un índice guardado con {@link #writeTo}.
+     *
+     * @param path  Fichero del índice.
+     * @param stamp Marca esperada de los datos de origen.
+     * @return El índice, o null si no existe, está dañado o corresponde a otros datos.
+     */
+    public static SearchIndex readFrom(File path, long stamp) {
+        if (!path.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != stamp) {
+                return null;
+            }
+            int documentCount = in.readInt();
+            int termCount = in.readInt();
+            String[] terms = new String[termCount];
+            int[][] postings = new int[termCount][];
+            for (int t = 0; t < termCount; t++) {
+                terms[t] = in.readUTF();
+                int[] list = new int[readVarInt(in)];
+                int doc = 0;
+                for (int i = 0; i < list.length; i++) {
+                    doc += readVarInt(in);
+                    list[i] = (doc << FIELD_BITS) | in.readUnsignedByte();
+                }
+                postings[t] = list;
+            }
+            return new SearchIndex(documentCount, terms, postings);
+        } catch (IOException | RuntimeException e) {
+            // Un fichero dañado se trata como inexistente y el índice se reconstruye
+            return null;
+        }
+    }
+
+    /**
+     * Normaliza un texto para indexarlo o buscarlo: minúsculas y sin marcas diacríticas.
+     *
+     * @param text Texto original.
+     * @return Texto normalizado.
+     */
+    static String fold(String text) {
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        if (!ascii) {
+            String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+            StringBuilder builder = new StringBuilder(decomposed.length());
+            for (int i = 0; i < decomposed.length(); i++) {
+                char c = decomposed.charAt(i);
+                if (java.lang.Character.getType(c) != java.lang.Character.NON_SPACING_MARK) {
+                    builder.append(c);
+                }
+            }
+            text = builder.toString();
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Divide un texto normalizado en palabras formadas por letras y dígitos.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && java.lang.Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static int weight(int fields) {
+        if ((fields & FIELD_NAME) != 0) {
+            return WEIGHT_NAME;
+        }
+        if ((fields & FIELD_ABILITIES) != 0) {
+            return WEIGHT_ABILITIES;
+        }
+        return WEIGHT_DESCRIPTION;
+    }
+
+    /**
+     * Primer término mayor o igual que el prefijo.
+     */
+    private int prefixStart(String prefix) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Primer término que ya no empieza por el prefijo.
+     */
+    private int prefixEnd(String prefix) {
+        // Todos los términos con el prefijo son menores que el prefijo seguido del mayor carácter
+        return prefixStart(prefix + '\uffff');
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Entero mal codificado");
+    }
+
+    /**
+     * Constructor incremental del índice.
+     *
+     * <p>Los documentos se añaden en orden y reciben posiciones consecutivas. Se puede llamar a
+     * {@link #build()} en cualquier momento para obtener un índice con los documentos añadidos
+     * hasta entonces y seguir añadiendo después.</p>
+     */
+    public static final class Builder {
+        private final Map<String, Postings> postingsByTerm = new HashMap<>();
+        private int documentCount;
+
+        /**
+         * Añade un documento.
+         *
+         * @param name        Nombre del personaje.
+         * @param description Descripción, o null.
+         * @param abilities   Habilidades, o null.
+         * @return La posición asignada al documento.
+         */
+        public int add(String name, String description, String abilities) {
+            int doc = documentCount++;
+            addField(doc, name, FIELD_NAME);
+            addField(doc, abilities, FIELD_ABILITIES);
+            addField(doc, description, FIELD_DESCRIPTION);
+            return doc;
+        }
+
+        /**
+         * @return Número de documentos añadidos.
+         */
+        public int size() {
+            return documentCount;
+        }
+
+        /**
+         * Crea un índice inmutable con los documentos añadidos hasta ahora.
+         *
+         * @return El índice.
+         */
+        public SearchIndex build() {
+            String[] terms = postingsByTerm.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            int[][] postings = new int[terms.length][];
+            for (int t = 0; t < terms.length; t++) {
+                Postings list = postingsByTerm.get(terms[t]);
+                postings[t] = Arrays.copyOf(list.items, list.size);
+            }
+            return new SearchIndex(documentCount, terms, postings);
+        }
+
+        private void addField(int doc, String text, int field) {
+            for (String word : tokenize(text)) {
+                Postings list = postingsByTerm.get(word);
+                if (list == null) {
+                    list = new Postings();
+                    postingsByTerm.put(word, list);
+                }
+                list.add(doc, field);
+            }
+        }
+    }
+
+    /**
+     * Lista creciente de apariciones de un término.
+     */
+    private static final class Postings {
+        int[] items = new int[4];
+        int size;
+
+        void add(int doc, int field) {
+            if (size > 0 && (items[size - 1] >>> FIELD_BITS) == doc) {
+                // El término ya aparece en este documento: se añade el campo
+                items[size - 1] |= field;
+                return;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = (doc << FIELD_BITS) | field;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Búsqueda de personajes sobre el catálogo de {@link CharacterRepository}.
+ *
+ * <p>Mantiene un {@link SearchIndex} por idioma y versión del catálogo. La primera vez se lee del disco si existe uno
+ * guardado para la misma versión de la aplicación e idioma; si no, se construye en el carril
+ * {@link TaskScheduler.Lane#INDEX} de {@link AppScheduler} por tandas, publicando índices parciales cada vez que se duplica el número de
+ * personajes indexados para que la búsqueda funcione antes de terminar. Al acabar se guarda en
+ * disco y no se vuelve a construir hasta que cambie la aplicación.</p>
+ *
+ * <p>Las consultas se resuelven en el hilo que llama, ya que solo recorren el índice en
+ * memoria, y devuelven una lista que se puede entregar directamente a {@link SimpleAdapter}.</p>
+ *
+ * @author jvillar315
+ */
+public class SearchRepository {
+
+    // Tamaño del primer índice parcial; los siguientes se publican al duplicar los documentos
+    private static final int FIRST_SNAPSHOT = 256;
+
+    // Número máximo de resultados de una consulta
+    private static final int MAX_RESULTS = 500;
+
+    private static volatile SearchRepository instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<CatalogKey, SearchIndex> indexes = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Catálogos cuyo índice ya se ha pedido; solo se accede desde el hilo principal
+    private final Set<CatalogKey> requested = new HashSet<>();
+    // Se incrementa al cambiar de versión del catálogo; los índices de antes no se publican
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private SearchRepository() {
+    }
+
+    /**
+     * @return La instancia compartida del repositorio.
+     */
+    public static SearchRepository getInstance() {
+        if (instance == null) {
+            synchronized (SearchRepository.class) {
+                if (instance == null) {
+                    instance = new SearchRepository();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prepara en segundo plano el índice de búsqueda del catálogo, si no se ha pedido ya.
+     *
+     * @param context Contexto de la aplicación.
+     * @param catalog Catálogo del idioma a indexar.
+     */
+    @MainThread
+    public void prepare(@NonNull Context context, @NonNull final CharacterRepository.Index catalog) {
+        final CatalogKey key = new CatalogKey(catalog);
+        if (!requested.add(key)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        final int expected = generation.get();
+        AppScheduler.get().globalScope().submit(TaskScheduler.Lane.INDEX, () -> {
+            loadOrBuild(appContext, catalog, expected);
+            return null;
+        }, new TaskScheduler.Callback<Object>() {
+            @Override
+            public void onResult(Object result) {
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                // Permitir un nuevo intento la próxima vez que se pida
+                requested.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Descarta los índices tras instalarse una versión nueva del catálogo, ya que sus posiciones
+     * dejan de corresponder. Se vuelven a preparar al pedirlos con el índice nuevo.
+     */
+    @MainThread
+    public void invalidate() {
+        synchronized (indexes) {
+            generation.incrementAndGet();
+            indexes.clear();
+        }
+        requested.clear();
+    }
+
+    /**
+     * Busca personajes en el catálogo.
+     *
+     * @param catalog Catálogo sobre el que buscar.
+     * @param query   Texto de la consulta.
+     * @return Los personajes encontrados, de más a menos relevante. Está vacía si el índice de
+     * ese catálogo todavía no está disponible; los {@link Listener} avisan cuando lo esté.
+     */
+    @NonNull
+    public List<Character> search(@NonNull CharacterRepository.Index catalog, @NonNull String query) {
+        SearchIndex index = indexes.get(new CatalogKey(catalog));
+        // Un índice con más documentos que el catálogo daría posiciones fuera de él
+        boolean usable = index != null && index.documentCount() <= catalog.size();
+        int[] positions = usable ? index.search(query, MAX_RESULTS) : new int[0];
+        return new ResultList(catalog, positions);
+    }
+
+    /**
+     * Registra un receptor de actualizaciones del índice.
+     *
+     * @param listener Receptor, llamado en el hilo principal.
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Elimina un receptor de actualizaciones del índice.
+     *
+     * @param listener Receptor a eliminar.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Lee el índice guardado o lo construye por tandas y lo guarda.
+     */
+    @WorkerThread
+    private void loadOrBuild(Context context, CharacterRepository.Index catalog, int expected) {
+        Locale locale = catalog.getLocale();
+        CatalogKey key = new CatalogKey(catalog);
+        File path = new File(context.getCacheDir(), "search-" + locale.toLanguageTag() + ".bin");
+        long stamp = stamp(context, catalog);
+
+        SearchIndex saved = SearchIndex.readFrom(path, stamp);
+        if (saved != null) {
+            publish(key, saved, expected);
+            return;
+        }
+
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        int nextSnapshot = FIRST_SNAPSHOT;
+        for (int i = 0; i < catalog.size(); i++) {
+            if (generation.get() != expected) {
+                // El catálogo ha cambiado de versión; este índice ya no se publicaría
+                return;
+            }
+            Character character = catalog.createCharacter(i);
+            builder.add(character.getName(), character.getDescription(), character.getAbilities());
+            if (builder.size() == nextSnapshot && builder.size() < catalog.size()) {
+                publish(key, builder.build(), expected);
+                nextSnapshot *= 2;
+            }
+        }
+
+        SearchIndex index = builder.build();
+        publish(key, index, expected);
+        try {
+            index.writeTo(path, stamp);
+        } catch (IOException e) {
+            // Sin copia en disco el índice se volverá a construir en el próximo arranque
+        }
+    }
+
+    private void publish(final CatalogKey key, SearchIndex index, int expected) {
+        synchronized (indexes) {
+            if (generation.get() != expected) {
+                return;
+            }
+            indexes.put(key, index);
+        }
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onIndexUpdated(key.locale);
+            }
+        });
+    }
+
+    /**
+     * Marca que identifica el catálogo indexado: versión de la aplicación, instalación, idioma,
+     * versión descargada y tamaño del catálogo.
+     */
+    @SuppressWarnings("deprecation")
+    private static long stamp(Context context, CharacterRepository.Index catalog) {
+        long version = 0;
+        long updated = 0;
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            version = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? info.getLongVersionCode() : info.versionCode;
+            updated = info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // Sin datos del paquete se usa solo el idioma y el tamaño
+        }
+        long stamp = version;
+        stamp = 31 * stamp + updated;
+        stamp = 31 * stamp + catalog.getLocale().toLanguageTag().hashCode();
+        stamp = 31 * stamp + catalog.getVersion();
+        stamp = 31 * stamp + catalog.size();
+        return stamp;
+    }
+
+    /**
+     * Identifica el catálogo al que corresponde un índice: idioma, versión descargada y número
+     * de personajes. Dos catálogos con la misma clave tienen los mismos personajes en las mismas
+     * posiciones.
+     */
+    private static final class CatalogKey {
+        final Locale locale;
+        final int version;
+        final int size;
+
+        CatalogKey(CharacterRepository.Index catalog) {
+            this.locale = catalog.getLocale();
+            this.version = catalog.getVersion();
+            this.size = catalog.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CatalogKey)) {
+                return false;
+            }
+            CatalogKey other = (CatalogKey) o;
+            return version == other.version && size == other.size && locale.equals(other.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = locale.hashCode();
+            result = 31 * result + version;
+            result = 31 * result + size;
+            return result;
+        }
+    }
+
+    /**
+     * Receptor de actualizaciones del índice de búsqueda.
+     */
+    public interface Listener {
+        /**
+         * Método llamado en el hilo principal cuando hay un índice nuevo o más completo.
+         *
+         * @param locale Idioma del índice actualizado.
+         */
+        void onIndexUpdated(Locale locale);
+    }
+
+    /**
+     * Resultados de una búsqueda como lista de personajes creados bajo demanda. El adaptador los
+     * vincula directamente desde las filas de la tabla del catálogo.
+     */
+    private static final class ResultList extends AbstractList<Character> implements RandomAccess, CharacterRows {
+        private final CharacterRepository.Index catalog;
+        private final int[] positions;
+
+        ResultList(CharacterRepository.Index catalog, int[] positions) {
+            this.catalog = catalog;
+            this.positions = positions;
+        }
+
+        @Override
+        public Character get(int index) {
+            return catalog.createCharacter(positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return positions.length;
+        }
+
+        @Override
+        public CharacterTable getTable() {
+            return catalog.getTable();
+        }
+
+        @Override
+        public int rowAt(int position) {
+            return positions[position];
+        }
+    }
+}
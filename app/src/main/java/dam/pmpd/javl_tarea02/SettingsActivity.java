@@ -1,6 +1,6 @@
 package dam.pmpd.javl_tarea02;
 
-import android.content.SharedPreferences;
+import android.content.Context;
 import android.os.Bundle;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -19,11 +19,34 @@ public class SettingsActivity extends AppCompatActivity {
     // Binding para acceder a los elementos de la interfaz gráfica
     private ActivitySettingsBinding binding;
 
+    // Idioma con el que se ha creado la actividad
+    private String language;
+
+    // Receptor que muestra los valores guardados si la actividad se creó antes de leerlos
+    private final SettingsStore.Listener settingsListener = (previous, current) -> {
+        if (!current.getLanguage().equals(language)) {
+            recreate();
+        } else {
+            binding.switchNotifications.setChecked(current.isNotificationsEnabled());
+        }
+    };
+
+    /**
+     * Crea la actividad con el idioma guardado, o con el de por defecto si aún no se ha leído.
+     *
+     * @param newBase Contexto base de la actividad.
+     */
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        language = SettingsStore.getInstance(newBase).peek().getLanguage();
+        super.attachBaseContext(LocaleHelper.wrap(newBase, language));
+    }
+
     /**
      * Método que se llama al crear la actividad.
      *
      * <p>Inicializa la vista de la actividad utilizando View Binding y configura
-     * las opciones de preferencias utilizando SharedPreferences.</p>
+     * las opciones de preferencias utilizando {@link SettingsStore}.</p>
      *
      * @param savedInstanceState El estado guardado de la actividad, si existe.
      */
@@ -35,21 +58,32 @@ public class SettingsActivity extends AppCompatActivity {
         binding = ActivitySettingsBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        // Crear un ejemplo de SharedPreferences para almacenar preferencias simples
-        SharedPreferences sharedPreferences = getSharedPreferences("AppPreferences", MODE_PRIVATE);
+        // Las preferencias se leen desde la instantánea en memoria del almacén
+        final SettingsStore settings = SettingsStore.getInstance(this);
 
         // Recuperar el estado inicial de las notificaciones (valor predeterminado: true)
-        boolean isNotificationsEnabled = sharedPreferences.getBoolean("notifications_enabled", true);
+        boolean isNotificationsEnabled = settings.peek().isNotificationsEnabled();
 
-        // Establecer el estado inicial del Switch según el valor de SharedPreferences
+        // Establecer el estado inicial del Switch según el valor guardado
         binding.switchNotifications.setChecked(isNotificationsEnabled);
 
         // Configurar el listener del Switch para actualizar las preferencias
         binding.switchNotifications.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            // Guardar el nuevo estado de las notificaciones en SharedPreferences
-            sharedPreferences.edit().putBoolean("notifications_enabled", isChecked).apply();
+            // Guardar el nuevo estado; la escritura en disco se agrupa en segundo plano
+            settings.setNotificationsEnabled(isChecked);
         });
 
         // Agregar configuración de otras opciones aquí si es necesario
+
+        settings.addListener(settingsListener);
+    }
+
+    /**
+     * Deja de escuchar los cambios de preferencias.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        SettingsStore.getInstance(this).removeListener(settingsListener);
     }
 }
@@ -0,0 +1,329 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Almacén único de las preferencias de la aplicación.
+ *
+ * <p>Sustituye a las llamadas dispersas a {@link SharedPreferences}: el fichero se lee una sola
+ * vez en segundo plano al iniciar el proceso, las lecturas se sirven desde una
+ * {@link Snapshot} inmutable en memoria y las escrituras se agrupan y se guardan en disco en un
+ * hilo propio. Los cambios se notifican a los {@link Listener} registrados en el hilo
+ * principal, sin que las pantallas tengan que volver a leer el disco.</p>
+ *
+ * <p>El hilo principal nunca espera a la lectura inicial: {@link #peek()} devuelve los valores
+ * por defecto mientras no haya terminado, y al terminar se notifica a los receptores como
+ * cualquier otro cambio. Solo los hilos en segundo plano esperan con {@link #get()}.</p>
+ *
+ * @author jvillar315
+ */
+public class SettingsStore {
+
+    static final String PREFS_NAME = "Settings";
+    static final String KEY_LANGUAGE = "App_Language";
+    static final String KEY_NOTIFICATIONS = "notifications_enabled";
+
+    // Fichero antiguo con la preferencia de notificaciones, migrado la primera vez
+    private static final String LEGACY_PREFS_NAME = "AppPreferences";
+
+    // Tiempo durante el que se agrupan las escrituras antes de guardarlas
+    private static final long WRITE_DELAY_MS = 250;
+
+    private static volatile SettingsStore instance;
+
+    private final Context appContext;
+    private final ScheduledExecutorService diskExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Object> pendingWrites = new HashMap<>();
+    private volatile Snapshot snapshot = Snapshot.DEFAULTS;
+    private boolean flushScheduled;
+
+    private SettingsStore(Context context) {
+        this.appContext = context.getApplicationContext();
+        diskExecutor.execute(this::load);
+    }
+
+    /**
+     * Inicializa el almacén y empieza a leer las preferencias en segundo plano.
+     *
+     * @param context Contexto de la aplicación.
+     * @return La instancia compartida.
+     */
+    public static SettingsStore init(Context context) {
+        if (instance == null) {
+            synchronized (SettingsStore.class) {
+                if (instance == null) {
+                    instance = new SettingsStore(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Devuelve la instancia compartida, creada al iniciar la aplicación.
+     *
+     * @param context Cualquier contexto, por si el almacén aún no se hubiera inicializado.
+     * @return La instancia compartida.
+     */
+    public static SettingsStore getInstance(Context context) {
+        return init(context);
+    }
+
+    /**
+     * Devuelve las preferencias actuales sin esperar a la lectura de disco.
+     *
+     * <p>Mientras la lectura inicial no haya terminado devuelve los valores por defecto; quien
+     * los use debe registrar un {@link Listener}, que recibe los valores leídos al terminar.</p>
+     *
+     * @return Instantánea inmutable de las preferencias.
+     */
+    @AnyThread
+    public Snapshot peek() {
+        return snapshot;
+    }
+
+    /**
+     * @return true si ya ha terminado la lectura inicial de disco.
+     */
+    @AnyThread
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Devuelve las preferencias actuales, esperando si hace falta a la lectura inicial.
+     *
+     * <p>Puede bloquear, por lo que no debe llamarse desde el hilo principal; ahí se usa
+     * {@link #peek()}.</p>
+     *
+     * @return Instantánea inmutable de las preferencias.
+     */
+    @WorkerThread
+    public Snapshot get() {
+        awaitLoaded();
+        return snapshot;
+    }
+
+    /**
+     * Espera a que haya terminado la lectura inicial de disco.
+     */
+    @WorkerThread
+    public void awaitLoaded() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                loaded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cambia el idioma de la aplicación.
+     *
+     * @param language Código del idioma ("es" o "en").
+     */
+    @MainThread
+    public void setLanguage(@NonNull String language) {
+        update(KEY_LANGUAGE, language);
+    }
+
+    /**
+     * Activa o desactiva las notificaciones.
+     *
+     * @param enabled true para activarlas.
+     */
+    @MainThread
+    public void setNotificationsEnabled(boolean enabled) {
+        update(KEY_NOTIFICATIONS, enabled);
+    }
+
+    /**
+     * Registra un receptor de cambios.
+     *
+     * @param listener Receptor, llamado en el hilo principal.
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Elimina un receptor de cambios.
+     *
+     * @param listener Receptor a eliminar.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publica la nueva instantánea y programa su escritura en disco.
+     *
+     * <p>Si la lectura inicial aún no ha terminado, el valor queda pendiente y se aplica sobre lo
+     * que se lea de disco.</p>
+     */
+    private void update(String key, Object value) {
+        final Snapshot previous;
+        final Snapshot updated;
+        synchronized (pendingWrites) {
+            previous = snapshot;
+            updated = previous.with(key, value);
+            if (updated == previous) {
+                return;
+            }
+            snapshot = updated;
+            pendingWrites.put(key, value);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                diskExecutor.schedule(this::flush, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        notifyListeners(previous, updated);
+    }
+
+    private void notifyListeners(Snapshot previous, Snapshot current) {
+        for (Listener listener : listeners) {
+            listener.onSettingsChanged(previous, current);
+        }
+    }
+
+    /**
+     * Lee las preferencias de disco, migrando el fichero antiguo si existe, y notifica en el hilo
+     * principal si difieren de los valores provisionales.
+     */
+    private void load() {
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences legacy = appContext.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        if (legacy.contains(KEY_NOTIFICATIONS) && !prefs.contains(KEY_NOTIFICATIONS)) {
+            prefs.edit().putBoolean(KEY_NOTIFICATIONS, legacy.getBoolean(KEY_NOTIFICATIONS, true)).commit();
+            legacy.edit().clear().commit();
+        }
+
+        Snapshot stored = new Snapshot(
+                prefs.getString(KEY_LANGUAGE, Snapshot.DEFAULTS.language),
+                prefs.getBoolean(KEY_NOTIFICATIONS, Snapshot.DEFAULTS.notificationsEnabled));
+        final Snapshot provisional;
+        final Snapshot current;
+        synchronized (pendingWrites) {
+            // Lo que se haya cambiado antes de terminar la lectura prevalece sobre el disco
+            for (Map.Entry<String, Object> entry : pendingWrites.entrySet()) {
+                stored = stored.with(entry.getKey(), entry.getValue());
+            }
+            provisional = snapshot;
+            current = stored;
+            snapshot = current;
+        }
+        loaded.countDown();
+
+        if (!provisional.sameAs(current)) {
+            mainHandler.post(() -> notifyListeners(provisional, current));
+        }
+    }
+
+    /**
+     * Guarda en disco, en un único commit, todas las escrituras acumuladas.
+     */
+    private void flush() {
+        Map<String, Object> batch;
+        synchronized (pendingWrites) {
+            batch = new HashMap<>(pendingWrites);
+            pendingWrites.clear();
+            flushScheduled = false;
+        }
+
+        SharedPreferences.Editor editor = appContext
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        for (Map.Entry<String, Object> entry : batch.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) value);
+            } else {
+                editor.putString(entry.getKey(), String.valueOf(value));
+            }
+        }
+        editor.commit();
+    }
+
+    /**
+     * Instantánea inmutable de las preferencias.
+     */
+    public static final class Snapshot {
+        static final Snapshot DEFAULTS = new Snapshot("es", true);
+
+        private final String language;
+        private final boolean notificationsEnabled;
+
+        Snapshot(String language, boolean notificationsEnabled) {
+            this.language = language;
+            this.notificationsEnabled = notificationsEnabled;
+        }
+
+        /**
+         * @return Una copia con la preferencia indicada cambiada, o esta misma si no cambia.
+         */
+        Snapshot with(String key, Object value) {
+            if (KEY_LANGUAGE.equals(key) && !language.equals(value)) {
+                return new Snapshot((String) value, notificationsEnabled);
+            }
+            if (KEY_NOTIFICATIONS.equals(key) && notificationsEnabled != (Boolean) value) {
+                return new Snapshot(language, (Boolean) value);
+            }
+            return this;
+        }
+
+        boolean sameAs(Snapshot other) {
+            return language.equals(other.language) && notificationsEnabled == other.notificationsEnabled;
+        }
+
+        /**
+         * @return El código del idioma de la aplicación. Por defecto, español.
+         */
+        public String getLanguage() {
+            return language;
+        }
+
+        /**
+         * @return true si las notificaciones están activadas.
+         */
+        public boolean isNotificationsEnabled() {
+            return notificationsEnabled;
+        }
+    }
+
+    /**
+     * Receptor de cambios en las preferencias.
+     */
+    public interface Listener {
+        /**
+         * Método llamado en el hilo principal cuando cambia alguna preferencia.
+         *
+         * @param previous Instantánea anterior.
+         * @param current  Instantánea nueva.
+         */
+        void onSettingsChanged(Snapshot previous, Snapshot current);
+    }
+}
@@ -2,15 +2,28 @@ package dam.pmpd.javl_tarea02;
 
 import android.content.Context;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import dam.pmpd.javl_tarea02.databinding.ItemCharacterBinding;
+import dam.pmpd.javl_tarea02.databinding.ItemCharacterCellBinding;
 
 /**
  * Adaptador personalizado para gestionar y mostrar una lista de objetos de tipo {@link Character}.
@@ -18,25 +31,152 @@ import dam.pmpd.javl_tarea02.databinding.ItemCharacterBinding;
  * <p>Este adaptador utiliza RecyclerView junto con View Binding para vincular los datos
  * de los personajes con las vistas de la interfaz.</p>
  *
+ * <p>Las nuevas listas se entregan con {@link #submitList(List)}: la diferencia con la lista
+ * anterior se calcula con {@link DiffUtil} en un hilo en segundo plano y solo se notifican las
+ * inserciones, movimientos y cambios mínimos. Los ids estables se obtienen de
+ * {@link Character#getStableId()}.</p>
+ *
+ * <p>Si la lista es un {@link CharacterRows}, como la {@link CharacterTable} del catálogo o los
+ * resultados de una búsqueda, las filas se vinculan leyendo directamente las columnas de la
+ * tabla, sin crear ningún {@link Character}; solo se crea al hacer clic.</p>
+ *
+ * <p>Con {@link #setLayout(ListLayout)} el adaptador pasa de filas a celdas de cuadrícula y fija
+ * el tamaño de la imagen de cada elemento al de su columna, de modo que {@link ImageLoader} conoce
+ * el tamaño exacto antes de la primera medida. El mismo adaptador sirve para cualquier tamaño de
+ * ventana: al cambiar la disposición solo se revinculan los elementos cuya imagen cambia.</p>
+ *
  * @author jvillar
  */
 public class SimpleAdapter extends RecyclerView.Adapter<SimpleAdapter.CharacterViewHolder> {
 
-    // Lista de personajes a mostrar
-    private final List<Character> characters;
+    // Hilo compartido para calcular las diferencias entre listas
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // Secciones medidas por FrameMonitor
+    private static final FrameMonitor.Section CREATE_SECTION = FrameMonitor.section("SimpleAdapter#onCreateViewHolder");
+    private static final FrameMonitor.Section BIND_SECTION = FrameMonitor.section("SimpleAdapter#onBindViewHolder");
+
+    // Criterio de comparación de personajes para DiffUtil
+    static final DiffUtil.ItemCallback<Character> DIFF_CALLBACK = new DiffUtil.ItemCallback<Character>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Character oldItem, @NonNull Character newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Character oldItem, @NonNull Character newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    // Lista de personajes a mostrar, actualizada de forma incremental
+    private final AsyncListDiffer<Character> differ;
 
     // Listener para gestionar clics en elementos de la lista
     private final OnItemClickListener listener;
 
+    // Mensajes de selección ya formateados, por identificador de personaje
+    private final Map<String, String> selectionMessages = new HashMap<>();
+
+    // Filas de la tabla de la lista actual, o null si la lista no está respaldada por una tabla
+    @Nullable
+    private CharacterRows currentRows;
+
+    // Disposición actual, o null para usar las filas tal como están en el diseño
+    @Nullable
+    private ListLayout layout;
+
     /**
      * Constructor del adaptador.
      *
+     * @param listener Listener para gestionar las acciones de clic en los elementos.
+     */
+    public SimpleAdapter(OnItemClickListener listener) {
+        this.listener = listener;
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this),
+                new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                        .setBackgroundThreadExecutor(DIFF_EXECUTOR)
+                        .build());
+        setHasStableIds(true);
+    }
+
+    /**
+     * Constructor del adaptador con una lista inicial.
+     *
      * @param characters Lista de personajes que se mostrarán en el RecyclerView.
      * @param listener   Listener para gestionar las acciones de clic en los elementos.
      */
     public SimpleAdapter(List<Character> characters, OnItemClickListener listener) {
-        this.characters = characters;
-        this.listener = listener;
+        this(listener);
+        submitList(characters);
+    }
+
+    /**
+     * Entrega una nueva lista de personajes al adaptador.
+     *
+     * <p>Debe ser una instancia nueva: si se pasa la misma lista que ya se muestra no se
+     * calcula ninguna diferencia.</p>
+     *
+     * @param characters Nueva lista de personajes, o null para vaciar la lista.
+     */
+    public void submitList(@Nullable List<Character> characters) {
+        submitList(characters, null);
+    }
+
+    /**
+     * Entrega una nueva lista y ejecuta una acción cuando se ha aplicado.
+     *
+     * @param characters     Nueva lista de personajes.
+     * @param commitCallback Acción a ejecutar en el hilo principal tras aplicar los cambios.
+     */
+    public void submitList(@Nullable final List<Character> characters, @Nullable final Runnable commitCallback) {
+        // Los mensajes dependen del idioma de la lista, que puede haber cambiado
+        selectionMessages.clear();
+        // La lista del differ es una vista de solo lectura: las filas se recuerdan al aplicarla
+        differ.submitList(characters, () -> {
+            currentRows = characters instanceof CharacterRows ? (CharacterRows) characters : null;
+            if (commitCallback != null) {
+                commitCallback.run();
+            }
+        });
+    }
+
+    /**
+     * Cambia la disposición de los elementos.
+     *
+     * <p>Si cambia el tipo de vista se notifica toda la lista, con lo que las vistas del tipo
+     * anterior pasan al conjunto de reciclaje; si solo cambia el tamaño de la imagen, los
+     * elementos se revinculan en las vistas que ya existen con el tamaño nuevo.</p>
+     *
+     * @param layout Disposición calculada para la ventana actual.
+     */
+    public void setLayout(@NonNull ListLayout layout) {
+        ListLayout previous = this.layout;
+        this.layout = layout;
+        if (layout.sameImages(previous)) {
+            return;
+        }
+        if (previous == null || previous.getViewType() != layout.getViewType()) {
+            notifyDataSetChanged();
+        } else {
+            notifyItemRangeChanged(0, getItemCount());
+        }
+    }
+
+    /**
+     * @return La disposición actual, o null si no se ha fijado ninguna.
+     */
+    @Nullable
+    public ListLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return La lista que se muestra actualmente.
+     */
+    @NonNull
+    public List<Character> getCurrentList() {
+        return differ.getCurrentList();
     }
 
     /**
@@ -49,39 +189,122 @@ public class SimpleAdapter extends RecyclerView.Adapter<SimpleAdapter.CharacterV
     @NonNull
     @Override
     public CharacterViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        ItemCharacterBinding binding = ItemCharacterBinding.inflate(
-                LayoutInflater.from(parent.getContext()),
-                parent,
-                false
-        );
-        return new CharacterViewHolder(binding);
+        long start = CREATE_SECTION.begin();
+        try {
+            return createViewHolder(parent, viewType);
+        } finally {
+            CREATE_SECTION.end(start);
+        }
+    }
+
+    /**
+     * Infla la fila o la celda y le asigna su listener de clic.
+     */
+    private CharacterViewHolder createViewHolder(ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        final CharacterViewHolder holder = viewType == ListLayout.VIEW_TYPE_CELL
+                ? new CharacterViewHolder(ItemCharacterCellBinding.inflate(inflater, parent, false))
+                : new CharacterViewHolder(ItemCharacterBinding.inflate(inflater, parent, false));
+
+        // Un único listener por ViewHolder: el personaje se obtiene de la posición al hacer clic
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Character character = differ.getCurrentList().get(position);
+
+            // Mostrar un mensaje al seleccionar un personaje
+            Context context = holder.itemView.getContext();
+            Toast.makeText(context, selectionMessage(context, character), Toast.LENGTH_SHORT).show();
+
+            // Notificar al listener sobre el clic en un elemento
+            listener.onItemClick(character);
+        });
+        return holder;
     }
 
     /**
      * Vincula los datos de un personaje a la vista correspondiente.
      *
+     * <p>No reserva memoria: las listas respaldadas por una {@link CharacterTable} se vinculan
+     * desde sus columnas, si el ViewHolder ya muestra ese mismo personaje no se vuelve a poner
+     * el texto, y el listener de clic se crea una única vez en {@link #onCreateViewHolder}. La
+     * imagen siempre se pide a {@link ImageLoader}, que no hace nada si la vista ya la muestra o
+     * la espera y la vuelve a pedir si el carril de decodificación la había descartado. La
+     * duración de cada vinculación se registra en {@link FrameMonitor}.</p>
+     *
      * @param holder   ViewHolder que contiene las vistas para un elemento de la lista.
      * @param position Posición del elemento en la lista.
      */
     @Override
     public void onBindViewHolder(@NonNull CharacterViewHolder holder, int position) {
-        // Obtener el personaje actual de la lista
-        Character character = characters.get(position);
+        long start = BIND_SECTION.begin();
+        try {
+            if (layout != null && holder.applyImageSize(layout)) {
+                // La imagen tiene otro tamaño: hay que volver a cargarla aunque sea el mismo personaje
+                holder.boundCharacter = null;
+                holder.boundTable = null;
+            }
+            if (currentRows != null) {
+                bindRow(holder, currentRows.getTable(), currentRows.rowAt(position));
+                return;
+            }
+            // Obtener el personaje actual de la lista
+            Character character = differ.getCurrentList().get(position);
+            if (!character.equals(holder.boundCharacter)) {
+                holder.boundCharacter = character;
+                holder.boundTable = null;
 
-        // Establecer los datos en las vistas
-        holder.binding.characterName.setText(character.getName());
-        holder.binding.imageCharacter.setImageResource(character.getImageResource());
+                // Establecer los datos en las vistas
+                holder.characterName.setText(character.getName());
+            }
+            // Decodificar la imagen en segundo plano al tamaño de la miniatura
+            ImageLoader.getInstance(holder.itemView.getContext())
+                    .load(holder.imageCharacter, character.getImageResource());
+        } finally {
+            BIND_SECTION.end(start);
+        }
+    }
 
-        // Configurar el clic en el elemento
-        holder.itemView.setOnClickListener(v -> {
-            // Mostrar un mensaje al seleccionar un personaje
-            Context context = holder.itemView.getContext();
-            String message = context.getString(R.string.character_selected, character.getName());
-            Toast.makeText(context, message, Toast.LENGTH_SHORT).show();
+    /**
+     * Vincula una fila de la tabla leyendo el nombre directamente de su pool de caracteres.
+     */
+    private static void bindRow(CharacterViewHolder holder, CharacterTable table, int row) {
+        if (table != holder.boundTable || row != holder.boundRow) {
+            holder.boundTable = table;
+            holder.boundRow = row;
+            holder.boundCharacter = null;
 
-            // Notificar al listener sobre el clic en un elemento
-            listener.onItemClick(character);
-        });
+            holder.characterName.setText(table.nameChars(), table.nameStart(row), table.nameLength(row));
+        }
+        ImageLoader.getInstance(holder.itemView.getContext())
+                .load(holder.imageCharacter, table.imageResource(row));
+    }
+
+    /**
+     * Devuelve el mensaje de selección de un personaje, formateándolo solo la primera vez.
+     */
+    private String selectionMessage(Context context, Character character) {
+        String message = selectionMessages.get(character.getId());
+        if (message == null) {
+            message = context.getString(R.string.character_selected, character.getName());
+            selectionMessages.put(character.getId(), message);
+        }
+        return message;
+    }
+
+    /**
+     * Cancela la carga de imagen pendiente cuando la vista se recicla.
+     *
+     * @param holder ViewHolder que va a ser reciclado.
+     */
+    @Override
+    public void onViewRecycled(@NonNull CharacterViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.boundCharacter = null;
+        holder.boundTable = null;
+        ImageLoader.getInstance(holder.itemView.getContext()).cancel(holder.imageCharacter);
     }
 
     /**
@@ -91,17 +314,51 @@ public class SimpleAdapter extends RecyclerView.Adapter<SimpleAdapter.CharacterV
      */
     @Override
     public int getItemCount() {
-        return characters.size();
+        return differ.getCurrentList().size();
+    }
+
+    /**
+     * Devuelve el id estable del personaje en la posición indicada.
+     *
+     * @param position Posición del elemento en la lista.
+     * @return El id estable derivado del identificador del personaje.
+     */
+    @Override
+    public long getItemId(int position) {
+        if (currentRows != null) {
+            return currentRows.getTable().stableId(currentRows.rowAt(position));
+        }
+        return differ.getCurrentList().get(position).getStableId();
+    }
+
+    /**
+     * Devuelve el tipo de vista de la disposición actual.
+     *
+     * @param position Posición del elemento en la lista.
+     * @return {@link ListLayout#VIEW_TYPE_ROW} o {@link ListLayout#VIEW_TYPE_CELL}.
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return layout != null ? layout.getViewType() : ListLayout.VIEW_TYPE_ROW;
     }
 
     /**
      * ViewHolder para gestionar las vistas de cada elemento de la lista.
      *
-     * <p>Utiliza View Binding para acceder de forma eficiente a los elementos de la interfaz.</p>
+     * <p>Utiliza View Binding para acceder de forma eficiente a los elementos de la interfaz;
+     * las filas y las celdas comparten los identificadores de sus vistas.</p>
      */
     public static class CharacterViewHolder extends RecyclerView.ViewHolder {
-        // Binding para acceder a los elementos del diseño
-        private final ItemCharacterBinding binding;
+        // Vistas del diseño obtenidas del binding
+        private final ImageView imageCharacter;
+        private final TextView characterName;
+
+        // Personaje mostrado actualmente, para evitar revincular el mismo contenido
+        private Character boundCharacter;
+
+        // Fila de tabla mostrada actualmente, con el mismo fin
+        private CharacterTable boundTable;
+        private int boundRow;
 
         /**
          * Constructor del ViewHolder.
@@ -109,8 +366,38 @@ public class SimpleAdapter extends RecyclerView.Adapter<SimpleAdapter.CharacterV
          * @param binding Instancia de View Binding asociada al diseño del elemento.
          */
         public CharacterViewHolder(@NonNull ItemCharacterBinding binding) {
-            super(binding.getRoot());
-            this.binding = binding;
+            this(binding.getRoot(), binding.imageCharacter, binding.characterName);
+        }
+
+        /**
+         * Constructor del ViewHolder de una celda de la cuadrícula.
+         *
+         * @param binding Instancia de View Binding asociada al diseño de la celda.
+         */
+        public CharacterViewHolder(@NonNull ItemCharacterCellBinding binding) {
+            this(binding.getRoot(), binding.imageCharacter, binding.characterName);
+        }
+
+        private CharacterViewHolder(View root, ImageView imageCharacter, TextView characterName) {
+            super(root);
+            this.imageCharacter = imageCharacter;
+            this.characterName = characterName;
+        }
+
+        /**
+         * Ajusta la imagen al tamaño de la disposición.
+         *
+         * @return true si ha cambiado el tamaño.
+         */
+        boolean applyImageSize(ListLayout layout) {
+            ViewGroup.LayoutParams params = imageCharacter.getLayoutParams();
+            if (params.width == layout.getImageWidth() && params.height == layout.getImageHeight()) {
+                return false;
+            }
+            params.width = layout.getImageWidth();
+            params.height = layout.getImageHeight();
+            imageCharacter.setLayoutParams(params);
+            return true;
         }
     }
 
@@ -1,27 +1,38 @@
 package dam.pmpd.javl_tarea02;
 
 import android.content.Intent;
+import android.content.res.Resources;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Actividad de presentación inicial (Splash Screen).
  *
- * <p>Esta actividad se utiliza para mostrar una pantalla de introducción
- * durante un tiempo definido antes de redirigir a la actividad principal de la aplicación.</p>
+ * <p>Esta actividad se muestra mientras se prepara lo necesario para la pantalla principal:
+ * se resuelve el idioma guardado, se carga el índice del catálogo y se decodifican las
+ * miniaturas de la primera pantalla. En cuanto todo está listo se abre la actividad principal,
+ * respetando una duración mínima y una máxima.</p>
  *
  * @author jvillar
  */
 public class SplashActivity extends AppCompatActivity {
 
+    // Duración mínima de la presentación para evitar un parpadeo
+    private static final long MIN_DURATION_MS = 300;
+
+    // Duración máxima aunque alguna tarea de preparación no haya terminado
+    private static final long MAX_DURATION_MS = 1500;
+
+    private StartupCoordinator coordinator;
+
     /**
      * Método que se llama al crear la actividad.
      *
-     * <p>Configura el diseño de la pantalla Splash y programa un temporizador para
-     * redirigir a la actividad principal después de un período definido.</p>
+     * <p>Configura el diseño de la pantalla Splash y lanza en segundo plano las tareas de
+     * preparación de la actividad principal.</p>
      *
      * @param savedInstanceState El estado guardado de la actividad, si existe.
      */
@@ -31,15 +42,68 @@ public class SplashActivity extends AppCompatActivity {
 
         // Configurar el diseño del Splash Screen
         setContentView(R.layout.splash_screen);
+        FrameMonitor.track(this, "splash");
 
-        // Usar un Handler para mostrar la pantalla Splash durante 3 segundos
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            // Crear un Intent para iniciar MainActivity
-            Intent intent = new Intent(SplashActivity.this, MainActivity.class);
-            startActivity(intent);
+        coordinator = new StartupCoordinator(MIN_DURATION_MS, MAX_DURATION_MS, timedOut -> {
+            // Crear un Intent para iniciar MainActivity, conservando los extras recibidos
+            startActivity(new Intent(SplashActivity.this, MainActivity.class).putExtras(getIntent()));
 
             // Finalizar la actividad Splash para evitar que quede en el back stack
             finish();
-        }, 3000); // Tiempo en milisegundos (3000 ms = 3 segundos)
+        });
+        final Runnable localeReady = coordinator.newSignal("locale");
+        final Runnable indexReady = coordinator.newSignal("index");
+        final Runnable thumbnailsReady = coordinator.newSignal("thumbnails");
+        coordinator.start();
+
+        // Las miniaturas se piden al tamaño exacto que tendrán en la lista o en la cuadrícula
+        ListLayout layout = ListEngine.layoutFor(getResources());
+        final int imageWidth = layout.getImageWidth();
+        final int imageHeight = layout.getImageHeight();
+        final int visibleItems = layout.visibleItems(getResources().getDisplayMetrics().heightPixels);
+        // En el carril de disco, ligado a la actividad: si se destruye antes de empezar, no se ejecuta
+        AppScheduler.scope(this).execute(TaskScheduler.Lane.DISK, () -> {
+            // Esperar a la lectura asíncrona de las preferencias iniciada por la aplicación
+            String language = SettingsStore.getInstance(getApplicationContext()).get().getLanguage();
+            Resources localized = LocaleHelper.localizedResources(getApplicationContext(), language);
+            localeReady.run();
+
+            // Cargar el índice con el idioma que usará MainActivity
+            CharacterRepository.Index index = CharacterRepository.getInstance().loadIndexSync(localized);
+            indexReady.run();
+
+            // Decodificar las miniaturas de las filas visibles en la primera pantalla
+            warmThumbnails(index, Math.min(visibleItems, index.size()), imageWidth, imageHeight, thumbnailsReady);
+        });
+    }
+
+    /**
+     * Cancela la espera si la actividad se destruye antes de terminar y deja de medir fotogramas.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        FrameMonitor.untrack(this);
+        coordinator.cancel();
+    }
+
+    /**
+     * Precarga las miniaturas de las primeras filas y avisa cuando han terminado todas.
+     */
+    private void warmThumbnails(CharacterRepository.Index index, int count, int width, int height,
+                                final Runnable done) {
+        if (count <= 0) {
+            done.run();
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(count);
+        ImageLoader loader = ImageLoader.getInstance(this);
+        for (int i = 0; i < count; i++) {
+            loader.prefetch(index.createCharacter(i).getImageResource(), width, height, () -> {
+                if (remaining.decrementAndGet() == 0) {
+                    done.run();
+                }
+            });
+        }
     }
 }
@@ -0,0 +1,118 @@
+package dam.pmpd.javl_tarea02;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * Coordina el fin de la pantalla de presentación a partir de señales reales de preparación.
+ *
+ * <p>Cada tarea de arranque obtiene una señal con {@link #newSignal(String)} y la ejecuta al
+ * terminar, desde cualquier hilo. Cuando todas se han completado, y ha pasado al menos la
+ * duración mínima, se avisa al {@link Listener}. Si se alcanza la duración máxima se avisa
+ * igualmente aunque falten señales.</p>
+ *
+ * @author jvillar315
+ */
+public class StartupCoordinator {
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final long minDurationMs;
+    private final long maxDurationMs;
+    private final Listener listener;
+    private final Runnable timeout = () -> finish(true);
+    private long startTime;
+    private int pendingSignals;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * @param minDurationMs Tiempo mínimo que se muestra la presentación, para evitar parpadeos.
+     * @param maxDurationMs Tiempo máximo de espera aunque alguna señal no haya llegado.
+     * @param listener      Receptor del aviso de fin, llamado en el hilo principal.
+     */
+    public StartupCoordinator(long minDurationMs, long maxDurationMs, @NonNull Listener listener) {
+        this.minDurationMs = minDurationMs;
+        this.maxDurationMs = maxDurationMs;
+        this.listener = listener;
+    }
+
+    /**
+     * Registra una nueva señal de preparación.
+     *
+     * @param name Nombre de la señal, utilizado en las métricas de arranque.
+     * @return Acción a ejecutar, desde cualquier hilo, cuando la tarea haya terminado.
+     */
+    @MainThread
+    public Runnable newSignal(@NonNull final String name) {
+        if (started) {
+            throw new IllegalStateException("Las señales deben registrarse antes de start()");
+        }
+        pendingSignals++;
+        final boolean[] signalled = new boolean[1];
+        return () -> mainHandler.post(() -> {
+            if (signalled[0] || finished) {
+                return;
+            }
+            signalled[0] = true;
+            StartupMetrics.recordSignal(name, SystemClock.uptimeMillis() - startTime);
+            pendingSignals--;
+            maybeFinish();
+        });
+    }
+
+    /**
+     * Empieza a contar el tiempo mínimo y máximo.
+     */
+    @MainThread
+    public void start() {
+        started = true;
+        startTime = SystemClock.uptimeMillis();
+        mainHandler.postDelayed(timeout, maxDurationMs);
+        maybeFinish();
+    }
+
+    /**
+     * Cancela la espera, por ejemplo si la actividad se destruye antes de terminar.
+     */
+    @MainThread
+    public void cancel() {
+        finished = true;
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void maybeFinish() {
+        if (pendingSignals > 0 || finished) {
+            return;
+        }
+        long remaining = minDurationMs - (SystemClock.uptimeMillis() - startTime);
+        if (remaining > 0) {
+            mainHandler.postDelayed(() -> finish(false), remaining);
+        } else {
+            finish(false);
+        }
+    }
+
+    private void finish(boolean timedOut) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        mainHandler.removeCallbacks(timeout);
+        StartupMetrics.recordSplashFinished(SystemClock.uptimeMillis() - startTime, timedOut);
+        listener.onReady(timedOut);
+    }
+
+    /**
+     * Receptor del fin del arranque.
+     */
+    public interface Listener {
+        /**
+         * @param timedOut true si se alcanzó la duración máxima sin recibir todas las señales.
+         */
+        void onReady(boolean timedOut);
+    }
+}
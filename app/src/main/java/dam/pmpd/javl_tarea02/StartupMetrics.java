@@ -0,0 +1,114 @@
+package dam.pmpd.javl_tarea02;
+
+import android.app.Activity;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.MainThread;
+
+/**
+ * Registro de los tiempos de arranque de la aplicación.
+ *
+ * <p>Mide cuánto tarda cada señal de preparación de la pantalla de presentación, cuánto dura
+ * esta, y el tiempo desde el inicio del proceso hasta el primer fotograma de
+ * {@link MainActivity} y hasta que la lista tiene contenido. Los valores se escriben en logcat
+ * con la etiqueta {@value #TAG}.</p>
+ *
+ * @author jvillar315
+ */
+public final class StartupMetrics {
+
+    static final String TAG = "Startup";
+
+    private static long timeToFirstFrameMs = -1;
+    private static long timeToFullyDrawnMs = -1;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Registra el momento en que una señal de preparación quedó lista.
+     *
+     * @param name      Nombre de la señal.
+     * @param elapsedMs Milisegundos desde el inicio de la presentación.
+     */
+    static void recordSignal(String name, long elapsedMs) {
+        Log.i(TAG, "Señal '" + name + "' lista en " + elapsedMs + " ms");
+    }
+
+    /**
+     * Registra el fin de la pantalla de presentación.
+     *
+     * @param durationMs Duración total de la presentación.
+     * @param timedOut   true si terminó por tiempo máximo.
+     */
+    static void recordSplashFinished(long durationMs, boolean timedOut) {
+        Log.i(TAG, "Presentación terminada en " + durationMs + " ms" + (timedOut ? " (tiempo máximo)" : ""));
+    }
+
+    /**
+     * Registra el tiempo hasta el primer fotograma dibujado por la actividad.
+     *
+     * @param activity Actividad cuyo primer fotograma se quiere medir.
+     */
+    @MainThread
+    public static void observeFirstFrame(Activity activity) {
+        if (timeToFirstFrameMs >= 0) {
+            return;
+        }
+        final View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean recorded;
+
+            @Override
+            public void onDraw() {
+                if (recorded) {
+                    return;
+                }
+                recorded = true;
+                timeToFirstFrameMs = sinceProcessStart();
+                Log.i(TAG, "Primer fotograma a los " + timeToFirstFrameMs + " ms del inicio del proceso");
+
+                // No se puede quitar el listener durante el propio dibujado
+                final ViewTreeObserver.OnDrawListener self = this;
+                decorView.post(() -> decorView.getViewTreeObserver().removeOnDrawListener(self));
+            }
+        });
+    }
+
+    /**
+     * Indica que la lista ya muestra contenido y lo notifica al sistema.
+     *
+     * @param activity Actividad que ha terminado de mostrar su contenido.
+     */
+    @MainThread
+    public static void markFullyDrawn(Activity activity) {
+        if (timeToFullyDrawnMs >= 0) {
+            return;
+        }
+        timeToFullyDrawnMs = sinceProcessStart();
+        Log.i(TAG, "Contenido completo a los " + timeToFullyDrawnMs + " ms del inicio del proceso");
+        activity.reportFullyDrawn();
+    }
+
+    /**
+     * @return Milisegundos hasta el primer fotograma, o -1 si aún no se ha dibujado.
+     */
+    public static long getTimeToFirstFrameMs() {
+        return timeToFirstFrameMs;
+    }
+
+    /**
+     * @return Milisegundos hasta tener contenido completo, o -1 si aún no se ha alcanzado.
+     */
+    public static long getTimeToFullyDrawnMs() {
+        return timeToFullyDrawnMs;
+    }
+
+    private static long sinceProcessStart() {
+        return SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+    }
+}
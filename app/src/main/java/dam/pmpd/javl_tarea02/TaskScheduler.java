@@ -0,0 +1,514 @@
+package dam.pmpd.javl_tarea02;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Planificador del trabajo en segundo plano de la aplicación, repartido en carriles por tipo.
+ *
+ * <p>Cada {@link Lane} tiene sus propios hilos y una cola acotada, de modo que una tanda de
+ * indexación no retrasa la decodificación de las imágenes visibles ni las lecturas de disco que
+ * espera la interfaz. Cuando la cola de un carril se llena, según el carril se descarta la tarea
+ * más antigua o se rechaza la nueva; en ambos casos la tarea descartada recibe
+ * {@link Callback#onFailure} con una {@link RejectedExecutionException}.</p>
+ *
+ * <p>Las tareas se lanzan desde un {@link Scope}, normalmente ligado al ciclo de vida de una
+ * actividad o un fragmento. Al cerrar el ámbito se cancelan sus tareas: las que esperan en cola
+ * se retiran y las que están en marcha terminan, pero su resultado se descarta. Los resultados se
+ * entregan en el ejecutor principal; si la cancelación se hace en ese mismo hilo, se garantiza que
+ * después no llega ningún callback. Las tareas largas pueden consultar
+ * {@link #isCurrentTaskCancelled()} para terminar antes.</p>
+ *
+ * <p>Por cada carril se mide la profundidad de la cola, el tiempo de espera y el de ejecución
+ * (ver {@link #dump(PrintWriter)}). Esta clase no depende de Android y puede probarse en la JVM
+ * con un ejecutor principal falso.</p>
+ *
+ * @author jvillar315
+ */
+public final class TaskScheduler {
+
+    /**
+     * Carriles de trabajo, con su número de hilos, su cola y su prioridad.
+     */
+    public enum Lane {
+        /**
+         * Precarga de lo que la interfaz va a mostrar enseguida. La tarea más antigua es la que
+         * menos probabilidades tiene de seguir haciendo falta.
+         */
+        PREFETCH(1, 16, true, 10),
+        /**
+         * Decodificación de imágenes para las vistas.
+         */
+        DECODE(2, 128, true, 10),
+        /**
+         * Lecturas y escrituras de disco y de recursos.
+         */
+        DISK(1, 64, false, 10),
+        /**
+         * Trabajo largo de baja prioridad, como construir índices.
+         */
+        INDEX(1, 16, false, 19);
+
+        final int threads;
+        final int capacity;
+        final boolean dropOldest;
+        // Valor para Process.setThreadPriority en Android
+        final int priority;
+
+        Lane(int threads, int capacity, boolean dropOldest, int priority) {
+            this.threads = threads;
+            this.capacity = capacity;
+            this.dropOldest = dropOldest;
+            this.priority = priority;
+        }
+
+        /**
+         * @return Prioridad de los hilos del carril, en las unidades de
+         * {@code android.os.Process.setThreadPriority}.
+         */
+        public int priority() {
+            return priority;
+        }
+    }
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private static final ThreadLocal<Task<?>> CURRENT = new ThreadLocal<>();
+
+    private final Executor mainExecutor;
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private final Scope globalScope = new Scope();
+
+    /**
+     * @param mainExecutor Ejecutor del hilo principal, en el que se entregan los resultados.
+     * @param threadSetup  Preparación de cada hilo al arrancar, por ejemplo para fijar su
+     *                     prioridad; puede ser null.
+     */
+    public TaskScheduler(Executor mainExecutor, final ThreadSetup threadSetup) {
+        this.mainExecutor = mainExecutor;
+        for (final Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneState(lane, threadSetup));
+        }
+    }
+
+    /**
+     * @return Un ámbito nuevo para lanzar tareas que se cancelan juntas.
+     */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    /**
+     * @return Ámbito de las tareas que no dependen de ninguna pantalla; no se cierra nunca.
+     */
+    public Scope globalScope() {
+        return globalScope;
+    }
+
+    /**
+     * @return true si la tarea que se está ejecutando en este hilo se ha cancelado.
+     */
+    public static boolean isCurrentTaskCancelled() {
+        Task<?> task = CURRENT.get();
+        return task != null && task.isCancelled();
+    }
+
+    /**
+     * Escribe las métricas de cada carril.
+     *
+     * @param writer Destino del resumen.
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Planificador de tareas");
+        for (LaneState state : lanes.values()) {
+            state.dump(writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Borra las métricas acumuladas de todos los carriles.
+     */
+    public void resetStats() {
+        for (LaneState state : lanes.values()) {
+            state.resetStats();
+        }
+    }
+
+    /**
+     * @param lane Carril.
+     * @return Número de tareas que esperan en su cola.
+     */
+    public int queueDepth(Lane lane) {
+        return lanes.get(lane).executor.getQueue().size();
+    }
+
+    /**
+     * Detiene los hilos de todos los carriles; las tareas pendientes no se ejecutan.
+     */
+    public void shutdown() {
+        for (LaneState state : lanes.values()) {
+            state.executor.shutdownNow();
+        }
+    }
+
+    LaneState laneState(Lane lane) {
+        return lanes.get(lane);
+    }
+
+    /**
+     * Preparación de los hilos de un carril.
+     */
+    public interface ThreadSetup {
+        /**
+         * Método llamado en cada hilo nuevo antes de ejecutar tareas.
+         *
+         * @param lane Carril al que pertenece el hilo.
+         */
+        void onThreadStarted(Lane lane);
+    }
+
+    /**
+     * Receptor del resultado de una tarea, llamado en el ejecutor principal.
+     *
+     * @param <T> Tipo del resultado.
+     */
+    public interface Callback<T> {
+        /**
+         * @param result Resultado de la tarea.
+         */
+        void onResult(T result);
+
+        /**
+         * Método llamado si la tarea lanza una excepción o si el carril la descarta por estar
+         * lleno. No se llama para las tareas canceladas.
+         *
+         * @param error Excepción de la tarea o {@link RejectedExecutionException}; con
+         *              {@link #isDropped} se distingue si la tarea llegó a ejecutarse.
+         */
+        default void onFailure(Throwable error) {
+        }
+    }
+
+    /**
+     * @param error Error recibido en {@link Callback#onFailure}.
+     * @return true si la tarea no llegó a ejecutarse porque el carril estaba lleno; false si
+     *         falló la propia tarea.
+     */
+    public static boolean isDropped(Throwable error) {
+        return error instanceof DroppedException;
+    }
+
+    /**
+     * Error con el que se notifica una tarea descartada por un carril lleno. Es distinto de una
+     * {@link RejectedExecutionException} lanzada por la propia tarea.
+     */
+    static final class DroppedException extends RejectedExecutionException {
+        DroppedException(Lane lane) {
+            super("Carril " + lane + " lleno");
+        }
+    }
+
+    /**
+     * Conjunto de tareas que se cancelan juntas, por ejemplo las de una pantalla.
+     */
+    public final class Scope {
+        private final Set<Task<?>> tasks = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed;
+
+        private Scope() {
+        }
+
+        /**
+         * Lanza una tarea sin resultado.
+         *
+         * @param lane Carril en el que se ejecuta.
+         * @param work Trabajo a realizar.
+         * @return La tarea lanzada.
+         */
+        public Task<Void> execute(Lane lane, final Runnable work) {
+            return submit(lane, () -> {
+                work.run();
+                return null;
+            }, null);
+        }
+
+        /**
+         * Lanza una tarea y entrega su resultado en el ejecutor principal.
+         *
+         * @param lane     Carril en el que se ejecuta.
+         * @param work     Trabajo a realizar.
+         * @param callback Receptor del resultado, o null si no interesa.
+         * @param <T>      Tipo del resultado.
+         * @return La tarea lanzada; si el ámbito ya está cerrado, nace cancelada.
+         */
+        public <T> Task<T> submit(Lane lane, Callable<T> work, Callback<T> callback) {
+            Task<T> task = new Task<>(this, lanes.get(lane), work, callback);
+            if (closed) {
+                task.state.set(CANCELLED);
+                return task;
+            }
+            tasks.add(task);
+            task.lane.enqueue(task);
+            // Si se ha cerrado mientras tanto, la tarea no debe sobrevivir al ámbito
+            if (closed) {
+                task.cancel();
+            }
+            return task;
+        }
+
+        /**
+         * Cancela las tareas lanzadas hasta ahora; el ámbito sigue admitiendo tareas nuevas.
+         *
+         * @return Número de tareas que aún no habían empezado y ya no se ejecutarán.
+         */
+        public int cancelAll() {
+            int removed = 0;
+            for (Task<?> task : new ArrayList<>(tasks)) {
+                if (task.cancel()) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Cancela las tareas y deja de admitir nuevas, por ejemplo al destruirse la pantalla.
+         */
+        public void close() {
+            if (this == globalScope) {
+                throw new IllegalStateException("El ámbito global no se puede cerrar");
+            }
+            closed = true;
+            cancelAll();
+        }
+
+        /**
+         * @return true si el ámbito se ha cerrado.
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * @return Número de tareas del ámbito pendientes o en marcha.
+         */
+        public int activeCount() {
+            return tasks.size();
+        }
+    }
+
+    /**
+     * Tarea lanzada en un carril.
+     *
+     * @param <T> Tipo del resultado.
+     */
+    public final class Task<T> implements Runnable {
+        private final Scope scope;
+        private final LaneState lane;
+        private final Callable<T> work;
+        private final Callback<T> callback;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final long queuedNanos = System.nanoTime();
+
+        private Task(Scope scope, LaneState lane, Callable<T> work, Callback<T> callback) {
+            this.scope = scope;
+            this.lane = lane;
+            this.work = work;
+            this.callback = callback;
+        }
+
+        /**
+         * Cancela la tarea. Si estaba en cola no llega a ejecutarse; si está en marcha termina,
+         * pero su resultado no se entrega.
+         *
+         * @return true si la tarea estaba en cola y se ha retirado.
+         */
+        public boolean cancel() {
+            int previous = state.get();
+            while (previous == QUEUED || previous == RUNNING) {
+                if (state.compareAndSet(previous, CANCELLED)) {
+                    scope.tasks.remove(this);
+                    lane.cancelled.incrementAndGet();
+                    if (previous == QUEUED) {
+                        lane.executor.remove(this);
+                        return true;
+                    }
+                    return false;
+                }
+                previous = state.get();
+            }
+            return false;
+        }
+
+        /**
+         * @return true si la tarea se ha cancelado o descartado.
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * @return true si la tarea ha terminado y su resultado, si lo había, se ha entregado.
+         */
+        public boolean isDone() {
+            return state.get() == DONE;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            long start = System.nanoTime();
+            lane.waitMicros.record((start - queuedNanos) / 1000);
+            T result = null;
+            Throwable error = null;
+            CURRENT.set(this);
+            try {
+                result = work.call();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                CURRENT.remove();
+                lane.runMicros.record((System.nanoTime() - start) / 1000);
+            }
+            if (error != null) {
+                lane.failed.incrementAndGet();
+            }
+            if (callback == null) {
+                finish();
+                return;
+            }
+            final T delivered = result;
+            final Throwable failure = error;
+            mainExecutor.execute(() -> {
+                // Una cancelación en el hilo principal antes de este punto gana a la entrega
+                if (finish()) {
+                    if (failure == null) {
+                        callback.onResult(delivered);
+                    } else {
+                        callback.onFailure(failure);
+                    }
+                }
+            });
+        }
+
+        private boolean finish() {
+            if (state.compareAndSet(RUNNING, DONE)) {
+                scope.tasks.remove(this);
+                lane.completed.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Descarta la tarea porque el carril está lleno.
+         */
+        void reject() {
+            if (state.compareAndSet(QUEUED, CANCELLED)) {
+                scope.tasks.remove(this);
+                lane.dropped.incrementAndGet();
+                if (callback != null) {
+                    final RejectedExecutionException error = new DroppedException(lane.lane);
+                    mainExecutor.execute(() -> {
+                        if (!scope.closed) {
+                            callback.onFailure(error);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Hilos, cola y métricas de un carril.
+     */
+    static final class LaneState {
+        final Lane lane;
+        final ThreadPoolExecutor executor;
+        final LatencyHistogram waitMicros = new LatencyHistogram();
+        final LatencyHistogram runMicros = new LatencyHistogram();
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicInteger maxDepth = new AtomicInteger();
+
+        LaneState(final Lane lane, final ThreadSetup threadSetup) {
+            this.lane = lane;
+            final AtomicInteger count = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(lane.threads, lane.threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(lane.capacity), runnable -> {
+                        Thread thread = new Thread(() -> {
+                            if (threadSetup != null) {
+                                threadSetup.onThreadStarted(lane);
+                            }
+                            runnable.run();
+                        }, "Lane-" + lane.name().toLowerCase(Locale.ROOT) + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, (runnable, pool) -> {
+                        if (pool.isShutdown()) {
+                            ((Task<?>) runnable).reject();
+                        } else if (lane.dropOldest) {
+                            Runnable oldest = pool.getQueue().poll();
+                            if (oldest != null) {
+                                ((Task<?>) oldest).reject();
+                            }
+                            pool.execute(runnable);
+                        } else {
+                            ((Task<?>) runnable).reject();
+                        }
+                    });
+        }
+
+        void enqueue(Task<?> task) {
+            submitted.incrementAndGet();
+            executor.execute(task);
+            int depth = executor.getQueue().size();
+            int max;
+            while (depth > (max = maxDepth.get()) && !maxDepth.compareAndSet(max, depth)) {
+                // Otro hilo ha actualizado el máximo; se vuelve a comparar
+            }
+        }
+
+        void dump(PrintWriter writer) {
+            writer.println(String.format(Locale.ROOT,
+                    "  %s (%d hilos): cola=%d/%d máx=%d enviadas=%d completadas=%d errores=%d canceladas=%d descartadas=%d",
+                    lane.name().toLowerCase(Locale.ROOT), lane.threads, executor.getQueue().size(), lane.capacity,
+                    maxDepth.get(), submitted.get(), completed.get(), failed.get(), cancelled.get(), dropped.get()));
+            writer.println("    espera " + waitMicros.summary(1000, "ms"));
+            writer.println("    ejecución " + runMicros.summary(1000, "ms"));
+        }
+
+        void resetStats() {
+            waitMicros.reset();
+            runMicros.reset();
+            submitted.set(0);
+            completed.set(0);
+            failed.set(0);
+            cancelled.set(0);
+            dropped.set(0);
+            maxDepth.set(executor.getQueue().size());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Caché persistente de miniaturas de personajes ya escaladas.
+ *
+ * <p>Adapta {@link ThumbnailStore} a objetos {@link Bitmap}: los píxeles se guardan en bruto en
+ * formato ARGB_8888 y se leen directamente desde la memoria mapeada con
+ * {@link Bitmap#copyPixelsFromBuffer}. Se genera un contenedor por densidad de pantalla y se
+ * invalida cuando cambia el {@code versionCode} o se reinstala la aplicación. Las miniaturas no
+ * dependen del idioma, por lo que sobreviven a un cambio de idioma.</p>
+ *
+ * @author jvillar315
+ */
+public class ThumbnailDiskCache {
+
+    // Tamaño máximo del contenedor en disco
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    // Solo se guardan en disco imágenes pequeñas (miniaturas de la lista)
+    static final int MAX_THUMBNAIL_PIXELS = 320 * 320;
+
+    @Nullable
+    private final ThumbnailStore store;
+
+    /**
+     * Abre el contenedor de miniaturas correspondiente a la densidad del dispositivo.
+     *
+     * <p>Debe llamarse fuera del hilo principal, ya que accede a disco.</p>
+     *
+     * @param context Contexto de la aplicación.
+     */
+    @WorkerThread
+    public ThumbnailDiskCache(Context context) {
+        int density = context.getResources().getDisplayMetrics().densityDpi;
+        File path = new File(context.getCacheDir(), "thumbnails-" + density + ".bin");
+
+        ThumbnailStore opened = null;
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            opened = new ThumbnailStore(path, versionCode(info), info.lastUpdateTime, density, MAX_BYTES);
+        } catch (IOException | PackageManager.NameNotFoundException e) {
+            // Sin caché en disco se sigue decodificando desde los recursos
+        }
+        this.store = opened;
+    }
+
+    /**
+     * Indica si una imagen del tamaño y configuración indicados se guarda en disco.
+     *
+     * @param width  Ancho de la imagen.
+     * @param height Alto de la imagen.
+     * @param config Configuración de píxeles.
+     * @return true si es una miniatura apta para la caché en disco.
+     */
+    public static boolean accepts(int width, int height, Bitmap.Config config) {
+        return config == Bitmap.Config.ARGB_8888 && (long) width * height <= MAX_THUMBNAIL_PIXELS;
+    }
+
+    /**
+     * Recupera una miniatura del disco.
+     *
+     * @param resId  Recurso de la imagen original.
+     * @param width  Ancho de la miniatura.
+     * @param height Alto de la miniatura.
+     * @return Un bitmap nuevo con los píxeles almacenados, o null si no existe.
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap get(int resId, int width, int height) {
+        if (store == null) {
+            return null;
+        }
+        ByteBuffer pixels = store.get(resId, width, height);
+        if (pixels == null || pixels.remaining() != width * height * 4) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(pixels);
+        return bitmap;
+    }
+
+    /**
+     * Guarda una miniatura en disco si todavía no existe.
+     *
+     * @param resId  Recurso de la imagen original.
+     * @param bitmap Miniatura ya escalada en formato ARGB_8888.
+     */
+    @WorkerThread
+    public void put(int resId, Bitmap bitmap) {
+        if (store == null || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+        ByteBuffer pixels = ByteBuffer.allocateDirect(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.flip();
+        try {
+            store.put(resId, bitmap.getWidth(), bitmap.getHeight(), pixels);
+        } catch (IOException e) {
+            // Un fallo al escribir solo implica que la próxima vez se decodificará de nuevo
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long versionCode(PackageInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return info.getLongVersionCode();
+        }
+        return info.versionCode;
+    }
+}
@@ -0,0 +1,268 @@
+package dam.pmpd.javl_tarea02;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contenedor en disco de miniaturas ya escaladas, leído mediante memoria mapeada.
+ *
+ * <p>El fichero tiene una cabecera con la versión del formato, la versión de la aplicación y la
+ * densidad de pantalla para la que se generaron las miniaturas. A continuación se añaden los
+ * registros uno detrás de otro: identificador de la imagen, ancho, alto, longitud y los píxeles
+ * en bruto. Si la cabecera no coincide con la esperada, el contenido se descarta.</p>
+ *
+ * <p>Las lecturas devuelven vistas de solo lectura sobre el {@link MappedByteBuffer}, por lo que
+ * los píxeles no se copian a arrays del heap. Las escrituras también se hacen sobre la proyección,
+ * que crece por bloques de {@link #MAP_CHUNK} bytes (o al doble, si es mayor): el fichero solo se
+ * vuelve a proyectar cuando un registro no cabe en la zona ya proyectada, no en cada miniatura.
+ * El final de la zona usada se reconoce porque el espacio reservado está a cero. Esta clase no
+ * depende de Android y puede probarse en la JVM.</p>
+ *
+ * @author jvillar315
+ */
+public class ThumbnailStore implements Closeable {
+
+    // "THMB" en ASCII
+    static final int MAGIC = 0x54484D42;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 16;
+    // Crecimiento mínimo de la zona proyectada
+    static final int MAP_CHUNK = 256 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long maxBytes;
+    private final Map<Long, Entry> index = new HashMap<>();
+    private MappedByteBuffer mapped;
+    // Final del último registro; a partir de ahí el fichero está reservado y a cero
+    private long end;
+    private int mapCount;
+
+    /**
+     * Abre (o crea) un contenedor de miniaturas.
+     *
+     * @param path       Fichero del contenedor.
+     * @param appVersion Versión de la aplicación; un valor distinto invalida el contenido.
+     * @param buildStamp Marca de la instalación (por ejemplo, la fecha de actualización).
+     * @param density    Densidad de pantalla para la que se generan las miniaturas.
+     * @param maxBytes   Tamaño máximo del fichero; al alcanzarlo se dejan de añadir miniaturas.
+     * @throws IOException Si el fichero no se puede abrir.
+     */
+    public ThumbnailStore(File path, long appVersion, long buildStamp, int density, long maxBytes)
+            throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        this.maxBytes = maxBytes;
+
+        if (!readHeader(appVersion, buildStamp, density)) {
+            reset(appVersion, buildStamp, density);
+        }
+        scanRecords();
+        map(channel.size());
+    }
+
+    /**
+     * Devuelve los píxeles de una miniatura sin copiarlos.
+     *
+     * @param imageId Identificador de la imagen.
+     * @param width   Ancho de la miniatura.
+     * @param height  Alto de la miniatura.
+     * @return Una vista de solo lectura con los píxeles, o null si no está almacenada.
+     */
+    public synchronized ByteBuffer get(int imageId, int width, int height) {
+        Entry entry = index.get(key(imageId, width, height));
+        if (entry == null || mapped == null) {
+            return null;
+        }
+        ByteBuffer view = mapped.duplicate();
+        view.position((int) entry.offset);
+        view.limit((int) (entry.offset + entry.length));
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Añade una miniatura al final del contenedor, salvo que ya exista o no quepa.
+     *
+     * @param imageId Identificador de la imagen.
+     * @param width   Ancho de la miniatura.
+     * @param height  Alto de la miniatura.
+     * @param pixels  Píxeles a guardar, desde su posición hasta su límite.
+     * @throws IOException Si no se pudo escribir en disco.
+     */
+    public synchronized void put(int imageId, int width, int height, ByteBuffer pixels) throws IOException {
+        long k = key(imageId, width, height);
+        if (index.containsKey(k)) {
+            return;
+        }
+        int length = pixels.remaining();
+        long recordEnd = end + RECORD_HEADER_SIZE + length;
+        if (width <= 0 || height <= 0 || recordEnd > maxBytes) {
+            // Contenedor lleno. No se trunca en caliente porque las vistas mapeadas ya entregadas
+            // seguirían apuntando a la zona eliminada; se regenerará con la siguiente versión.
+            return;
+        }
+        if (mapped == null || recordEnd > mapped.capacity()) {
+            long capacity = mapped != null ? mapped.capacity() : 0;
+            long grown = Math.max(2 * capacity, (recordEnd + MAP_CHUNK - 1) / MAP_CHUNK * MAP_CHUNK);
+            map(Math.min(grown, maxBytes));
+        }
+
+        // Primero los píxeles y por último el ancho: un registro a medias se lee como espacio libre
+        ByteBuffer target = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        target.position((int) (end + RECORD_HEADER_SIZE));
+        target.put(pixels.duplicate());
+        target.putInt((int) end, imageId);
+        target.putInt((int) end + 8, height);
+        target.putInt((int) end + 12, length);
+        target.putInt((int) end + 4, width);
+
+        index.put(k, new Entry(end + RECORD_HEADER_SIZE, length));
+        end = recordEnd;
+    }
+
+    /**
+     * @return Número de miniaturas almacenadas.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return Veces que se ha proyectado el fichero desde que se abrió.
+     */
+    synchronized int mapCount() {
+        return mapCount;
+    }
+
+    /**
+     * Cierra el fichero del contenedor y libera el espacio reservado tras el último registro.
+     *
+     * <p>Las vistas entregadas por {@link #get} dejan de ser válidas.</p>
+     *
+     * @throws IOException Si se produce un error al cerrar.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        index.clear();
+        try {
+            if (channel.size() > end) {
+                channel.truncate(end);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Comprueba si la cabecera existente corresponde a la versión y densidad esperadas.
+     */
+    private boolean readHeader(long appVersion, long buildStamp, int density) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC
+                && header.getInt() == FORMAT_VERSION
+                && header.getLong() == appVersion
+                && header.getLong() == buildStamp
+                && header.getInt() == density;
+    }
+
+    /**
+     * Vacía el contenedor y escribe una cabecera nueva.
+     */
+    private void reset(long appVersion, long buildStamp, int density) throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(appVersion).putLong(buildStamp).putInt(density);
+        header.position(HEADER_SIZE);
+        header.flip();
+        writeFully(header, 0);
+    }
+
+    /**
+     * Reconstruye el índice recorriendo los registros y descarta el espacio reservado y un posible
+     * registro incompleto final.
+     */
+    private void scanRecords() throws IOException {
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int imageId = header.getInt();
+            int width = header.getInt();
+            int height = header.getInt();
+            int length = header.getInt();
+            long dataStart = position + RECORD_HEADER_SIZE;
+            if (width <= 0 || height <= 0 || length < 0 || dataStart + length > size) {
+                break;
+            }
+            index.put(key(imageId, width, height), new Entry(dataStart, length));
+            position = dataStart + length;
+        }
+        if (position < size) {
+            // Espacio reservado o registro cortado por un cierre inesperado
+            channel.truncate(position);
+        }
+        end = position;
+    }
+
+    /**
+     * Proyecta el fichero con el tamaño indicado, ampliándolo con ceros si hace falta. Las vistas
+     * ya entregadas siguen siendo válidas sobre la proyección anterior.
+     */
+    private void map(long size) throws IOException {
+        if (size > HEADER_SIZE) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapCount++;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Fin de fichero inesperado en " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static long key(int imageId, int width, int height) {
+        return ((long) imageId << 32) | ((long) (width & 0xFFFF) << 16) | (height & 0xFFFF);
+    }
+
+    /**
+     * Posición y longitud de los píxeles de una miniatura dentro del fichero.
+     */
+    private static final class Entry {
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
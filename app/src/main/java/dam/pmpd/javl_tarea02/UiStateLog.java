@@ -0,0 +1,161 @@
+package dam.pmpd.javl_tarea02;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro de los estados de la interfaz a lo largo del tiempo.
+ *
+ * <p>Cada estado es un par clave-valor (por ejemplo, {@code list=scrolling}) con su instante de
+ * inicio y de fin. Las métricas de un fotograma llegan cuando ya se ha dibujado, y para entonces
+ * el estado puede haber cambiado; por eso se conservan los estados terminados durante
+ * {@link #retentionNanos} y cada fotograma se etiqueta con los estados que estuvieron activos en
+ * algún momento entre su inicio y su fin. Los tiempos son los de {@link System#nanoTime()}, la
+ * misma base que usan las métricas de fotogramas de Android.</p>
+ *
+ * <p>Ni los cambios de estado ni el etiquetado de fotogramas reservan memoria una vez que cada
+ * clave y cada valor han aparecido por primera vez: las etiquetas se crean una sola vez por par
+ * clave-valor, los intervalos terminados se reutilizan al salir del periodo de retención y los
+ * recorridos se hacen por índice, sin iteradores. Esta clase no depende de Android y puede
+ * probarse en la JVM.</p>
+ *
+ * @author jvillar315
+ */
+final class UiStateLog {
+
+    private final long retentionNanos;
+    // Una entrada por clave, creada la primera vez que aparece; se recorre por índice
+    private final Map<String, Slot> slotsByKey = new HashMap<>();
+    private final List<Slot> slots = new ArrayList<>();
+    // Estados terminados recientemente, del más antiguo al más reciente
+    private final List<Interval> ended = new ArrayList<>();
+    // Intervalos ya descartados, listos para reutilizarse
+    private final List<Interval> free = new ArrayList<>();
+
+    /**
+     * @param retentionNanos Tiempo que se conservan los estados terminados.
+     */
+    UiStateLog(long retentionNanos) {
+        this.retentionNanos = retentionNanos;
+    }
+
+    /**
+     * Activa un estado, terminando el valor anterior de la misma clave si era distinto.
+     *
+     * @param key   Clave del estado.
+     * @param value Valor del estado.
+     * @param now   Instante del cambio.
+     */
+    synchronized void put(String key, String value, long now) {
+        Slot slot = slotsByKey.get(key);
+        if (slot == null) {
+            slot = new Slot(key);
+            slotsByKey.put(key, slot);
+            slots.add(slot);
+        }
+        Interval current = slot.current;
+        if (current != null) {
+            if (current.value.equals(value)) {
+                return;
+            }
+            end(current, now);
+        }
+        slot.current = obtain(slot.tagFor(value), value, now);
+    }
+
+    /**
+     * Termina el estado de una clave, si estaba activo.
+     *
+     * @param key Clave del estado.
+     * @param now Instante del cambio.
+     */
+    synchronized void remove(String key, long now) {
+        Slot slot = slotsByKey.get(key);
+        if (slot != null && slot.current != null) {
+            end(slot.current, now);
+            slot.current = null;
+        }
+    }
+
+    /**
+     * Añade a {@code out} las etiquetas de los estados activos en algún momento del intervalo.
+     *
+     * @param start Inicio del fotograma.
+     * @param end   Fin del fotograma.
+     * @param out   Lista donde añadir las etiquetas, sin repetir las que ya contenga.
+     */
+    synchronized void collect(long start, long end, List<String> out) {
+        prune(end);
+        for (int i = 0; i < ended.size(); i++) {
+            Interval interval = ended.get(i);
+            if (interval.start <= end && interval.end >= start && !out.contains(interval.tag)) {
+                out.add(interval.tag);
+            }
+        }
+        for (int i = 0; i < slots.size(); i++) {
+            Interval interval = slots.get(i).current;
+            if (interval != null && interval.start <= end && !out.contains(interval.tag)) {
+                out.add(interval.tag);
+            }
+        }
+    }
+
+    private void end(Interval interval, long now) {
+        interval.end = now;
+        ended.add(interval);
+        prune(now);
+    }
+
+    /**
+     * Descarta los estados que terminaron antes del periodo de retención y guarda sus intervalos
+     * para reutilizarlos.
+     */
+    private void prune(long now) {
+        while (!ended.isEmpty() && ended.get(0).end < now - retentionNanos) {
+            free.add(ended.remove(0));
+        }
+    }
+
+    private Interval obtain(String tag, String value, long start) {
+        Interval interval = free.isEmpty() ? new Interval() : free.remove(free.size() - 1);
+        interval.tag = tag;
+        interval.value = value;
+        interval.start = start;
+        interval.end = Long.MAX_VALUE;
+        return interval;
+    }
+
+    /**
+     * Estado activo de una clave y etiquetas ya creadas para sus valores.
+     */
+    private static final class Slot {
+        final String key;
+        final Map<String, String> tags = new HashMap<>();
+        Interval current;
+
+        Slot(String key) {
+            this.key = key;
+        }
+
+        String tagFor(String value) {
+            String tag = tags.get(value);
+            if (tag == null) {
+                tag = key + "=" + value;
+                tags.put(value, tag);
+            }
+            return tag;
+        }
+    }
+
+    /**
+     * Periodo durante el que un estado estuvo activo.
+     */
+    private static final class Interval {
+        String tag;
+        String value;
+        long start;
+        long end;
+    }
+}
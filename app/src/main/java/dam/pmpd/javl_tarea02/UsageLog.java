@@ -0,0 +1,691 @@
+package dam.pmpd.javl_tarea02;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Registro local de los personajes vistos y favoritos, en un log binario de solo añadir.
+ *
+ * <p>Cada evento (visto, marcado o desmarcado como favorito) se añade a una cola sin bloqueos y
+ * se aplica a los contadores en memoria, que son los que se consultan. Un único hilo de escritura
+ * vacía la cola, escribe todos los eventos pendientes de una vez al final de
+ * {@code events-<generación>.log} y hace un solo {@code fsync} por lote: los toques que llegan
+ * mientras se escribe forman el lote siguiente.</p>
+ *
+ * <p>Cada registro lleva su longitud y su CRC32. Al recuperar el estado se lee la última
+ * instantánea y después los logs de su generación en adelante; si el proceso murió a mitad de un
+ * registro, la lectura se detiene en el último registro válido y el fichero se recorta ahí. Cuando
+ * el log supera el tamaño indicado, el estado escrito se compacta en {@code snapshot.bin}: se
+ * abre un log de la generación siguiente, la instantánea se escribe en un temporal, se sincroniza
+ * y se renombra, y solo entonces se borran los logs anteriores. Un fallo en cualquier punto deja
+ * una combinación de instantánea y logs que da el mismo resultado.</p>
+ *
+ * <p>No depende de Android, para poder probarse en la JVM.</p>
+ *
+ * @author jvillar315
+ */
+public final class UsageLog {
+
+    /** Tamaño del log a partir del cual se compacta por defecto. */
+    public static final long DEFAULT_COMPACT_BYTES = 64 * 1024;
+
+    // "ULOG" y "USNP" en ASCII
+    static final int LOG_MAGIC = 0x554C4F47;
+    static final int SNAPSHOT_MAGIC = 0x55534E50;
+    static final int FORMAT_VERSION = 1;
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    // Cabecera del log (firma y versión) y de cada registro (longitud y CRC32)
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    // Ningún registro válido ocupa más: un tipo, una fecha y un identificador corto
+    private static final int MAX_PAYLOAD = 1024;
+
+    static final byte TYPE_VIEW = 1;
+    static final byte TYPE_FAVORITE = 2;
+    static final byte TYPE_UNFAVORITE = 3;
+
+    private final File directory;
+    private final Executor writer;
+    private final long compactBytes;
+
+    // Camino rápido: cola de eventos pendientes y contadores consultados por la interfaz
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Counter> live = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean recovered;
+    private final Runnable flushTask = this::flushQuietly;
+
+    // Solo se accede desde el hilo de escritura, con writeLock
+    private final Object writeLock = new Object();
+    private final Map<String, Counter> durable = new HashMap<>();
+    private final List<Event> retry = new ArrayList<>();
+    private FileChannel log;
+    private int generation;
+    private long logBytes;
+
+    // Métricas, para el volcado
+    private volatile int recoveredEvents;
+    private volatile long truncatedBytes;
+    private volatile int batches;
+    private volatile int writtenEvents;
+    private volatile int maxBatch;
+    private volatile int compactions;
+    private volatile IOException lastError;
+
+    /**
+     * Crea el registro sin tocar el disco; {@link #recover()} lee el estado guardado.
+     *
+     * @param directory    Directorio propio del registro.
+     * @param writer       Ejecutor serie en el que se escriben los lotes.
+     * @param compactBytes Tamaño del log a partir del cual se compacta.
+     */
+    public UsageLog(File directory, Executor writer, long compactBytes) {
+        this.directory = directory;
+        this.writer = writer;
+        this.compactBytes = compactBytes;
+    }
+
+    /**
+     * Anota que se ha abierto un personaje.
+     *
+     * @param id  Identificador del personaje.
+     * @param now Instante en milisegundos.
+     */
+    public void recordView(String id, long now) {
+        enqueue(new Event(TYPE_VIEW, id, now));
+    }
+
+    /**
+     * Marca o desmarca un personaje como favorito.
+     *
+     * @param id       Identificador del personaje.
+     * @param favorite true para marcarlo.
+     * @param now      Instante en milisegundos.
+     */
+    public void setFavorite(String id, boolean favorite, long now) {
+        enqueue(new Event(favorite ? TYPE_FAVORITE : TYPE_UNFAVORITE, id, now));
+    }
+
+    /**
+     * Encola el evento sin bloquear, lo aplica a los contadores si el estado ya está recuperado y
+     * programa la escritura si no había ninguna pendiente.
+     */
+    private void enqueue(Event event) {
+        queue.offer(event);
+        if (recovered) {
+            applyLive(event);
+        }
+        scheduleFlush();
+    }
+
+    private void applyLive(Event event) {
+        // Exactamente una vez, lo aplique este hilo o la recuperación
+        if (event.applied.compareAndSet(false, true)) {
+            Counter counter = live.get(event.id);
+            if (counter == null) {
+                Counter created = new Counter();
+                counter = live.putIfAbsent(event.id, created);
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+            counter.apply(event);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(flushTask);
+            } catch (RejectedExecutionException e) {
+                // Se intentará de nuevo con el siguiente evento
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * @param id Identificador del personaje.
+     * @return Veces que se ha abierto.
+     */
+    public int viewCount(String id) {
+        Counter counter = live.get(id);
+        return counter != null ? counter.views.get() : 0;
+    }
+
+    /**
+     * @param id Identificador del personaje.
+     * @return Instante en milisegundos en que se abrió por última vez, o 0 si nunca.
+     */
+    public long lastViewed(String id) {
+        Counter counter = live.get(id);
+        return counter != null ? counter.lastViewed : 0;
+    }
+
+    /**
+     * @param id Identificador del personaje.
+     * @return true si está marcado como favorito.
+     */
+    public boolean isFavorite(String id) {
+        Counter counter = live.get(id);
+        return counter != null && counter.favorite;
+    }
+
+    /**
+     * @return Identificadores de los favoritos, en orden alfabético.
+     */
+    public List<String> favorites() {
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, Counter> entry : live.entrySet()) {
+            if (entry.getValue().favorite) {
+                ids.add(entry.getKey());
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @param limit Número máximo de resultados.
+     * @return Los personajes más vistos, primero el que más; a igualdad, el más reciente.
+     */
+    public List<String> mostViewed(int limit) {
+        return viewed(limit, new Comparator<Map.Entry<String, Counter>>() {
+            @Override
+            public int compare(Map.Entry<String, Counter> a, Map.Entry<String, Counter> b) {
+                int byViews = Integer.compare(b.getValue().views.get(), a.getValue().views.get());
+                return byViews != 0 ? byViews : Long.compare(b.getValue().lastViewed, a.getValue().lastViewed);
+            }
+        });
+    }
+
+    /**
+     * @param limit Número máximo de resultados.
+     * @return Los personajes vistos, del más reciente al más antiguo.
+     */
+    public List<String> recentlyViewed(int limit) {
+        return viewed(limit, new Comparator<Map.Entry<String, Counter>>() {
+            @Override
+            public int compare(Map.Entry<String, Counter> a, Map.Entry<String, Counter> b) {
+                return Long.compare(b.getValue().lastViewed, a.getValue().lastViewed);
+            }
+        });
+    }
+
+    private List<String> viewed(int limit, Comparator<Map.Entry<String, Counter>> order) {
+        List<Map.Entry<String, Counter>> entries = new ArrayList<>();
+        for (Map.Entry<String, Counter> entry : live.entrySet()) {
+            if (entry.getValue().views.get() > 0) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries, order);
+        List<String> ids = new ArrayList<>(Math.min(limit, entries.size()));
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            ids.add(entries.get(i).getKey());
+        }
+        return ids;
+    }
+
+    /**
+     * Lee la instantánea y los logs, recorta el final dañado y deja abierto el log actual. Los
+     * eventos registrados antes se suman a lo recuperado.
+     *
+     * <p>Se debe llamar una vez, en el hilo de escritura, antes de que haga falta consultar. Si no
+     * se llega a llamar, la hace el primer {@link #flush()}.</p>
+     *
+     * @throws IOException Si no se puede leer o preparar el directorio.
+     */
+    public void recover() throws IOException {
+        synchronized (writeLock) {
+            if (recovered) {
+                return;
+            }
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("No se puede crear " + directory);
+            }
+            int snapshotGeneration = readSnapshot();
+            int[] generations = logGenerations();
+            generation = snapshotGeneration;
+            for (int logGeneration : generations) {
+                File file = logFile(logGeneration);
+                if (logGeneration < snapshotGeneration) {
+                    // Ya compactado: quedó por un fallo entre renombrar la instantánea y borrarlo
+                    deleteQuietly(file);
+                } else {
+                    replay(file);
+                    generation = logGeneration;
+                }
+            }
+            openLog(generation);
+
+            for (Map.Entry<String, Counter> entry : durable.entrySet()) {
+                live.put(entry.getKey(), entry.getValue().copy());
+            }
+            recovered = true;
+            // Los eventos encolados antes de terminar se aplican ahora, si no lo ha hecho ya su hilo
+            for (Event event : queue) {
+                applyLive(event);
+            }
+        }
+        if (!queue.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * @return true si ya se ha recuperado el estado guardado.
+     */
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Escribe en el log los eventos pendientes como un único lote sincronizado en disco y
+     * compacta si el log ha crecido demasiado. Si el estado guardado aún no se ha recuperado, lo
+     * recupera antes.
+     *
+     * @return Número de eventos escritos.
+     * @throws IOException Si falla la recuperación o la escritura; los eventos se reintentan en el
+     *                     siguiente lote.
+     */
+    public int flush() throws IOException {
+        synchronized (writeLock) {
+            // Antes de vaciar la cola: lo que llegue a partir de aquí programa otro lote
+            flushScheduled.set(false);
+            if (!recovered) {
+                // La recuperación no ha llegado a ejecutarse, por ejemplo porque el ejecutor la
+                // rechazó: sin ella no se puede escribir en el log actual
+                recover();
+            }
+            Event event;
+            while ((event = queue.poll()) != null) {
+                retry.add(event);
+            }
+            if (retry.isEmpty()) {
+                return 0;
+            }
+            int count = retry.size();
+            ByteBuffer batch = ByteBuffer.wrap(encode(retry));
+            long start = log.size();
+            try {
+                while (batch.hasRemaining()) {
+                    log.write(batch);
+                }
+                log.force(false);
+            } catch (IOException e) {
+                // Quitar lo que se haya podido escribir a medias para no dejar un registro roto
+                log.truncate(start);
+                throw e;
+            }
+            logBytes = log.size();
+            for (Event written : retry) {
+                applyDurable(durable, written);
+            }
+            retry.clear();
+            batches++;
+            writtenEvents += count;
+            maxBatch = Math.max(maxBatch, count);
+            if (logBytes >= compactBytes) {
+                compact();
+            }
+            return count;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+            lastError = null;
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    /**
+     * Guarda el estado escrito en una instantánea y empieza un log vacío de la generación
+     * siguiente. Se hace sola desde {@link #flush()}; llamarla directamente sirve para pruebas.
+     *
+     * @throws IOException Si falla la escritura; el estado anterior sigue siendo válido.
+     */
+    public void compact() throws IOException {
+        synchronized (writeLock) {
+            if (!recovered) {
+                return;
+            }
+            int previous = generation;
+            log.close();
+            openLog(previous + 1);
+            writeSnapshot(generation);
+            for (int old : logGenerations()) {
+                if (old < generation) {
+                    deleteQuietly(logFile(old));
+                }
+            }
+            compactions++;
+        }
+    }
+
+    /**
+     * Escribe lo pendiente y cierra el log.
+     *
+     * @throws IOException Si falla la última escritura.
+     */
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            try {
+                flush();
+            } finally {
+                if (log != null) {
+                    log.close();
+                    log = null;
+                }
+                recovered = false;
+            }
+        }
+    }
+
+    /**
+     * Escribe las métricas del registro.
+     *
+     * @param writer Destino del resumen.
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Registro de uso (" + directory + ")");
+        writer.println("  generación=" + generation + " log=" + logBytes + " B compactaciones=" + compactions);
+        writer.println("  recuperados=" + recoveredEvents + " recortados=" + truncatedBytes + " B");
+        writer.println("  lotes=" + batches + " eventos=" + writtenEvents + " mayor lote=" + maxBatch
+                + " pendientes=" + queue.size());
+        writer.println("  personajes=" + live.size() + " favoritos=" + favorites().size());
+        IOException error = lastError;
+        if (error != null) {
+            writer.println("  error: " + error.getMessage());
+        }
+        writer.flush();
+    }
+
+    private File logFile(int logGeneration) {
+        return new File(directory, "events-" + logGeneration + ".log");
+    }
+
+    /**
+     * @return Las generaciones de los logs existentes, de menor a mayor.
+     */
+    private int[] logGenerations() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] generations = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith("events-") && name.endsWith(".log")) {
+                try {
+                    generations[count++] = Integer.parseInt(name.substring(7, name.length() - 4));
+                } catch (NumberFormatException e) {
+                    // No es un log de este registro
+                }
+            }
+        }
+        generations = Arrays.copyOf(generations, count);
+        Arrays.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Abre para añadir el log de una generación, creándolo con su cabecera si no existe.
+     */
+    private void openLog(int logGeneration) throws IOException {
+        File file = logFile(logGeneration);
+        boolean created = !file.exists() || file.length() < LOG_HEADER_SIZE;
+        log = new RandomAccessFile(file, "rw").getChannel();
+        if (created) {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+            header.putInt(LOG_MAGIC).putInt(FORMAT_VERSION).flip();
+            log.truncate(0);
+            log.write(header, 0);
+            log.force(true);
+        }
+        log.position(log.size());
+        generation = logGeneration;
+        logBytes = log.size();
+    }
+
+    /**
+     * Aplica los registros válidos de un log y recorta lo que quede detrás del último.
+     */
+    private void replay(File file) throws IOException {
+        long valid = LOG_HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != LOG_MAGIC || in.readInt() != FORMAT_VERSION) {
+                valid = 0;
+            } else {
+                byte[] payload = new byte[MAX_PAYLOAD];
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > MAX_PAYLOAD) {
+                        break;
+                    }
+                    in.readFully(payload, 0, length);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    applyDurable(durable, decode(payload, length));
+                    recoveredEvents++;
+                    valid += RECORD_HEADER_SIZE + length;
+                }
+            }
+        } catch (EOFException e) {
+            // Registro cortado por una caída: se descarta
+        }
+        if (file.length() > valid) {
+            truncatedBytes += file.length() - valid;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+                raf.getFD().sync();
+            }
+        }
+    }
+
+    /**
+     * Lee la instantánea, si existe y es válida.
+     *
+     * @return La primera generación de log que no incluye, o 0 si no hay instantánea.
+     */
+    private int readSnapshot() throws IOException {
+        File file = new File(directory, SNAPSHOT_FILE);
+        if (!file.isFile()) {
+            return 0;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            new DataInputStream(in).readFully(bytes);
+        }
+        if (bytes.length < 12) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong()) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != FORMAT_VERSION) {
+            return 0;
+        }
+        int snapshotGeneration = in.readInt();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Counter counter = new Counter();
+            String id = in.readUTF();
+            counter.views.set(in.readInt());
+            counter.lastViewed = in.readLong();
+            counter.favorite = in.readBoolean();
+            durable.put(id, counter);
+        }
+        return snapshotGeneration;
+    }
+
+    /**
+     * Escribe la instantánea en un temporal sincronizado y la renombra sobre la anterior.
+     */
+    private void writeSnapshot(int firstLogGeneration) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(firstLogGeneration);
+        out.writeInt(durable.size());
+        for (Map.Entry<String, Counter> entry : durable.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().views.get());
+            out.writeLong(entry.getValue().lastViewed);
+            out.writeBoolean(entry.getValue().favorite);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        File temporary = new File(directory, SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary)) {
+            bytes.writeTo(file);
+            file.getFD().sync();
+        }
+        if (!temporary.renameTo(new File(directory, SNAPSHOT_FILE))) {
+            throw new IOException("No se puede renombrar " + temporary);
+        }
+    }
+
+    /**
+     * Codifica un lote de eventos como registros consecutivos del log.
+     */
+    static byte[] encode(List<Event> events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(events.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        CRC32 crc = new CRC32();
+        for (Event event : events) {
+            payloadBytes.reset();
+            payload.writeByte(event.type);
+            payload.writeLong(event.time);
+            payload.writeUTF(event.id);
+            payload.flush();
+            byte[] record = payloadBytes.toByteArray();
+            crc.reset();
+            crc.update(record);
+            out.writeInt(record.length);
+            out.writeInt((int) crc.getValue());
+            out.write(record);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Event decode(byte[] payload, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+        byte type = in.readByte();
+        long time = in.readLong();
+        return new Event(type, in.readUTF(), time);
+    }
+
+    private static void applyDurable(Map<String, Counter> state, Event event) {
+        Counter counter = state.get(event.id);
+        if (counter == null) {
+            counter = new Counter();
+            state.put(event.id, counter);
+        }
+        counter.apply(event);
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Evento pendiente de escribir.
+     */
+    static final class Event {
+        final byte type;
+        final String id;
+        final long time;
+        // Si ya se ha aplicado a los contadores en memoria
+        final AtomicBoolean applied = new AtomicBoolean();
+
+        Event(byte type, String id, long time) {
+            this.type = type;
+            this.id = id;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Contadores de un personaje.
+     */
+    private static final class Counter {
+        final AtomicInteger views = new AtomicInteger();
+        volatile long lastViewed;
+        volatile boolean favorite;
+
+        void apply(Event event) {
+            switch (event.type) {
+                case TYPE_VIEW:
+                    views.incrementAndGet();
+                    lastViewed = Math.max(lastViewed, event.time);
+                    break;
+                case TYPE_FAVORITE:
+                    favorite = true;
+                    break;
+                case TYPE_UNFAVORITE:
+                    favorite = false;
+                    break;
+                default:
+                    // Tipo de una versión posterior: se ignora
+                    break;
+            }
+        }
+
+        Counter copy() {
+            Counter copy = new Counter();
+            copy.views.set(views.get());
+            copy.lastViewed = lastViewed;
+            copy.favorite = favorite;
+            return copy;
+        }
+    }
+}
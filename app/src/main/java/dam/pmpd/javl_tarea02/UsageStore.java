@@ -0,0 +1,163 @@
+package dam.pmpd.javl_tarea02;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Personajes abiertos y favoritos del usuario, guardados en un {@link UsageLog}.
+ *
+ * <p>En lugar de reescribir unas {@link android.content.SharedPreferences} en cada toque, cada
+ * evento se encola sin bloquear el hilo principal y se escribe por lotes en el carril de disco
+ * de {@link AppScheduler}. El estado guardado se recupera en ese mismo carril al iniciar el
+ * proceso, o en la primera escritura si el carril estaba lleno; hasta entonces las consultas
+ * devuelven valores vacíos, y los eventos registrados mientras tanto se suman al terminar.</p>
+ *
+ * @author jvillar315
+ */
+public final class UsageStore {
+
+    static final String TAG = "UsageStore";
+
+    // Directorio del registro dentro de los ficheros de la aplicación
+    private static final String DIRECTORY = "usage";
+
+    private static volatile UsageStore instance;
+
+    private final UsageLog log;
+
+    private UsageStore(Context context) {
+        File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+        this.log = new UsageLog(directory, runnable -> {
+            // El carril de disco rechaza tareas cuando está lleno; el registro lo reintenta después
+            if (AppScheduler.get().globalScope().execute(TaskScheduler.Lane.DISK, runnable).isCancelled()) {
+                throw new RejectedExecutionException("Carril de disco lleno");
+            }
+        }, UsageLog.DEFAULT_COMPACT_BYTES);
+        TaskScheduler.Scope scope = AppScheduler.get().globalScope();
+        TaskScheduler.Task<Void> recovery = scope.execute(TaskScheduler.Lane.DISK, () -> {
+            try {
+                log.recover();
+            } catch (IOException e) {
+                Log.w(TAG, "No se puede recuperar el registro de uso", e);
+            }
+        });
+        if (recovery.isCancelled()) {
+            // Carril de disco lleno: el estado se recupera en la primera escritura de un evento
+            Log.w(TAG, "Recuperación del registro de uso aplazada: carril de disco lleno");
+        }
+    }
+
+    /**
+     * Crea la instancia compartida y empieza a recuperar el estado en segundo plano.
+     *
+     * @param context Contexto de la aplicación.
+     * @return La instancia compartida.
+     */
+    public static UsageStore init(Context context) {
+        if (instance == null) {
+            synchronized (UsageStore.class) {
+                if (instance == null) {
+                    instance = new UsageStore(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param context Cualquier contexto, por si aún no se hubiera inicializado.
+     * @return La instancia compartida.
+     */
+    public static UsageStore getInstance(Context context) {
+        return init(context);
+    }
+
+    /**
+     * Anota que se ha abierto un personaje. No bloquea ni toca el disco.
+     *
+     * @param id Identificador del personaje.
+     */
+    @AnyThread
+    public void recordView(@NonNull String id) {
+        log.recordView(id, System.currentTimeMillis());
+    }
+
+    /**
+     * Marca o desmarca un personaje como favorito. No bloquea ni toca el disco.
+     *
+     * @param id       Identificador del personaje.
+     * @param favorite true para marcarlo.
+     */
+    @AnyThread
+    public void setFavorite(@NonNull String id, boolean favorite) {
+        log.setFavorite(id, favorite, System.currentTimeMillis());
+    }
+
+    /**
+     * @param id Identificador del personaje.
+     * @return true si está marcado como favorito.
+     */
+    @AnyThread
+    public boolean isFavorite(@NonNull String id) {
+        return log.isFavorite(id);
+    }
+
+    /**
+     * @param id Identificador del personaje.
+     * @return Veces que se ha abierto.
+     */
+    @AnyThread
+    public int viewCount(@NonNull String id) {
+        return log.viewCount(id);
+    }
+
+    /**
+     * @param limit Número máximo de resultados.
+     * @return Los personajes más vistos, primero el que más.
+     */
+    @AnyThread
+    @NonNull
+    public List<String> mostViewed(int limit) {
+        return log.mostViewed(limit);
+    }
+
+    /**
+     * @param limit Número máximo de resultados.
+     * @return Los personajes vistos, del más reciente al más antiguo.
+     */
+    @AnyThread
+    @NonNull
+    public List<String> recentlyViewed(int limit) {
+        return log.recentlyViewed(limit);
+    }
+
+    /**
+     * @return Identificadores de los favoritos.
+     */
+    @AnyThread
+    @NonNull
+    public List<String> favorites() {
+        return log.favorites();
+    }
+
+    /**
+     * Escribe las métricas del registro y los personajes más vistos.
+     *
+     * @param writer Destino del resumen.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        log.dump(writer);
+        writer.println("  más vistos: " + log.mostViewed(5));
+        writer.println("  recientes: " + log.recentlyViewed(5));
+        writer.flush();
+    }
+}
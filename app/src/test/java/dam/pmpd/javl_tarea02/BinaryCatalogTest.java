@@ -0,0 +1,132 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del catálogo binario {@link BinaryCatalog} en la JVM.
+ */
+public class BinaryCatalogTest {
+
+    private static final String[] IDS = {"mario", "luigi", "peach", "bowser"};
+
+    @Test
+    public void roundTrip_returnsTextsOfEachLocale() throws IOException {
+        BinaryCatalog catalog = BinaryCatalog.open(ByteBuffer.wrap(sampleCatalog()));
+
+        assertEquals(4, catalog.size());
+        assertEquals(2, catalog.localeCount());
+        assertEquals("luigi", catalog.id(1));
+        int spanish = catalog.findLocale("");
+        int english = catalog.findLocale("en");
+        assertEquals("Héroe del Reino Champiñón", catalog.text(spanish, 0, BinaryCatalog.FIELD_DESCRIPTION));
+        assertEquals("Hero of the Mushroom Kingdom", catalog.text(english, 0, BinaryCatalog.FIELD_DESCRIPTION));
+        assertEquals("Bowser", catalog.text(english, 3, BinaryCatalog.FIELD_NAME));
+        assertEquals("Fuego", catalog.text(spanish, 3, BinaryCatalog.FIELD_ABILITIES));
+    }
+
+    @Test
+    public void findLocale_fallsBackToLanguageThenDefault() throws IOException {
+        BinaryCatalog catalog = BinaryCatalog.open(ByteBuffer.wrap(sampleCatalog()));
+        int english = catalog.findLocale("en");
+
+        assertEquals(english, catalog.findLocale("en-US"));
+        assertEquals(english, catalog.findLocale("EN"));
+        assertEquals("", catalog.localeTag(catalog.findLocale("es-ES")));
+        assertEquals("", catalog.localeTag(catalog.findLocale("fr")));
+    }
+
+    @Test
+    public void positionOf_findsEveryIdWithoutDecoding() throws IOException {
+        BinaryCatalog catalog = BinaryCatalog.open(ByteBuffer.wrap(sampleCatalog()));
+
+        for (int i = 0; i < IDS.length; i++) {
+            assertEquals(i, catalog.positionOf(IDS[i]));
+        }
+        assertEquals(-1, catalog.positionOf("toad"));
+        assertEquals(-1, catalog.positionOf(""));
+        assertEquals(-1, catalog.positionOf("mari"));
+    }
+
+    @Test
+    public void repeatedTexts_areStoredOnce() {
+        String[] names = {"Mario", "Luigi", "Peach", "Bowser"};
+        String[] same = {"x", "x", "x", "x"};
+        byte[] shared = new BinaryCatalog.Writer(IDS).addLocale("", names, same, same).toByteArray();
+        byte[] distinct = new BinaryCatalog.Writer(IDS)
+                .addLocale("", names, new String[]{"a1", "a2", "a3", "a4"}, new String[]{"b1", "b2", "b3", "b4"})
+                .toByteArray();
+
+        assertTrue(shared.length < distinct.length);
+    }
+
+    @Test
+    public void largeCatalog_findsIdsAfterSorting() throws IOException {
+        int size = 5000;
+        String[] ids = new String[size];
+        String[] texts = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = "personaje-" + Integer.toHexString(i * 7919);
+            texts[i] = "Texto " + i;
+        }
+        BinaryCatalog catalog = BinaryCatalog.open(ByteBuffer.wrap(
+                new BinaryCatalog.Writer(ids).addLocale("", texts, texts, texts).toByteArray()));
+
+        for (int i = 0; i < size; i += 37) {
+            assertEquals(i, catalog.positionOf(ids[i]));
+            assertEquals("Texto " + i, catalog.text(0, i, BinaryCatalog.FIELD_NAME));
+        }
+    }
+
+    @Test
+    public void damagedContent_isRejected() {
+        byte[] valid = sampleCatalog();
+        assertInvalid(Arrays.copyOf(valid, 10));
+        assertInvalid(Arrays.copyOf(valid, valid.length - 5));
+
+        byte[] wrongMagic = valid.clone();
+        wrongMagic[0] = 0;
+        assertInvalid(wrongMagic);
+
+        byte[] badReference = valid.clone();
+        ByteBuffer.wrap(badReference).putInt(ByteBuffer.wrap(valid).getInt(24), 1_000_000);
+        assertInvalid(badReference);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writer_rejectsMissingTexts() {
+        new BinaryCatalog.Writer(IDS).addLocale("", new String[]{"Mario"}, new String[]{""}, new String[]{""});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writer_rejectsDuplicateIds() {
+        new BinaryCatalog.Writer(new String[]{"mario", "mario"});
+    }
+
+    private static void assertInvalid(byte[] content) {
+        try {
+            BinaryCatalog.open(ByteBuffer.wrap(content));
+            fail("Se esperaba un catálogo no válido");
+        } catch (IOException expected) {
+            // Correcto
+        }
+    }
+
+    private static byte[] sampleCatalog() {
+        return new BinaryCatalog.Writer(IDS)
+                .addLocale("",
+                        new String[]{"Mario", "Luigi", "Peach", "Bowser"},
+                        new String[]{"Héroe del Reino Champiñón", "Hermano de Mario", "Princesa", "Rey de los Koopa"},
+                        new String[]{"Salta alto", "Salta más alto", "Flota", "Fuego"})
+                .addLocale("en",
+                        new String[]{"Mario", "Luigi", "Peach", "Bowser"},
+                        new String[]{"Hero of the Mushroom Kingdom", "Mario's brother", "Princess", "King of the Koopas"},
+                        new String[]{"Jumps high", "Jumps higher", "Floats", "Fire"})
+                .toByteArray();
+    }
+}
@@ -0,0 +1,308 @@
+package dam.pmpd.javl_tarea02;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link CatalogSyncEngine} contra un servidor HTTP local que hace las veces del
+ * servidor del catálogo, sin salir a la red.
+ */
+public class CatalogSyncEngineTest {
+
+    private static final int CATALOG_SIZE = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StandInServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void sync_fromBundledCatalog_downloadsOnlyTheDelta() throws IOException {
+        Map<String, String> rows = sampleRows();
+        server.publish(0, rows, new HashMap<String, byte[]>());
+        rows.put("character_7", "Personaje 7 renovado");
+        rows.remove("character_9");
+        rows.put("nuevo", "Personaje nuevo");
+        Map<String, byte[]> images = new HashMap<>();
+        images.put("nuevo", image(1));
+        images.put("character_7", image(2));
+        server.publish(1, rows, images);
+
+        CatalogSyncEngine engine = engine(server.catalog(0));
+        CatalogSyncEngine.Result result = engine.sync();
+
+        assertTrue(result.usedDelta);
+        assertTrue(result.isUpdated());
+        assertEquals(0, result.fromVersion);
+        assertEquals(1, result.toVersion);
+        assertEquals(2, result.imagesDownloaded);
+        assertTrue(result.toString(), result.bytesTransferred > 0);
+        assertTrue(result.toString(), result.bytesTransferred < result.fullDownloadBytes / 5);
+
+        CatalogSyncEngine.Installed installed = engine.installed();
+        assertEquals(1, installed.getVersion());
+        assertArrayEquals(server.catalog(1), readAll(installed.getCatalogFile()));
+        BinaryCatalog catalog = BinaryCatalog.open(CatalogSyncEngine.map(installed.getCatalogFile()));
+        assertEquals(CATALOG_SIZE, catalog.size());
+        assertEquals("nuevo", catalog.id(CATALOG_SIZE - 1));
+        assertEquals(-1, catalog.positionOf("character_9"));
+        assertEquals("Personaje 7 renovado", catalog.text(0, catalog.positionOf("character_7"), BinaryCatalog.FIELD_NAME));
+        assertArrayEquals(image(1), readAll(installed.imageFile(installed.getImageHashes().get("nuevo"))));
+    }
+
+    @Test
+    public void sync_skipsImagesAlreadyStored() throws IOException {
+        Map<String, String> rows = sampleRows();
+        Map<String, byte[]> images = new HashMap<>();
+        images.put("character_1", image(1));
+        server.publish(0, rows, new HashMap<String, byte[]>());
+        server.publish(1, rows, images);
+        CatalogSyncEngine engine = engine(server.catalog(0));
+        assertEquals(1, engine.sync().imagesDownloaded);
+
+        rows.put("character_2", "Personaje 2 renovado");
+        server.publish(2, rows, images);
+        CatalogSyncEngine.Result result = engine.sync();
+
+        assertEquals(2, result.toVersion);
+        assertTrue(result.usedDelta);
+        assertEquals(0, result.imagesDownloaded);
+        assertArrayEquals(server.catalog(2), readAll(engine.installed().getCatalogFile()));
+
+        CatalogSyncEngine.Result again = engine.sync();
+        assertFalse(again.isUpdated());
+    }
+
+    @Test
+    public void sync_rejectsCorruptDownloads_andKeepsTheInstalledVersion() throws IOException {
+        Map<String, String> rows = sampleRows();
+        server.publish(0, rows, new HashMap<String, byte[]>());
+        server.publish(1, rows, new HashMap<String, byte[]>());
+        CatalogSyncEngine engine = engine(server.catalog(0));
+        engine.sync();
+
+        rows.put("character_3", "Personaje 3 renovado");
+        server.publish(2, rows, new HashMap<String, byte[]>());
+        server.corrupt("delta/1-2.bin");
+        try {
+            engine.sync();
+            fail("Se ha aceptado un delta corrupto");
+        } catch (IOException expected) {
+            // La suma no coincide con la del manifiesto
+        }
+
+        assertEquals(1, engine.installed().getVersion());
+        assertArrayEquals(server.catalog(1), readAll(engine.installed().getCatalogFile()));
+    }
+
+    @Test
+    public void sync_downloadsTheFullCatalog_whenTheDeltaDoesNotApply() throws IOException {
+        Map<String, String> rows = sampleRows();
+        server.publish(0, rows, new HashMap<String, byte[]>());
+        rows.put("character_5", "Personaje 5 renovado");
+        server.publish(1, rows, new HashMap<String, byte[]>());
+
+        // El APK trae un catálogo distinto del que el servidor tiene como versión 0
+        Map<String, String> older = sampleRows();
+        older.put("character_0", "Nombre antiguo");
+        CatalogSyncEngine.Result result = engine(StandInServer.build(older)).sync();
+
+        assertFalse(result.usedDelta);
+        assertEquals(1, result.toVersion);
+        assertTrue(result.bytesTransferred > server.catalog(1).length);
+    }
+
+    private CatalogSyncEngine engine(final byte[] bundled) {
+        return new CatalogSyncEngine(new File(folder.getRoot(), "sync"), server.url(), () -> ByteBuffer.wrap(bundled));
+    }
+
+    private static Map<String, String> sampleRows() {
+        Map<String, String> rows = new LinkedHashMap<>();
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            rows.put("character_" + i, "Personaje " + i);
+        }
+        return rows;
+    }
+
+    private static byte[] image(int seed) {
+        byte[] bytes = new byte[4096];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * seed + seed);
+        }
+        return bytes;
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        ByteBuffer buffer = CatalogSyncEngine.map(file);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Servidor del catálogo en memoria que publica versiones y sirve el protocolo de
+     * {@link CatalogSyncEngine}: manifiesto, catálogos completos, deltas e imágenes.
+     */
+    private static final class StandInServer {
+        private final HttpServer http;
+        private final Map<Integer, Map<String, String>> rowsByVersion = new HashMap<>();
+        private final Map<Integer, Map<String, String>> imagesByVersion = new HashMap<>();
+        private final Map<String, byte[]> files = new HashMap<>();
+        private final List<String> corrupted = new ArrayList<>();
+        private int latest;
+
+        StandInServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            http.createContext("/", this::handle);
+            http.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + http.getAddress().getPort() + "/";
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+
+        byte[] catalog(int version) {
+            return files.get("full/" + version + ".bin");
+        }
+
+        synchronized void corrupt(String path) {
+            corrupted.add(path);
+        }
+
+        /**
+         * Publica una versión del catálogo: nombre de cada personaje e imagen de algunos de ellos.
+         */
+        synchronized void publish(int version, Map<String, String> rows, Map<String, byte[]> images) {
+            rowsByVersion.put(version, new LinkedHashMap<>(rows));
+            Map<String, String> hashes = new LinkedHashMap<>();
+            for (Map.Entry<String, byte[]> image : images.entrySet()) {
+                String hash = CatalogSyncEngine.hex(CatalogSyncEngine.sha256().digest(image.getValue()));
+                hashes.put(image.getKey(), hash);
+                files.put("images/" + hash, image.getValue());
+            }
+            imagesByVersion.put(version, hashes);
+            files.put("full/" + version + ".bin", build(rows));
+            latest = version;
+        }
+
+        /**
+         * Construye un catálogo con textos por defecto y en inglés; las descripciones largas hacen
+         * que el catálogo completo pese bastante más que un delta.
+         */
+        static byte[] build(Map<String, String> rows) {
+            String[] ids = rows.keySet().toArray(new String[0]);
+            String[][] texts = new String[6][ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                String name = rows.get(ids[i]);
+                char[] filler = new char[150];
+                Arrays.fill(filler, (char) ('a' + Math.abs(name.hashCode() % 26)));
+                texts[0][i] = name;
+                texts[1][i] = "Descripción de " + name + " " + new String(filler);
+                texts[2][i] = "Habilidades de " + name;
+                texts[3][i] = name + " (en)";
+                texts[4][i] = "Description of " + name + " " + new String(filler);
+                texts[5][i] = "Abilities of " + name;
+            }
+            return new BinaryCatalog.Writer(ids)
+                    .addLocale("", texts[0], texts[1], texts[2])
+                    .addLocale("en", texts[3], texts[4], texts[5])
+                    .toByteArray();
+        }
+
+        private synchronized String manifest(int since) {
+            byte[] full = catalog(latest);
+            StringBuilder manifest = new StringBuilder(CatalogSyncEngine.MANIFEST_HEADER).append('\n')
+                    .append("version ").append(latest).append('\n')
+                    .append("full ").append(hash(full)).append(' ').append(full.length).append('\n');
+            Map<String, String> base = rowsByVersion.get(since);
+            if (base != null && since != latest) {
+                Map<String, String> current = rowsByVersion.get(latest);
+                Map<String, String> changed = new LinkedHashMap<>();
+                for (Map.Entry<String, String> row : current.entrySet()) {
+                    if (!row.getValue().equals(base.get(row.getKey()))) {
+                        changed.put(row.getKey(), row.getValue());
+                    }
+                }
+                byte[] delta = build(changed);
+                files.put("delta/" + since + "-" + latest + ".bin", delta);
+                manifest.append("delta ").append(since).append(' ').append(hash(delta)).append(' ')
+                        .append(delta.length).append('\n');
+                for (String id : base.keySet()) {
+                    if (!current.containsKey(id)) {
+                        manifest.append("removed ").append(id).append('\n');
+                    }
+                }
+            }
+            for (Map.Entry<String, String> image : imagesByVersion.get(latest).entrySet()) {
+                manifest.append("image ").append(image.getKey()).append(' ').append(image.getValue()).append(' ')
+                        .append(files.get("images/" + image.getValue()).length).append('\n');
+            }
+            return manifest.toString();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            byte[] body;
+            if (path.equals("manifest")) {
+                String query = exchange.getRequestURI().getQuery();
+                body = manifest(Integer.parseInt(query.substring(query.indexOf('=') + 1))).getBytes("UTF-8");
+            } else {
+                synchronized (this) {
+                    body = files.get(path);
+                    if (body != null && corrupted.contains(path)) {
+                        body = body.clone();
+                        body[body.length / 2] ^= 1;
+                    }
+                }
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        private static String hash(byte[] bytes) {
+            return CatalogSyncEngine.hex(CatalogSyncEngine.sha256().digest(bytes));
+        }
+    }
+}
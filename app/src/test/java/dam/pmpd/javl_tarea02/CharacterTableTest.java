@@ -0,0 +1,121 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de la tabla por columnas {@link CharacterTable} en la JVM, incluida la comparación del
+ * tamaño de sus columnas con el mínimo de una lista de objetos {@link Character}.
+ */
+public class CharacterTableTest {
+
+    private static final int CATALOG_SIZE = 50_000;
+
+    @Test
+    public void rows_matchTheAddedData() {
+        CharacterTable table = sampleTable();
+
+        assertEquals(4, table.size());
+        assertEquals("luigi", table.id(1));
+        assertEquals("Luigi", table.name(1));
+        assertEquals(12, table.imageResource(1));
+        assertEquals("Luigi", new String(table.nameChars(), table.nameStart(1), table.nameLength(1)));
+
+        Character character = table.get(3);
+        assertEquals("bowser", character.getId());
+        assertEquals("Bowser", character.getName());
+        assertEquals(14, character.getImageResource());
+    }
+
+    @Test
+    public void stableId_matchesCharacter() {
+        CharacterTable table = sampleTable();
+
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(table.get(i).getStableId(), table.stableId(i));
+        }
+    }
+
+    @Test
+    public void names_areStoredOnce() {
+        CharacterTable table = new CharacterTable.Builder(1)
+                .add("koopa_1", "Koopa", 1)
+                .add("koopa_2", "Koopa", 1)
+                .add("goomba", "Goomba", 2)
+                .build(null);
+
+        assertEquals("KoopaGoomba", new String(table.nameChars()));
+        assertEquals(table.nameStart(0), table.nameStart(1));
+        assertEquals("Koopa", table.name(1));
+        assertEquals("Goomba", table.name(2));
+        assertEquals("goomba", table.id(2));
+    }
+
+    @Test
+    public void details_areLoadedOnDemand() {
+        final List<String> requested = new ArrayList<>();
+        CharacterTable table = new CharacterTable.Builder(2)
+                .add("mario", "Mario", 1)
+                .add("luigi", "Luigi", 2)
+                .build(new Character.DetailsSource() {
+                    @Override
+                    public String loadDescription(String id) {
+                        requested.add(id);
+                        return "Descripción de " + id;
+                    }
+
+                    @Override
+                    public String loadAbilities(String id) {
+                        requested.add(id);
+                        return "Habilidades de " + id;
+                    }
+                });
+
+        assertTrue(requested.isEmpty());
+        assertEquals("Descripción de luigi", table.description(1));
+        assertEquals("Habilidades de mario", table.get(0).getAbilities());
+        assertEquals(2, requested.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_rejectsPositionsOutOfRange() {
+        sampleTable().get(4);
+    }
+
+    @Test
+    public void footprint_isSmallerThanObjectPerRow() {
+        CharacterTable.Builder builder = new CharacterTable.Builder(CATALOG_SIZE);
+        long textChars = 0;
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            // Nombres distintos: no se aprovecha el pool de nombres compartidos
+            String id = "character_" + i;
+            String name = "Personaje " + i;
+            builder.add(id, name, i);
+            textChars += id.length() + name.length();
+        }
+        long tableBytes = builder.build(null).columnBytes();
+
+        // Mínimo de la lista de objetos: referencia en la lista, cabecera del Character y dos
+        // String con su array de un byte por carácter
+        long objectBytes = CATALOG_SIZE * (4 + 16 + 2 * (24 + 16)) + textChars;
+
+        assertTrue("La tabla ocupa " + tableBytes + " bytes y la lista al menos " + objectBytes,
+                tableBytes < objectBytes);
+        // Identificador, nombre y columnas numéricas: menos de 80 bytes por fila
+        assertTrue("La tabla ocupa " + tableBytes / CATALOG_SIZE + " bytes por fila",
+                tableBytes / CATALOG_SIZE < 80);
+    }
+
+    private static CharacterTable sampleTable() {
+        return new CharacterTable.Builder(2)
+                .add("mario", "Mario", 11)
+                .add("luigi", "Luigi", 12)
+                .add("peach", "Peach", 13)
+                .add("bowser", "Bowser", 14)
+                .build(null);
+    }
+}
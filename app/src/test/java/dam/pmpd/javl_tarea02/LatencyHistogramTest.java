@@ -0,0 +1,80 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del histograma de duraciones {@link LatencyHistogram} en la JVM.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.mean(), 0);
+    }
+
+    @Test
+    public void smallValues_areExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < LatencyHistogram.SUB_BUCKETS; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(7, histogram.percentile(50));
+        assertEquals(LatencyHistogram.SUB_BUCKETS - 1, histogram.percentile(100));
+    }
+
+    @Test
+    public void buckets_coverEveryValueWithBoundedError() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(value + " > " + upper, value <= upper);
+            assertTrue("Error excesivo para " + value, upper - value <= value / LatencyHistogram.SUB_BUCKETS);
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentiles_followUniformDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertEquals(5000.5, histogram.mean(), 1e-9);
+        assertEquals(5000, histogram.percentile(50), 5000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(9900, histogram.percentile(99), 9900 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(10_000, histogram.percentile(100));
+        assertEquals(10_000, histogram.max());
+    }
+
+    @Test
+    public void outliers_andNegativeValues_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(Long.MAX_VALUE / 2, histogram.percentile(100));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(16_000);
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(99));
+    }
+}
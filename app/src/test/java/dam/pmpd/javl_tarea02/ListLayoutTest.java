@@ -0,0 +1,69 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link ListLayout} en la JVM.
+ */
+public class ListLayoutTest {
+
+    // Miniatura de 80 dp a densidad 2
+    private static final int THUMBNAIL_PX = 160;
+
+    @Test
+    public void narrowWindow_usesOneColumnOfThumbnails() {
+        ListLayout layout = ListLayout.forWindow(411, 2f, THUMBNAIL_PX);
+
+        assertEquals(ListLayout.VIEW_TYPE_ROW, layout.getViewType());
+        assertEquals(1, layout.getSpanCount());
+        assertEquals(THUMBNAIL_PX, layout.getImageWidth());
+        assertEquals(THUMBNAIL_PX, layout.getImageHeight());
+    }
+
+    @Test
+    public void wideWindow_usesAsManyColumnsAsFit() {
+        // Horizontal de un teléfono: 891 dp menos el relleno dan 5 columnas de 160 dp
+        ListLayout landscape = ListLayout.forWindow(891, 2.625f, 210);
+        assertEquals(ListLayout.VIEW_TYPE_CELL, landscape.getViewType());
+        assertEquals(5, landscape.getSpanCount());
+
+        // En el ancho mínimo de la cuadrícula caben tres, y nunca más del máximo
+        assertEquals(3, ListLayout.forWindow(ListLayout.GRID_MIN_WIDTH_DP, 2f, THUMBNAIL_PX).getSpanCount());
+        assertEquals(ListLayout.MAX_SPANS, ListLayout.forWindow(2560, 1f, 80).getSpanCount());
+    }
+
+    @Test
+    public void cellImage_fillsItsColumnExactly() {
+        ListLayout layout = ListLayout.forWindow(800, 2f, THUMBNAIL_PX);
+
+        // (800 - 32) dp a densidad 2 son 1536 px en 4 columnas de 384 px, menos 2 márgenes de 16 px
+        assertEquals(4, layout.getSpanCount());
+        assertEquals(352, layout.getImageWidth());
+        assertEquals(352, layout.getImageHeight());
+        assertTrue(layout.getImageWidth() * layout.getSpanCount() <= Math.round(768 * 2f));
+    }
+
+    @Test
+    public void visibleItems_countsWholeRowsOfCells() {
+        ListLayout layout = ListLayout.forWindow(800, 2f, THUMBNAIL_PX);
+
+        // Celdas de 352 + 112 px: en 1280 px caben 2 filas y una tercera cortada
+        assertEquals(3 * 4, layout.visibleItems(1280));
+        assertEquals(1280 / (THUMBNAIL_PX + 96) + 1, ListLayout.forWindow(411, 2f, THUMBNAIL_PX).visibleItems(1280));
+    }
+
+    @Test
+    public void sameImages_ignoresColumnsOnlyWhenTheImageSizeMatches() {
+        ListLayout portrait = ListLayout.forWindow(411, 2f, THUMBNAIL_PX);
+        ListLayout otherPhone = ListLayout.forWindow(360, 2f, THUMBNAIL_PX);
+        ListLayout tablet = ListLayout.forWindow(800, 2f, THUMBNAIL_PX);
+
+        assertTrue(portrait.sameImages(otherPhone));
+        assertFalse(portrait.sameImages(tablet));
+        assertFalse(tablet.sameImages(ListLayout.forWindow(1280, 2f, THUMBNAIL_PX)));
+        assertEquals(tablet, ListLayout.forWindow(800, 2f, THUMBNAIL_PX));
+        assertFalse(tablet.sameImages(null));
+    }
+}
@@ -0,0 +1,93 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link PrefetchPlanner} en la JVM.
+ */
+public class PrefetchPlannerTest {
+
+    // 16 ms entre desplazamientos, como a 60 fotogramas por segundo
+    private static final long FRAME_NANOS = 16_000_000L;
+
+    @Test
+    public void plan_beforeScrolling_coversFirstVisibleRows() {
+        PrefetchPlanner planner = new PrefetchPlanner(3, 5000f);
+
+        assertArrayEquals(new int[]{0, 1, 2}, plan(planner, 0, 7, 100));
+    }
+
+    @Test
+    public void plan_followsScrollDirection() {
+        PrefetchPlanner planner = new PrefetchPlanner(3, 5000f);
+
+        planner.onScrolled(10, FRAME_NANOS);
+        assertArrayEquals(new int[]{8, 9, 10}, plan(planner, 1, 7, 100));
+
+        assertTrue(planner.onScrolled(-10, 2 * FRAME_NANOS));
+        assertArrayEquals(new int[]{19, 18, 17}, plan(planner, 20, 27, 100));
+    }
+
+    @Test
+    public void plan_proposesEachRowOnceUntilReset() {
+        PrefetchPlanner planner = new PrefetchPlanner(3, 5000f);
+        planner.onScrolled(10, FRAME_NANOS);
+
+        assertArrayEquals(new int[]{8, 9, 10}, plan(planner, 1, 7, 100));
+        assertArrayEquals(new int[]{11}, plan(planner, 2, 8, 100));
+
+        planner.reset();
+        assertArrayEquals(new int[]{9, 10, 11}, plan(planner, 2, 8, 100));
+    }
+
+    @Test
+    public void plan_stopsAtListBounds() {
+        PrefetchPlanner planner = new PrefetchPlanner(4, 5000f);
+        planner.onScrolled(10, FRAME_NANOS);
+
+        assertArrayEquals(new int[]{18, 19}, plan(planner, 10, 17, 20));
+        assertArrayEquals(new int[0], plan(planner, -1, -1, 20));
+    }
+
+    @Test
+    public void plan_skipsFlingsUntilTheListSlowsDown() {
+        PrefetchPlanner planner = new PrefetchPlanner(2, 5000f);
+
+        // 200 px por fotograma son 12.500 px/s
+        long now = FRAME_NANOS;
+        for (int i = 0; i < 5; i++) {
+            planner.onScrolled(200, now += FRAME_NANOS);
+        }
+        assertTrue(planner.velocity() > 5000f);
+        assertArrayEquals(new int[0], plan(planner, 10, 17, 100));
+
+        planner.onIdle();
+        assertEquals(PrefetchPlanner.FORWARD, planner.direction());
+        assertArrayEquals(new int[]{18, 19}, plan(planner, 10, 17, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeAhead_isRejected() {
+        new PrefetchPlanner(-1, 5000f);
+    }
+
+    @Test
+    public void onScrolled_reportsOnlyReversals() {
+        PrefetchPlanner planner = new PrefetchPlanner(2, 5000f);
+
+        assertFalse(planner.onScrolled(-5, FRAME_NANOS));
+        assertFalse(planner.onScrolled(-5, 2 * FRAME_NANOS));
+        assertFalse(planner.onScrolled(0, 3 * FRAME_NANOS));
+        assertTrue(planner.onScrolled(5, 4 * FRAME_NANOS));
+        assertEquals(PrefetchPlanner.FORWARD, planner.direction());
+    }
+
+    private static int[] plan(PrefetchPlanner planner, int first, int last, int count) {
+        int[] out = new int[planner.ahead()];
+        return Arrays.copyOf(out, planner.plan(first, last, count, out));
+    }
+}
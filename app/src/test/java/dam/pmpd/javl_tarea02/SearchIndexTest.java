@@ -0,0 +1,138 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del índice de búsqueda {@link SearchIndex} en la JVM.
+ */
+public class SearchIndexTest {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        SearchIndex index = sampleIndex();
+
+        assertArrayEquals(new int[]{2}, index.search("PINGUINO", 10));
+        assertArrayEquals(new int[]{2}, index.search("pingüino", 10));
+        assertArrayEquals(new int[]{0}, index.search("martillo habilidad", 10));
+    }
+
+    @Test
+    public void search_matchesPrefixes() {
+        SearchIndex index = sampleIndex();
+
+        assertArrayEquals(new int[]{3}, index.search("bow", 10));
+        assertArrayEquals(new int[]{0, 1}, index.search("herm", 10));
+        assertEquals(0, index.search("xyz", 10).length);
+        assertEquals(0, index.search("  ,. ", 10).length);
+    }
+
+    @Test
+    public void search_requiresEveryWord() {
+        SearchIndex index = sampleIndex();
+
+        assertArrayEquals(new int[]{1}, index.search("hermano salto alto", 10));
+        assertEquals(0, index.search("bowser pingüino", 10).length);
+    }
+
+    @Test
+    public void search_ranksNameAboveAbilitiesAboveDescription() {
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        builder.add("Koopa", "Una tortuga que acompaña a Mario", "Caparazón");
+        builder.add("Toad", "Amigo", "Corre como Mario");
+        builder.add("Mario", "Fontanero", "Salto");
+
+        assertArrayEquals(new int[]{2, 1, 0}, builder.build().search("mario", 10));
+        assertArrayEquals(new int[]{2}, builder.build().search("mario", 1));
+    }
+
+    @Test
+    public void builder_canBeSnapshottedWhileAddingDocuments() {
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        builder.add("Mario", null, null);
+        SearchIndex partial = builder.build();
+        builder.add("Mario Bros", null, null);
+
+        assertEquals(1, partial.documentCount());
+        assertArrayEquals(new int[]{0}, partial.search("mario", 10));
+        assertArrayEquals(new int[]{0, 1}, builder.build().search("mario", 10));
+    }
+
+    @Test
+    public void savedIndex_isReadBackWithSameStamp() throws IOException {
+        File path = new File(folder.getRoot(), "search.bin");
+        SearchIndex index = sampleIndex();
+        index.writeTo(path, 42);
+
+        SearchIndex read = SearchIndex.readFrom(path, 42);
+        assertNotNull(read);
+        assertEquals(index.documentCount(), read.documentCount());
+        assertEquals(index.termCount(), read.termCount());
+        assertArrayEquals(index.search("herm", 10), read.search("herm", 10));
+
+        assertNull(SearchIndex.readFrom(path, 43));
+        assertNull(SearchIndex.readFrom(new File(folder.getRoot(), "missing.bin"), 42));
+    }
+
+    @Test
+    public void truncatedFile_isIgnored() throws IOException {
+        File path = new File(folder.getRoot(), "search.bin");
+        sampleIndex().writeTo(path, 42);
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        assertNull(SearchIndex.readFrom(path, 42));
+    }
+
+    @Test
+    public void search_onLargeCatalog_takesFewMilliseconds() {
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        String[] words = {"salto", "fuego", "hielo", "martillo", "caparazón", "vuelo", "estrella",
+                "champiñón", "tubería", "castillo", "princesa", "dragón", "fantasma", "bloque"};
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            builder.add("Personaje " + i,
+                    "Vive en el " + words[i % words.length] + " y lucha con " + words[(i * 7) % words.length],
+                    words[(i * 3) % words.length] + ", " + words[(i * 5) % words.length]);
+        }
+        SearchIndex index = builder.build();
+        String[] queries = {"fue", "champinon", "personaje 99", "dragon salto", "cast", "p"};
+
+        // Calentamiento del compilador antes de medir
+        for (int i = 0; i < 200; i++) {
+            index.search(queries[i % queries.length], 50);
+        }
+        int runs = 300;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            index.search(queries[i % queries.length], 50);
+        }
+        double averageMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        assertTrue("Media por consulta: " + averageMs + " ms", averageMs < 5);
+        // "99" es prefijo de 99, 990-999 y 9900-9999
+        assertEquals(111, index.search("personaje 99", 200).length);
+        assertEquals(99, index.search("personaje 99", 50)[0]);
+    }
+
+    private static SearchIndex sampleIndex() {
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        builder.add("Mario", "El héroe, hermano de Luigi.", "Martillo y habilidad de salto");
+        builder.add("Luigi", "Hermano menor de Mario.", "Salto alto");
+        builder.add("Peach", "Princesa con un pingüino.", "Flotar");
+        builder.add("Bowser", "Rey de los Koopa.", "Fuego");
+        return builder.build();
+    }
+}
@@ -0,0 +1,268 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link TaskScheduler} en la JVM, con un ejecutor principal falso que solo ejecuta
+ * lo que se le ha entregado cuando la prueba lo indica.
+ */
+public class TaskSchedulerTest {
+
+    private final FakeMainExecutor main = new FakeMainExecutor();
+    private final TaskScheduler scheduler = new TaskScheduler(main, null);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void submit_deliversTheResultOnTheMainExecutor() throws InterruptedException {
+        final List<String> results = new ArrayList<>();
+        TaskScheduler.Task<String> task = scheduler.newScope().submit(TaskScheduler.Lane.DISK,
+                () -> Thread.currentThread().getName(), results::add);
+
+        main.awaitAndRun(1);
+
+        assertEquals(1, results.size());
+        assertTrue(results.get(0), results.get(0).startsWith("Lane-disk-"));
+        assertTrue(task.isDone());
+    }
+
+    @Test
+    public void failures_reachTheCallback() throws InterruptedException {
+        final List<Throwable> failures = new ArrayList<>();
+        scheduler.globalScope().submit(TaskScheduler.Lane.INDEX, () -> {
+            throw new IllegalStateException("roto");
+        }, new TaskScheduler.Callback<Object>() {
+            @Override
+            public void onResult(Object result) {
+                fail("No debería haber resultado");
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                failures.add(error);
+            }
+        });
+
+        main.awaitAndRun(1);
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof IllegalStateException);
+        assertFalse(TaskScheduler.isDropped(failures.get(0)));
+        assertEquals(1, scheduler.laneState(TaskScheduler.Lane.INDEX).failed.get());
+    }
+
+    @Test
+    public void rejectionThrownByTheTask_isNotReportedAsDropped() throws InterruptedException {
+        final List<Throwable> failures = new ArrayList<>();
+        scheduler.globalScope().submit(TaskScheduler.Lane.DECODE, () -> {
+            throw new RejectedExecutionException("rechazada por la propia tarea");
+        }, new TaskScheduler.Callback<Object>() {
+            @Override
+            public void onResult(Object result) {
+                fail("No debería haber resultado");
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                failures.add(error);
+            }
+        });
+
+        main.awaitAndRun(1);
+
+        assertEquals(1, failures.size());
+        assertFalse(TaskScheduler.isDropped(failures.get(0)));
+    }
+
+    @Test
+    public void closingTheScope_dropsQueuedTasksAndLateResults() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> results = new ArrayList<>();
+        TaskScheduler.Scope scope = scheduler.newScope();
+        TaskScheduler.Task<String> first = scope.submit(TaskScheduler.Lane.DISK, () -> {
+            running.countDown();
+            release.await();
+            return "primera";
+        }, results::add);
+        TaskScheduler.Task<String> second = scope.submit(TaskScheduler.Lane.DISK, () -> "segunda", results::add);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        scope.close();
+        release.countDown();
+        // La primera termina en su hilo, pero su entrega llega ya cancelada
+        main.awaitAndRun(1);
+
+        assertTrue(results.isEmpty());
+        assertTrue(first.isCancelled());
+        assertTrue(second.isCancelled());
+        assertEquals(0, scope.activeCount());
+        assertTrue(scope.submit(TaskScheduler.Lane.DISK, () -> "tarde", results::add).isCancelled());
+    }
+
+    @Test
+    public void runningTasks_canSeeTheirCancellation() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch observed = new CountDownLatch(1);
+        TaskScheduler.Task<Void> task = scheduler.newScope().execute(TaskScheduler.Lane.INDEX, () -> {
+            running.countDown();
+            while (!TaskScheduler.isCurrentTaskCancelled()) {
+                Thread.yield();
+            }
+            observed.countDown();
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        task.cancel();
+
+        assertTrue(observed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void fullPrefetchLane_dropsTheOldestTask() throws InterruptedException {
+        TaskScheduler.Lane lane = TaskScheduler.Lane.PREFETCH;
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Object> outcomes = new ArrayList<>();
+        TaskScheduler.Scope scope = scheduler.newScope();
+        scope.execute(lane, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waitUntilQueueEmpty(lane);
+
+        // Se llena la cola y se añade una más
+        for (int i = 0; i <= lane.capacity; i++) {
+            final int value = i;
+            scope.submit(lane, () -> value, new TaskScheduler.Callback<Integer>() {
+                @Override
+                public void onResult(Integer result) {
+                    outcomes.add(result);
+                }
+
+                @Override
+                public void onFailure(Throwable error) {
+                    outcomes.add(error);
+                }
+            });
+        }
+        assertEquals(lane.capacity, scheduler.queueDepth(lane));
+        release.countDown();
+        main.awaitAndRun(lane.capacity + 1);
+
+        assertTrue(outcomes.get(0) instanceof RejectedExecutionException);
+        assertTrue(TaskScheduler.isDropped((Throwable) outcomes.get(0)));
+        assertEquals(1, outcomes.get(1));
+        assertEquals(lane.capacity, outcomes.get(outcomes.size() - 1));
+        assertEquals(1, scheduler.laneState(lane).dropped.get());
+        assertEquals(lane.capacity, scheduler.laneState(lane).maxDepth.get());
+    }
+
+    @Test
+    public void fullDiskLane_rejectsTheNewTask() throws InterruptedException {
+        TaskScheduler.Lane lane = TaskScheduler.Lane.DISK;
+        final CountDownLatch release = new CountDownLatch(1);
+        TaskScheduler.Scope scope = scheduler.newScope();
+        scope.execute(lane, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waitUntilQueueEmpty(lane);
+        for (int i = 0; i < lane.capacity; i++) {
+            scope.execute(lane, () -> { });
+        }
+
+        TaskScheduler.Task<Void> rejected = scope.execute(lane, () -> { });
+        release.countDown();
+
+        assertTrue(rejected.isCancelled());
+        assertEquals(1, scheduler.laneState(lane).dropped.get());
+    }
+
+    @Test
+    public void lanes_doNotBlockEachOther() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        scheduler.globalScope().execute(TaskScheduler.Lane.INDEX, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final List<String> results = new ArrayList<>();
+
+        scheduler.globalScope().submit(TaskScheduler.Lane.DECODE, () -> "imagen", results::add);
+        main.awaitAndRun(1);
+        release.countDown();
+
+        assertEquals("imagen", results.get(0));
+    }
+
+    @Test
+    public void dump_reportsEveryLane() throws InterruptedException {
+        scheduler.globalScope().submit(TaskScheduler.Lane.DECODE, () -> 1, result -> { });
+        main.awaitAndRun(1);
+
+        StringWriter out = new StringWriter();
+        scheduler.dump(new PrintWriter(out));
+
+        for (TaskScheduler.Lane lane : TaskScheduler.Lane.values()) {
+            assertTrue(out.toString(), out.toString().contains(lane.name().toLowerCase() + " ("));
+        }
+        assertTrue(out.toString(), out.toString().contains("enviadas=1 completadas=1"));
+    }
+
+    private void waitUntilQueueEmpty(TaskScheduler.Lane lane) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.queueDepth(lane) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Ejecutor principal falso: acumula lo entregado y lo ejecuta en el hilo de la prueba.
+     */
+    private static final class FakeMainExecutor implements Executor {
+        private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        /**
+         * Espera a que haya al menos {@code count} entregas y ejecuta todas las pendientes.
+         */
+        void awaitAndRun(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pending.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Runnable runnable;
+            while ((runnable = pending.poll()) != null) {
+                runnable.run();
+            }
+        }
+    }
+}
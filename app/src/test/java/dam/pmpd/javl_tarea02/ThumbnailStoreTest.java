@@ -0,0 +1,118 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del contenedor de miniaturas {@link ThumbnailStore} en la JVM.
+ */
+public class ThumbnailStoreTest {
+
+    private static final long MAX_BYTES = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storedPixels_areServedAfterReopening() throws IOException {
+        File path = folder.newFile("thumbs.bin");
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, MAX_BYTES)) {
+            store.put(7, 2, 2, pixels(16, (byte) 3));
+        }
+
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, MAX_BYTES)) {
+            ByteBuffer read = store.get(7, 2, 2);
+            assertNotNull(read);
+            assertTrue(read.isReadOnly());
+            assertEquals(16, read.remaining());
+            assertEquals(3, read.get(15));
+            assertNull(store.get(7, 4, 4));
+        }
+    }
+
+    @Test
+    public void differentVersionOrDensity_invalidatesContent() throws IOException {
+        File path = folder.newFile("thumbs.bin");
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, MAX_BYTES)) {
+            store.put(7, 2, 2, pixels(16, (byte) 3));
+        }
+
+        try (ThumbnailStore store = new ThumbnailStore(path, 2, 100, 480, MAX_BYTES)) {
+            assertEquals(0, store.size());
+        }
+        try (ThumbnailStore store = new ThumbnailStore(path, 2, 100, 320, MAX_BYTES)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void truncatedRecord_isDiscardedOnOpen() throws IOException {
+        File path = folder.newFile("thumbs.bin");
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, MAX_BYTES)) {
+            store.put(1, 2, 2, pixels(16, (byte) 1));
+            store.put(2, 2, 2, pixels(16, (byte) 2));
+        }
+
+        // Simular un cierre inesperado a mitad del segundo registro
+        try (RandomAccessFile raw = new RandomAccessFile(path, "rw")) {
+            raw.setLength(raw.length() - 5);
+        }
+
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, MAX_BYTES)) {
+            assertEquals(1, store.size());
+            assertNotNull(store.get(1, 2, 2));
+            assertNull(store.get(2, 2, 2));
+        }
+    }
+
+    @Test
+    public void fullStore_rejectsNewEntries() throws IOException {
+        File path = folder.newFile("thumbs.bin");
+        long max = ThumbnailStore.HEADER_SIZE + ThumbnailStore.RECORD_HEADER_SIZE + 16;
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, max)) {
+            store.put(1, 2, 2, pixels(16, (byte) 1));
+            store.put(2, 2, 2, pixels(16, (byte) 2));
+            assertEquals(1, store.size());
+            assertNotNull(store.get(1, 2, 2));
+        }
+    }
+
+    @Test
+    public void manyPuts_remapOnlyWhenTheMappingGrows() throws IOException {
+        File path = folder.newFile("thumbs.bin");
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, MAX_BYTES)) {
+            // Cien miniaturas de 4 KiB caben en dos bloques de la proyección
+            for (int i = 0; i < 100; i++) {
+                store.put(i, 32, 32, pixels(4096, (byte) i));
+            }
+            assertEquals(100, store.size());
+            assertEquals(2, store.mapCount());
+            assertEquals(99, store.get(99, 32, 32).get(4095));
+            assertEquals(5, store.get(5, 32, 32).get(0));
+        }
+
+        // El espacio reservado no se confunde con registros al volver a abrir
+        try (ThumbnailStore store = new ThumbnailStore(path, 1, 100, 480, MAX_BYTES)) {
+            assertEquals(100, store.size());
+            store.put(100, 32, 32, pixels(4096, (byte) 100));
+            assertEquals(100, store.get(100, 32, 32).get(0));
+        }
+    }
+
+    private static ByteBuffer pixels(int length, byte value) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
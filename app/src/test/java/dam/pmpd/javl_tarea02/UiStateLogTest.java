@@ -0,0 +1,93 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del registro de estados de la interfaz {@link UiStateLog} en la JVM.
+ */
+public class UiStateLogTest {
+
+    private static final long RETENTION = 1000;
+
+    @Test
+    public void activeState_tagsLaterFrames() {
+        UiStateLog log = new UiStateLog(RETENTION);
+        log.put("list", "scrolling", 100);
+
+        assertEquals(Collections.singletonList("list=scrolling"), collect(log, 110, 120));
+        assertEquals(Collections.emptyList(), collect(log, 50, 90));
+    }
+
+    @Test
+    public void endedState_stillTagsOverlappingFrames() {
+        UiStateLog log = new UiStateLog(RETENTION);
+        log.put("drawer", "animating", 100);
+        log.remove("drawer", 200);
+
+        // El fotograma empezó antes de cerrar el menú aunque sus métricas lleguen después
+        assertEquals(Collections.singletonList("drawer=animating"), collect(log, 190, 210));
+        assertEquals(Collections.emptyList(), collect(log, 201, 220));
+    }
+
+    @Test
+    public void changingValue_endsPreviousValue() {
+        UiStateLog log = new UiStateLog(RETENTION);
+        log.put("screen", "a", 0);
+        log.put("screen", "b", 100);
+        log.put("list", "scrolling", 100);
+
+        assertEquals(set("screen=a", "screen=b", "list=scrolling"), new HashSet<>(collect(log, 90, 110)));
+        assertEquals(set("screen=b", "list=scrolling"), new HashSet<>(collect(log, 150, 160)));
+    }
+
+    @Test
+    public void repeatedPut_keepsOriginalStart() {
+        UiStateLog log = new UiStateLog(RETENTION);
+        log.put("list", "scrolling", 100);
+        log.put("list", "scrolling", 500);
+
+        assertEquals(Collections.singletonList("list=scrolling"), collect(log, 200, 300));
+    }
+
+    @Test
+    public void oldStates_arePruned() {
+        UiStateLog log = new UiStateLog(RETENTION);
+        log.put("fragment", "transaction", 0);
+        log.remove("fragment", 10);
+
+        // Un fotograma que termina tras la retención ya no ve el estado
+        assertEquals(Collections.emptyList(), collect(log, 5, 2000));
+    }
+
+    @Test
+    public void prunedIntervals_areReusedWithTheirNewState() {
+        UiStateLog log = new UiStateLog(RETENTION);
+        log.put("drawer", "animating", 0);
+        log.remove("drawer", 10);
+        // Tras la retención, el intervalo del menú se reutiliza para la lista
+        log.put("list", "scrolling", 5000);
+
+        assertEquals(Collections.singletonList("list=scrolling"), collect(log, 5100, 5200));
+        log.put("list", "flinging", 5300);
+        assertEquals(set("list=scrolling", "list=flinging"), new HashSet<>(collect(log, 5250, 5350)));
+    }
+
+    private static List<String> collect(UiStateLog log, long start, long end) {
+        List<String> tags = new ArrayList<>();
+        log.collect(start, end, tags);
+        return tags;
+    }
+
+    private static Set<String> set(String... tags) {
+        return new HashSet<>(Arrays.asList(tags));
+    }
+}
@@ -0,0 +1,221 @@
+package dam.pmpd.javl_tarea02;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link UsageLog} en la JVM, con un ejecutor de escritura que solo ejecuta lo que se
+ * le ha entregado cuando la prueba lo indica.
+ */
+public class UsageLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ManualExecutor writer = new ManualExecutor();
+
+    @Test
+    public void events_surviveReopening() throws IOException {
+        File directory = folder.newFolder("usage");
+        UsageLog log = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+        log.recordView("mario", 10);
+        log.recordView("luigi", 50);
+        log.recordView("mario", 30);
+        log.setFavorite("peach", true, 40);
+        writer.runAll();
+        log.close();
+
+        UsageLog reopened = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+
+        assertEquals(2, reopened.viewCount("mario"));
+        assertEquals(30, reopened.lastViewed("mario"));
+        assertTrue(reopened.isFavorite("peach"));
+        assertEquals(Arrays.asList("mario", "luigi"), reopened.mostViewed(5));
+        assertEquals(Arrays.asList("luigi", "mario"), reopened.recentlyViewed(5));
+    }
+
+    @Test
+    public void pendingEvents_areWrittenAsOneBatch() throws IOException {
+        UsageLog log = open(folder.newFolder("usage"), UsageLog.DEFAULT_COMPACT_BYTES);
+        for (int i = 0; i < 100; i++) {
+            log.recordView("mario", i);
+        }
+
+        // Una sola escritura programada para los cien toques
+        assertEquals(1, writer.pending());
+        writer.runAll();
+
+        assertEquals(100, log.viewCount("mario"));
+        assertEquals(0, log.flush());
+    }
+
+    @Test
+    public void eventsBeforeRecovery_areCountedOnce() throws IOException {
+        File directory = folder.newFolder("usage");
+        UsageLog first = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+        first.recordView("mario", 1);
+        writer.runAll();
+        first.close();
+
+        UsageLog log = new UsageLog(directory, writer, UsageLog.DEFAULT_COMPACT_BYTES);
+        log.recordView("mario", 2);
+        assertEquals(0, log.viewCount("mario"));
+        log.recover();
+        log.recordView("mario", 3);
+        writer.runAll();
+
+        assertEquals(3, log.viewCount("mario"));
+        log.close();
+        assertEquals(3, open(directory, UsageLog.DEFAULT_COMPACT_BYTES).viewCount("mario"));
+    }
+
+    @Test
+    public void flushWithoutRecovery_recoversFirst() throws IOException {
+        File directory = folder.newFolder("usage");
+        UsageLog first = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+        first.recordView("mario", 1);
+        writer.runAll();
+        first.close();
+
+        // La recuperación no llega a ejecutarse, como si el carril de disco la hubiera rechazado
+        UsageLog log = new UsageLog(directory, writer, UsageLog.DEFAULT_COMPACT_BYTES);
+        log.recordView("mario", 2);
+        writer.runAll();
+
+        assertTrue(log.isRecovered());
+        assertEquals(2, log.viewCount("mario"));
+        log.close();
+        assertEquals(2, open(directory, UsageLog.DEFAULT_COMPACT_BYTES).viewCount("mario"));
+    }
+
+    @Test
+    public void tornRecord_isDiscardedAndTruncated() throws IOException {
+        File directory = folder.newFolder("usage");
+        UsageLog log = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+        log.recordView("mario", 1);
+        log.recordView("luigi", 2);
+        writer.runAll();
+        log.close();
+        File file = new File(directory, "events-0.log");
+        long valid = file.length();
+
+        // Simular una caída a mitad de escribir un registro
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(valid - 3);
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 1, 2});
+        }
+
+        UsageLog recovered = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+
+        assertEquals(1, recovered.viewCount("mario"));
+        assertEquals(0, recovered.viewCount("luigi"));
+        // Lo que se añade después queda detrás del último registro válido
+        recovered.recordView("luigi", 3);
+        writer.runAll();
+        recovered.close();
+        assertEquals(1, open(directory, UsageLog.DEFAULT_COMPACT_BYTES).viewCount("luigi"));
+    }
+
+    @Test
+    public void compaction_keepsTheStateAndDropsOldLogs() throws IOException {
+        File directory = folder.newFolder("usage");
+        UsageLog log = open(directory, 512);
+        for (int i = 0; i < 200; i++) {
+            log.recordView("character_" + (i % 7), i);
+            if (i % 10 == 0) {
+                writer.runAll();
+            }
+        }
+        log.setFavorite("character_3", true, 500);
+        writer.runAll();
+        log.close();
+
+        File[] logs = directory.listFiles((dir, name) -> name.endsWith(".log"));
+        assertEquals(1, logs.length);
+        assertNotEquals("events-0.log", logs[0].getName());
+        assertTrue(new File(directory, UsageLog.SNAPSHOT_FILE).isFile());
+
+        UsageLog reopened = open(directory, 512);
+        assertEquals(29, reopened.viewCount("character_0"));
+        assertEquals(28, reopened.viewCount("character_6"));
+        assertTrue(reopened.isFavorite("character_3"));
+    }
+
+    @Test
+    public void crashBeforeDeletingCompactedLog_doesNotCountTwice() throws IOException {
+        File directory = folder.newFolder("usage");
+        UsageLog log = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+        log.recordView("mario", 1);
+        log.recordView("mario", 2);
+        writer.runAll();
+        File old = new File(directory, "events-0.log");
+        File copy = folder.newFile("events-0.copy");
+        Files.copy(old.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        log.compact();
+        log.close();
+
+        // El log ya compactado reaparece, como si no se hubiera llegado a borrar
+        Files.copy(copy.toPath(), old.toPath());
+        UsageLog reopened = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+
+        assertEquals(2, reopened.viewCount("mario"));
+        assertFalse(old.exists());
+    }
+
+    @Test
+    public void unfavorite_isRecorded() throws IOException {
+        File directory = folder.newFolder("usage");
+        UsageLog log = open(directory, UsageLog.DEFAULT_COMPACT_BYTES);
+        log.setFavorite("bowser", true, 1);
+        log.setFavorite("mario", true, 2);
+        log.setFavorite("bowser", false, 3);
+        writer.runAll();
+        log.close();
+
+        assertEquals(Arrays.asList("mario"), open(directory, UsageLog.DEFAULT_COMPACT_BYTES).favorites());
+    }
+
+    private UsageLog open(File directory, long compactBytes) throws IOException {
+        UsageLog log = new UsageLog(directory, writer, compactBytes);
+        log.recover();
+        return log;
+    }
+
+    /**
+     * Ejecutor de escritura falso: acumula las tareas y las ejecuta en el hilo de la prueba.
+     */
+    private static final class ManualExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package dam.pmpd.javl_tarea02.baselineprofile;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Genera el perfil de referencia de la aplicación.
+ *
+ * <p>Recorre el arranque en frío, el menú lateral, el desplazamiento de la lista y la apertura
+ * del detalle. El resultado se copia en {@code app/src/main/baseline-prof.txt} para que se
+ * compile por adelantado al instalar la aplicación:</p>
+ *
+ * <pre>./gradlew :baselineprofile:connectedBenchmarkAndroidTest
+ *     -Pandroid.testInstrumentationRunnerArguments.class=dam.pmpd.javl_tarea02.baselineprofile.BaselineProfileGenerator</pre>
+ *
+ * @author jvillar315
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(Journeys.PACKAGE_NAME, scope -> {
+            Journeys.startAndWaitForList(scope);
+            Journeys.openAndCloseDrawer(scope);
+            Journeys.scrollList(scope);
+            Journeys.openDetails(scope);
+            return Unit.INSTANCE;
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package dam.pmpd.javl_tarea02.baselineprofile;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+/**
+ * Mide la duración de los fotogramas al desplazar la lista, abrir el menú lateral y abrir el
+ * detalle de un personaje.
+ *
+ * <p>Cada recorrido se mide con el perfil de referencia instalado; para compararlo con la
+ * aplicación sin compilar basta cambiar {@link #COMPILATION_MODE} por
+ * {@code new CompilationMode.None()}.</p>
+ *
+ * @author jvillar315
+ */
+@RunWith(AndroidJUnit4.class)
+public class InteractionBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    private static final CompilationMode COMPILATION_MODE =
+            new CompilationMode.Partial(BaselineProfileMode.Require);
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void scrollList() {
+        measure(scope -> {
+            Journeys.scrollList(scope);
+            return Unit.INSTANCE;
+        });
+    }
+
+    @Test
+    public void openDrawer() {
+        measure(scope -> {
+            Journeys.openAndCloseDrawer(scope);
+            return Unit.INSTANCE;
+        });
+    }
+
+    @Test
+    public void openDetails() {
+        measure(scope -> {
+            Journeys.openDetails(scope);
+            return Unit.INSTANCE;
+        });
+    }
+
+    private void measure(Function1<MacrobenchmarkScope, Unit> journey) {
+        benchmarkRule.measureRepeated(
+                Journeys.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                COMPILATION_MODE,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    Journeys.startAndWaitForList(scope);
+                    return Unit.INSTANCE;
+                },
+                journey);
+    }
+}
@@ -0,0 +1,106 @@
+package dam.pmpd.javl_tarea02.baselineprofile;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.util.regex.Pattern;
+
+import kotlin.Unit;
+
+/**
+ * Recorridos de usuario compartidos por el generador del perfil de referencia y las pruebas de
+ * rendimiento.
+ *
+ * <p>Cada recorrido deja la aplicación en la lista de personajes, de modo que pueden encadenarse
+ * en cualquier orden.</p>
+ *
+ * @author jvillar315
+ */
+final class Journeys {
+
+    static final String PACKAGE_NAME = "dam.pmpd.javl_tarea02";
+
+    // Extra de MainActivity que activa el ajuste de la lista
+    private static final String LIST_TUNING_EXTRA = "list_tuning";
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    // Descripción del botón del menú lateral en los idiomas de la aplicación
+    private static final Pattern OPEN_DRAWER = Pattern.compile("Abrir navegador|Open navigation bar");
+
+    private Journeys() {
+    }
+
+    /**
+     * Arranca la aplicación desde el lanzador y espera a que la lista de personajes sea visible.
+     */
+    static void startAndWaitForList(MacrobenchmarkScope scope) {
+        scope.pressHome();
+        scope.startActivityAndWait();
+        waitForList(scope.getDevice());
+    }
+
+    /**
+     * Arranca la aplicación con el ajuste de la lista activado o no, espera a la lista y a que
+     * el hilo principal quede ocioso (y, por tanto, a que termine la preinflación de filas).
+     */
+    static void startAndWaitForList(MacrobenchmarkScope scope, final boolean listTuning) {
+        scope.pressHome();
+        scope.startActivityAndWait(intent -> {
+            intent.putExtra(LIST_TUNING_EXTRA, listTuning);
+            return Unit.INSTANCE;
+        });
+        waitForList(scope.getDevice());
+        scope.getDevice().waitForIdle();
+    }
+
+    /**
+     * Desplaza la lista hasta el final y vuelve al principio.
+     */
+    static void scrollList(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 list = waitForList(device);
+        // Margen para que el gesto no empiece en el borde de la pantalla
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        list.fling(Direction.DOWN);
+        device.waitForIdle();
+        list.fling(Direction.UP);
+        device.waitForIdle();
+    }
+
+    /**
+     * Abre el menú lateral y lo vuelve a cerrar.
+     */
+    static void openAndCloseDrawer(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 toggle = device.wait(Until.findObject(By.desc(OPEN_DRAWER)), TIMEOUT_MS);
+        toggle.click();
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "navigation_view")), TIMEOUT_MS);
+        device.pressBack();
+        device.wait(Until.gone(By.res(PACKAGE_NAME, "navigation_view")), TIMEOUT_MS);
+    }
+
+    /**
+     * Abre el detalle del primer personaje y vuelve a la lista.
+     */
+    static void openDetails(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 list = waitForList(device);
+        list.getChildren().get(0).click();
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "descriptionCharacter")), TIMEOUT_MS);
+        device.pressBack();
+        device.wait(Until.gone(By.res(PACKAGE_NAME, "descriptionCharacter")), TIMEOUT_MS);
+    }
+
+    private static UiObject2 waitForList(UiDevice device) {
+        UiObject2 list = device.wait(Until.findObject(By.res(PACKAGE_NAME, "recyclerViewCharacters")), TIMEOUT_MS);
+        if (list == null) {
+            throw new IllegalStateException("La lista de personajes no apareció en " + TIMEOUT_MS + " ms");
+        }
+        return list;
+    }
+}
@@ -0,0 +1,72 @@
+package dam.pmpd.javl_tarea02.baselineprofile;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Cuenta cuántas filas se inflan al desplazar la lista, con y sin el ajuste de
+ * {@code ListEngine} (caché de vistas, conjunto de reciclado y preinflación en reposo).
+ *
+ * <p>La métrica {@code SimpleAdapter#onCreateViewHolderCount} es el número de veces que se
+ * ejecutó la sección de traza de {@code onCreateViewHolder} durante el desplazamiento; con el
+ * ajuste activado debe ser claramente menor, porque las filas ya están infladas.</p>
+ *
+ * @author jvillar315
+ */
+@RunWith(Parameterized.class)
+public class ListInflationBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    private static final String CREATE_SECTION = "SimpleAdapter#onCreateViewHolder";
+
+    @Parameterized.Parameters(name = "ajuste={0}")
+    public static List<Object[]> parameters() {
+        return Arrays.asList(new Object[]{true}, new Object[]{false});
+    }
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final boolean listTuning;
+
+    public ListInflationBenchmark(boolean listTuning) {
+        this.listTuning = listTuning;
+    }
+
+    @Test
+    public void scrollList() {
+        List<Metric> metrics = Arrays.asList(
+                new TraceSectionMetric(CREATE_SECTION, TraceSectionMetric.Mode.Count.INSTANCE),
+                new FrameTimingMetric());
+        benchmarkRule.measureRepeated(
+                Journeys.PACKAGE_NAME,
+                metrics,
+                new CompilationMode.Partial(BaselineProfileMode.Require),
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    Journeys.startAndWaitForList(scope, listTuning);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.scrollList(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
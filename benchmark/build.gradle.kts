@@ -0,0 +1,45 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+// Clases de :app que no dependen de Android y se compilan tal cual para medirlas en la JVM
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "dam/pmpd/javl_tarea02/Character.java",
+                "dam/pmpd/javl_tarea02/ImageSizing.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    benchmarkMode.set(listOf("thrpt", "avgt"))
+    timeUnit.set("us")
+    profilers.set(listOf("gc"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    jvmArgsAppend.set(listOf(
+        "-Dbenchmark.drawables=${rootProject.file("app/src/artwork").absolutePath}"
+    ))
+}
@@ -0,0 +1,156 @@
+package dam.pmpd.javl_tarea02.benchmark;
+
+import dam.pmpd.javl_tarea02.Character;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simula los bucles de vinculación de {@code SimpleAdapter}.
+ *
+ * <p>Las vistas de Android no existen en la JVM, así que cada fila se modela con los campos que
+ * toca {@code onBindViewHolder}: el texto del nombre, la petición de imagen, el listener de
+ * pulsación y el personaje vinculado. La versión antigua creaba un listener y formateaba el
+ * mensaje de selección en cada vinculación; la actual crea el listener una vez por fila, reutiliza
+ * los mensajes ya formateados y no vuelve a poner el texto si la fila ya muestra el mismo
+ * personaje. En las dos la imagen se pide siempre, como hace {@code ImageLoader.load}.</p>
+ *
+ * <p>Cada pasada por las filas avanza una posición más de las que hay, igual que al desplazar la
+ * lista, de modo que una fila casi nunca recibe el personaje que ya mostraba.</p>
+ *
+ * @author jvillar315
+ */
+@State(Scope.Thread)
+public class AdapterBindBenchmark {
+
+    // Número de vinculaciones por llamada, equivalente a desplazar la lista varias pantallas
+    private static final int BINDS = 1000;
+
+    // Filas que recicla el RecyclerView en una pantalla
+    private static final int HOLDERS = 8;
+
+    // Personajes del catálogo, con nombres distintos, y miniaturas distintas entre ellos
+    private static final int CHARACTERS = 64;
+    private static final int IMAGES = 4;
+
+    private static final String SELECTION_FORMAT = "Has seleccionado a %s";
+
+    private Character[] characters;
+    private Row[] rows;
+    private Map<String, String> selectionMessages;
+    // Miniaturas ya decodificadas, por recurso, como la caché en memoria de ImageLoader
+    private Object[] thumbnails;
+
+    @Setup
+    public void setUp() {
+        characters = new Character[CHARACTERS];
+        for (int i = 0; i < CHARACTERS; i++) {
+            characters[i] = new Character("character_" + i, "Personaje " + i, i % IMAGES, "", "");
+        }
+        thumbnails = new Object[IMAGES];
+        for (int i = 0; i < IMAGES; i++) {
+            thumbnails[i] = new int[16];
+        }
+        rows = new Row[HOLDERS];
+        for (int i = 0; i < HOLDERS; i++) {
+            final Row row = new Row();
+            row.clickListener = () -> row.lastMessage = selectionMessage(row.bound);
+            rows[i] = row;
+        }
+        selectionMessages = new HashMap<>();
+    }
+
+    /**
+     * Vinculación antigua: listener y mensaje nuevos en cada llamada.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BINDS)
+    public void legacyBind(Blackhole blackhole) {
+        for (int n = 0; n < BINDS; n++) {
+            final Row row = rows[n % HOLDERS];
+            final Character character = characters[position(n)];
+            row.name = character.getName();
+            load(row, character.getImageResource());
+            final String message = String.format(SELECTION_FORMAT, character.getName());
+            row.clickListener = () -> row.lastMessage = message;
+            row.bound = character;
+            blackhole.consume(row);
+        }
+    }
+
+    /**
+     * Vinculación actual: listener por fila, mensajes en caché y texto solo si cambia el personaje.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BINDS)
+    public void cachedBind(Blackhole blackhole) {
+        for (int n = 0; n < BINDS; n++) {
+            Row row = rows[n % HOLDERS];
+            Character character = characters[position(n)];
+            if (!character.equals(row.bound)) {
+                row.bound = character;
+                row.name = character.getName();
+            }
+            load(row, character.getImageResource());
+            blackhole.consume(row);
+        }
+    }
+
+    /**
+     * Pulsación sobre una fila con los mensajes en caché.
+     */
+    @Benchmark
+    public String cachedClick() {
+        Row row = rows[0];
+        row.bound = characters[0];
+        row.clickListener.run();
+        return row.lastMessage;
+    }
+
+    /**
+     * Posición vinculada en la llamada n: cada pasada por las filas empieza una posición más allá.
+     */
+    private static int position(int n) {
+        return (n + n / HOLDERS) % CHARACTERS;
+    }
+
+    /**
+     * Modelo de {@code ImageLoader.load}: no hace nada si la fila ya pidió esa imagen y si no la
+     * busca en la caché en memoria.
+     */
+    private void load(Row row, int imageResource) {
+        if (row.image != null && row.imageResource == imageResource) {
+            return;
+        }
+        row.imageResource = imageResource;
+        row.image = thumbnails[imageResource];
+    }
+
+    private String selectionMessage(Character character) {
+        String message = selectionMessages.get(character.getId());
+        if (message == null) {
+            message = String.format(SELECTION_FORMAT, character.getName());
+            selectionMessages.put(character.getId(), message);
+        }
+        return message;
+    }
+
+    /**
+     * Estado de una fila reciclable.
+     */
+    static final class Row {
+        CharSequence name;
+        int imageResource;
+        Object image;
+        Runnable clickListener;
+        Character bound;
+        String lastMessage;
+    }
+}
@@ -0,0 +1,133 @@
+package dam.pmpd.javl_tarea02.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mide la serialización de los argumentos de {@code DetailsFragment.newInstance}.
+ *
+ * <p>{@code Bundle} y {@code Parcel} solo existen en Android, así que se reproduce su formato
+ * sobre un {@link ByteBuffer}: cada entrada escribe su clave, el tipo del valor y el valor, y las
+ * cadenas se guardan como longitud más caracteres UTF-16 terminados en cero y alineados a
+ * 4 bytes. Se compara el formato anterior (nombre, imagen, descripción y habilidades) con el
+ * actual, que solo lleva el identificador del personaje. Cada operación crea los argumentos, los
+ * escribe y los vuelve a leer, como ocurre al guardar y restaurar el fragmento.</p>
+ *
+ * @author jvillar315
+ */
+@State(Scope.Thread)
+public class BundleBenchmark {
+
+    private static final int VAL_STRING = 0;
+    private static final int VAL_INTEGER = 1;
+
+    // Longitud de la descripción y de las habilidades en el formato anterior
+    @Param({"20", "2000"})
+    public int textLength;
+
+    private String text;
+    private ByteBuffer parcel;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(textLength);
+        for (int i = 0; i < textLength; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        text = builder.toString();
+        parcel = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Formato anterior: todos los datos del personaje en los argumentos.
+     */
+    @Benchmark
+    public Map<String, Object> legacyArguments() {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("name", "Mario");
+        args.put("image", 0x7f080001);
+        args.put("description", text);
+        args.put("abilities", text);
+        return roundTrip(args);
+    }
+
+    /**
+     * Formato actual: solo el identificador del personaje.
+     */
+    @Benchmark
+    public Map<String, Object> idArgument() {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("character_id", "mario");
+        return roundTrip(args);
+    }
+
+    private Map<String, Object> roundTrip(Map<String, Object> args) {
+        parcel.clear();
+        writeBundle(parcel, args);
+        parcel.flip();
+        return readBundle(parcel);
+    }
+
+    private static void writeBundle(ByteBuffer out, Map<String, Object> bundle) {
+        int lengthPosition = out.position();
+        out.putInt(0);
+        out.putInt(bundle.size());
+        for (Map.Entry<String, Object> entry : bundle.entrySet()) {
+            writeString(out, entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                out.putInt(VAL_INTEGER);
+                out.putInt((Integer) value);
+            } else {
+                out.putInt(VAL_STRING);
+                writeString(out, (String) value);
+            }
+        }
+        out.putInt(lengthPosition, out.position() - lengthPosition - 4);
+    }
+
+    private static Map<String, Object> readBundle(ByteBuffer in) {
+        in.getInt();
+        int size = in.getInt();
+        Map<String, Object> bundle = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            int type = in.getInt();
+            bundle.put(key, type == VAL_INTEGER ? (Object) in.getInt() : readString(in));
+        }
+        return bundle;
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        int length = value.length();
+        out.putInt(length);
+        for (int i = 0; i < length; i++) {
+            out.putChar(value.charAt(i));
+        }
+        out.putChar('\0');
+        pad(out);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.getChar();
+        }
+        in.getChar();
+        pad(in);
+        return new String(chars);
+    }
+
+    private static void pad(ByteBuffer buffer) {
+        buffer.position((buffer.position() + 3) & ~3);
+    }
+}
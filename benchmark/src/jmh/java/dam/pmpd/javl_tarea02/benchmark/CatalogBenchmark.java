@@ -0,0 +1,106 @@
+package dam.pmpd.javl_tarea02.benchmark;
+
+import dam.pmpd.javl_tarea02.Character;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mide la construcción del catálogo de personajes.
+ *
+ * <p>Compara la carga antigua, que creaba un {@link Character} con todos sus textos por cada
+ * fila, con la carga actual, que solo crea las filas que se muestran y deja la descripción y
+ * las habilidades en un {@link Character.DetailsSource} que se consulta al abrir el detalle.
+ * Los textos se generan en memoria a partir del tamaño del catálogo, como si vinieran de los
+ * arrays de recursos.</p>
+ *
+ * @author jvillar315
+ */
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+
+    // Filas que caben en la primera pantalla de la lista
+    private static final int VISIBLE_ROWS = 8;
+
+    @Param({"4", "1000", "10000"})
+    public int size;
+
+    private String[] ids;
+    private String[] names;
+    private int[] images;
+    private String[] descriptions;
+    private String[] abilities;
+    private Character.DetailsSource detailsSource;
+
+    @Setup
+    public void setUp() {
+        ids = new String[size];
+        names = new String[size];
+        images = new int[size];
+        descriptions = new String[size];
+        abilities = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = "character_" + i;
+            names[i] = "Personaje " + i;
+            images[i] = 0x7f080000 + (i & 3);
+            descriptions[i] = "Descripción larga del personaje número " + i + " del catálogo.";
+            abilities[i] = "Salto, carrera y habilidad especial " + i;
+        }
+        detailsSource = new Character.DetailsSource() {
+            @Override
+            public String loadDescription(String id) {
+                return descriptions[indexOf(id)];
+            }
+
+            @Override
+            public String loadAbilities(String id) {
+                return abilities[indexOf(id)];
+            }
+        };
+    }
+
+    /**
+     * Carga antigua: una lista completa con todos los textos de cada personaje.
+     */
+    @Benchmark
+    public List<Character> eagerCatalog() {
+        List<Character> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(new Character(ids[i], names[i], images[i], descriptions[i], abilities[i]));
+        }
+        return list;
+    }
+
+    /**
+     * Carga actual: solo se crean las filas visibles y los detalles se piden bajo demanda.
+     */
+    @Benchmark
+    public void lazyVisibleRows(Blackhole blackhole) {
+        int visible = Math.min(VISIBLE_ROWS, size);
+        for (int i = 0; i < visible; i++) {
+            blackhole.consume(new Character(ids[i], names[i], images[i], detailsSource));
+        }
+    }
+
+    /**
+     * Apertura de un detalle con la carga actual: se crea la fila y se leen sus textos.
+     */
+    @Benchmark
+    public void lazyOpenDetails(Blackhole blackhole) {
+        int position = size / 2;
+        Character character = new Character(ids[position], names[position], images[position], detailsSource);
+        blackhole.consume(character.getDescription());
+        blackhole.consume(character.getAbilities());
+    }
+
+    private static int indexOf(String id) {
+        return Integer.parseInt(id.substring("character_".length()));
+    }
+}
@@ -0,0 +1,122 @@
+package dam.pmpd.javl_tarea02.benchmark;
+
+import dam.pmpd.javl_tarea02.ImageSizing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Mide la decodificación de los PNG de los personajes.
+ *
+ * <p>{@code BitmapFactory} no existe en la JVM, así que se usa {@link ImageIO}: el submuestreo
+ * de {@link ImageReadParam#setSourceSubsampling} equivale a {@code inSampleSize} y se calcula con
+ * el mismo {@link ImageSizing#calculateInSampleSize} que usa la aplicación. Con
+ * {@code targetSize} igual a 0 se decodifica la imagen completa, como hacía la versión
+ * anterior.</p>
+ *
+ * <p>Los PNG se leen de {@code app/src/artwork}, los originales a partir de los que se generan
+ * las variantes por densidad; la ruta llega en la propiedad
+ * {@code benchmark.drawables} que configura el módulo.</p>
+ *
+ * @author jvillar315
+ */
+@State(Scope.Thread)
+public class ImageDecodeBenchmark {
+
+    @Param({"mario", "luigi", "peach", "bowser"})
+    public String drawable;
+
+    // Lado en píxeles de la vista de destino; 0 decodifica a tamaño completo
+    @Param({"0", "240", "600"})
+    public int targetSize;
+
+    private byte[] png;
+    private int sampleSize;
+
+    @Setup
+    public void setUp() throws IOException {
+        File directory = new File(System.getProperty("benchmark.drawables", "../app/src/artwork"));
+        png = readFully(new File(directory, drawable + ".png"));
+
+        ImageReader reader = openReader();
+        try {
+            sampleSize = ImageSizing.calculateInSampleSize(
+                    reader.getWidth(0), reader.getHeight(0), targetSize, targetSize);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Lee solo la cabecera para obtener las dimensiones, como {@code inJustDecodeBounds}.
+     */
+    @Benchmark
+    public int decodeBounds() throws IOException {
+        ImageReader reader = openReader();
+        try {
+            return reader.getWidth(0) * reader.getHeight(0);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Decodifica la imagen submuestreada para el tamaño de destino.
+     */
+    @Benchmark
+    public BufferedImage decodeSampled() throws IOException {
+        ImageReader reader = openReader();
+        try {
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(sampleSize, sampleSize, 0, 0);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private ImageReader openReader() throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png));
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("No hay lector para " + drawable);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new IOException("Fichero truncado: " + file);
+                }
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
@@ -0,0 +1,33 @@
+plugins {
+    java
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+// Formato del catálogo binario compartido con :app, que lo lee en tiempo de ejecución
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "dam/pmpd/javl_tarea02/build/**",
+                "dam/pmpd/javl_tarea02/BinaryCatalog.java"
+            )
+        }
+    }
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    implementation(gradleApi())
+}
@@ -0,0 +1,348 @@
+package dam.pmpd.javl_tarea02.build;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Genera las variantes reducidas de una imagen para cada densidad de pantalla.
+ *
+ * <p>La imagen se reduce para cubrir el lado pedido (como {@code centerCrop}) sin ampliarla
+ * nunca, y se codifica con {@code cwebp} en WebP sin pérdidas o casi sin pérdidas. Después se
+ * vuelve a decodificar con {@code dwebp} y se compara con la imagen reducida: ningún canal puede
+ * diferir más que la tolerancia.</p>
+ *
+ * <p>No depende de Gradle, de modo que puede usarse y probarse desde una JVM normal.</p>
+ *
+ * @author jvillar315
+ */
+public class ArtworkProcessor {
+
+    private static final long TOOL_TIMEOUT_S = 60;
+
+    // Repeticiones al medir la decodificación
+    private static final int DECODE_RUNS = 5;
+
+    // Línea de dwebp -t con el tiempo de decodificación, en segundos
+    private static final Pattern DECODE_TIME = Pattern.compile("decode picture:\\s*([0-9.]+)s");
+
+    private final String cwebp;
+    private final String dwebp;
+    private final int nearLossless;
+    private final int tolerance;
+
+    /**
+     * @param cwebp        Ruta de {@code cwebp}.
+     * @param dwebp        Ruta de {@code dwebp}.
+     * @param nearLossless Calidad de {@code -near_lossless} (0-100; 100 es sin pérdidas).
+     * @param tolerance    Diferencia máxima admitida por canal (0-255).
+     */
+    public ArtworkProcessor(String cwebp, String dwebp, int nearLossless, int tolerance) {
+        this.cwebp = cwebp;
+        this.dwebp = dwebp;
+        this.nearLossless = nearLossless;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Lee una imagen y la convierte a ARGB.
+     *
+     * @param file Fichero de imagen.
+     * @return Imagen en formato {@link BufferedImage#TYPE_INT_ARGB}.
+     * @throws IOException Si no se puede leer.
+     */
+    public static BufferedImage read(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Formato no reconocido: " + file);
+        }
+        return toArgb(image);
+    }
+
+    /**
+     * Reduce la imagen para que su lado menor mida {@code target} píxeles.
+     *
+     * <p>Reduce a la mitad mientras sea posible y termina con un paso bilineal, lo que da un
+     * resultado similar a promediar áreas sin su coste. Nunca amplía la imagen.</p>
+     *
+     * @param source Imagen original.
+     * @param target Lado menor deseado, en píxeles.
+     * @return Imagen reducida, o la original si ya es igual o menor.
+     */
+    public static BufferedImage scaleToCover(BufferedImage source, int target) {
+        int shortSide = Math.min(source.getWidth(), source.getHeight());
+        if (target <= 0 || shortSide <= target) {
+            return source;
+        }
+        double scale = (double) target / shortSide;
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != width || current.getHeight() != height) {
+            current = resize(current, width, height);
+        }
+        return current;
+    }
+
+    /**
+     * Codifica la imagen en WebP y comprueba el resultado.
+     *
+     * @param image    Imagen ya reducida.
+     * @param baseName Ruta de salida sin extensión.
+     * @return El fichero generado.
+     * @throws IOException Si falla la codificación o la imagen difiere más que la tolerancia.
+     */
+    public File encode(BufferedImage image, File baseName) throws IOException {
+        File parent = baseName.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("No se pudo crear " + parent);
+        }
+
+        File png = new File(baseName.getPath() + ".tmp.png");
+        File pam = new File(baseName.getPath() + ".tmp.pam");
+        File output = new File(baseName.getPath() + ".webp");
+        BufferedImage decoded;
+        try {
+            ImageIO.write(image, "png", png);
+            List<String> command = new ArrayList<>();
+            command.add(cwebp);
+            command.add("-quiet");
+            command.add("-lossless");
+            command.add("-exact");
+            if (nearLossless < 100) {
+                command.add("-near_lossless");
+                command.add(String.valueOf(nearLossless));
+            }
+            command.add(png.getPath());
+            command.add("-o");
+            command.add(output.getPath());
+            run(command);
+
+            List<String> decode = new ArrayList<>();
+            decode.add(dwebp);
+            decode.add("-quiet");
+            decode.add("-pam");
+            decode.add(output.getPath());
+            decode.add("-o");
+            decode.add(pam.getPath());
+            run(decode);
+            decoded = readPam(pam);
+        } finally {
+            delete(png);
+            delete(pam);
+        }
+
+        int difference = maxDifference(image, decoded);
+        if (difference > tolerance) {
+            throw new IOException(output + " difiere en " + difference
+                    + " niveles de la imagen reducida (tolerancia " + tolerance + ")");
+        }
+        return output;
+    }
+
+    /**
+     * Calcula la mayor diferencia entre canales de dos imágenes del mismo tamaño.
+     *
+     * <p>Los píxeles totalmente transparentes se consideran iguales aunque su color difiera.</p>
+     *
+     * @return La diferencia máxima (0-255), o {@link Integer#MAX_VALUE} si los tamaños difieren.
+     */
+    public static int maxDifference(BufferedImage expected, BufferedImage actual) {
+        if (expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            return Integer.MAX_VALUE;
+        }
+        int max = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                if (a == b || ((a >>> 24) == 0 && (b >>> 24) == 0)) {
+                    continue;
+                }
+                for (int shift = 0; shift < 32; shift += 8) {
+                    max = Math.max(max, Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)));
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Pregunta a una herramienta de libwebp su versión.
+     *
+     * @param tool Ruta de {@code cwebp} o {@code dwebp}.
+     * @return La versión que informa, o {@code "desconocida"} si no se puede ejecutar.
+     */
+    public static String version(String tool) {
+        List<String> command = new ArrayList<>();
+        command.add(tool);
+        command.add("-version");
+        try {
+            return run(command).trim();
+        } catch (IOException e) {
+            return "desconocida";
+        }
+    }
+
+    /**
+     * Mide el tiempo medio de decodificación de un PNG en la JVM.
+     *
+     * @param file Fichero PNG.
+     * @return Microsegundos por decodificación.
+     */
+    public static long measurePngDecodeMicros(File file) throws IOException {
+        read(file);
+        long total = 0;
+        for (int i = 0; i < DECODE_RUNS; i++) {
+            long start = System.nanoTime();
+            ImageIO.read(file);
+            total += System.nanoTime() - start;
+        }
+        return TimeUnit.NANOSECONDS.toMicros(total / DECODE_RUNS);
+    }
+
+    /**
+     * Mide el tiempo de decodificación de un WebP con libwebp, el decodificador que usa Android.
+     *
+     * @param file Fichero WebP.
+     * @return Microsegundos por decodificación, o -1 si {@code dwebp} no informa del tiempo.
+     */
+    public long measureWebpDecodeMicros(File file) throws IOException {
+        long best = -1;
+        for (int i = 0; i < DECODE_RUNS; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(dwebp);
+            command.add("-t");
+            command.add(file.getPath());
+            Matcher matcher = DECODE_TIME.matcher(run(command));
+            if (!matcher.find()) {
+                return -1;
+            }
+            long micros = Math.round(Double.parseDouble(matcher.group(1)) * 1_000_000);
+            best = best < 0 ? micros : Math.min(best, micros);
+        }
+        return best;
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static BufferedImage toArgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        BufferedImage argb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = argb.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return argb;
+    }
+
+    /**
+     * Lee un fichero PAM RGBA de 8 bits, el formato que genera {@code dwebp -pam}.
+     */
+    private static BufferedImage readPam(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            int width = 0;
+            int height = 0;
+            int depth = 0;
+            String line;
+            while (!(line = readLine(in)).equals("ENDHDR")) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts[0].equals("WIDTH")) {
+                    width = Integer.parseInt(parts[1]);
+                } else if (parts[0].equals("HEIGHT")) {
+                    height = Integer.parseInt(parts[1]);
+                } else if (parts[0].equals("DEPTH")) {
+                    depth = Integer.parseInt(parts[1]);
+                }
+            }
+            if (depth != 4) {
+                throw new IOException("PAM no RGBA: " + file);
+            }
+            byte[] row = new byte[width * 4];
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            for (int y = 0; y < height; y++) {
+                in.readFully(row);
+                for (int x = 0; x < width; x++) {
+                    int i = x * 4;
+                    image.setRGB(x, y, (row[i + 3] & 0xFF) << 24 | (row[i] & 0xFF) << 16
+                            | (row[i + 1] & 0xFF) << 8 | (row[i + 2] & 0xFF));
+                }
+            }
+            return image;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Cabecera PAM incompleta");
+            }
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    private static String run(List<String> command) throws IOException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InputStream in = process.getInputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        try {
+            if (!process.waitFor(TOOL_TIMEOUT_S, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                process.destroy();
+                throw new IOException(command.get(0) + " falló: " + output.toString("UTF-8"));
+            }
+            return output.toString("UTF-8");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido esperando a " + command.get(0), e);
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
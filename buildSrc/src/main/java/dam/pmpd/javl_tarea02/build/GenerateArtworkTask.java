@@ -0,0 +1,299 @@
+package dam.pmpd.javl_tarea02.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Genera las imágenes de los personajes reducidas para cada densidad de pantalla.
+ *
+ * <p>Lee los PNG originales de {@link #getSourceDir()} y escribe en {@link #getOutputDir()} una
+ * carpeta {@code drawable-<densidad>} por densidad, con cada imagen reducida al mayor tamaño
+ * al que la muestran las pantallas. Ese tamaño se obtiene de las dimensiones indicadas en
+ * {@link #getDimenNames()}, de modo que si cambian los layouts cambian también las imágenes.</p>
+ *
+ * <p>Además escribe en {@link #getReportFile()} un informe con el tamaño de los ficheros, la
+ * memoria del bitmap decodificado y el tiempo de decodificación antes y después.</p>
+ *
+ * <p>Necesita {@code cwebp} y {@code dwebp} (libwebp) en el {@code PATH} o indicados en
+ * {@link #getCwebp()} y {@link #getDwebp()}. Sin ellos copia los PNG originales sin cambios en
+ * {@code drawable}, para que la aplicación siga compilando.</p>
+ *
+ * @author jvillar315
+ */
+@CacheableTask
+public abstract class GenerateArtworkTask extends DefaultTask {
+
+    private static final Pattern DP = Pattern.compile("(\\d+(?:\\.\\d+)?)dp");
+
+    public GenerateArtworkTask() {
+        getCwebp().convention(findOnPath("cwebp"));
+        getDwebp().convention(findOnPath("dwebp"));
+        getToolVersions().convention(getCwebp().zip(getDwebp(),
+                (cwebp, dwebp) -> "cwebp " + ArtworkProcessor.version(cwebp)
+                        + ", dwebp " + ArtworkProcessor.version(dwebp)));
+        getNearLossless().convention(100);
+        getTolerance().convention(0);
+    }
+
+    /**
+     * @return Carpeta con los PNG originales.
+     */
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract DirectoryProperty getSourceDir();
+
+    /**
+     * @return Fichero {@code dimens.xml} con los tamaños a los que se muestran las imágenes.
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getDimensFile();
+
+    /**
+     * @return Nombres de las dimensiones a las que se muestran las imágenes.
+     */
+    @Input
+    public abstract ListProperty<String> getDimenNames();
+
+    /**
+     * @return Densidades a generar, con su factor respecto a mdpi.
+     */
+    @Input
+    public abstract MapProperty<String, Float> getDensities();
+
+    /**
+     * @return Calidad de {@code -near_lossless}; 100 genera WebP sin pérdidas.
+     */
+    @Input
+    public abstract Property<Integer> getNearLossless();
+
+    /**
+     * @return Diferencia máxima admitida por canal entre la imagen reducida y la generada.
+     */
+    @Input
+    public abstract Property<Integer> getTolerance();
+
+    /**
+     * @return Ruta de {@code cwebp}; si no hay, se copian los originales sin reducir.
+     */
+    @Internal
+    public abstract Property<String> getCwebp();
+
+    /**
+     * @return Ruta de {@code dwebp}, usada para comprobar los WebP generados.
+     */
+    @Internal
+    public abstract Property<String> getDwebp();
+
+    /**
+     * @return Versiones de {@code cwebp} y {@code dwebp}, o nada sin ellas. Forman parte de la
+     * clave de la caché en lugar de las rutas, que cambian de una máquina a otra.
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getToolVersions();
+
+    /**
+     * @return Carpeta de recursos generada.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    /**
+     * @return Informe de ahorro.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    @TaskAction
+    public void generate() throws Exception {
+        File[] sources = getSourceDir().get().getAsFile().listFiles((dir, name) -> name.endsWith(".png"));
+        if (sources == null || sources.length == 0) {
+            throw new GradleException("No hay imágenes en " + getSourceDir().get());
+        }
+        Arrays.sort(sources);
+
+        int sizeDp = largestDimen(getDimensFile().get().getAsFile(), getDimenNames().get());
+        File outputDir = getOutputDir().get().getAsFile();
+        deleteRecursively(outputDir);
+
+        if (!getCwebp().isPresent() || !getDwebp().isPresent()) {
+            // Sin libwebp se copian los originales tal cual, como estaban antes en res/drawable
+            getLogger().warn("cwebp/dwebp no encontrados: se copian las imágenes originales sin reducir");
+            File drawable = new File(outputDir, "drawable");
+            if (!drawable.mkdirs()) {
+                throw new IOException("No se pudo crear " + drawable);
+            }
+            for (File source : sources) {
+                Files.copy(source.toPath(), new File(drawable, source.getName()).toPath());
+            }
+            writeReport(Collections.singletonList("Sin cwebp/dwebp: imágenes originales sin cambios."));
+            return;
+        }
+
+        ArtworkProcessor processor = new ArtworkProcessor(getCwebp().get(), getDwebp().get(),
+                getNearLossless().get(), getTolerance().get());
+        List<String> report = new ArrayList<>();
+        report.add(String.format(Locale.ROOT, "Imágenes a %d dp, WebP near_lossless %d, tolerancia %d",
+                sizeDp, getNearLossless().get(), getTolerance().get()));
+        report.add("Decodificación: PNG original con ImageIO, WebP con libwebp (dwebp -t)");
+        report.add("");
+        report.add(String.format(Locale.ROOT, "%-10s %-8s %11s %11s %13s %12s",
+                "imagen", "densidad", "píxeles", "bytes", "bitmap", "decodif."));
+
+        long originalTotal = 0;
+        long generatedTotal = 0;
+        for (File source : sources) {
+            String name = source.getName().substring(0, source.getName().length() - ".png".length());
+            BufferedImage original = ArtworkProcessor.read(source);
+            originalTotal += source.length();
+            report.add(row(name, "original", original, source.length(),
+                    ArtworkProcessor.measurePngDecodeMicros(source)));
+
+            for (Map.Entry<String, Float> density : getDensities().get().entrySet()) {
+                // Todas las densidades, aunque el original no dé para más y repita el tamaño de la
+                // anterior: si faltara una carpeta, esas pantallas escalarían la de otra densidad
+                BufferedImage scaled = ArtworkProcessor.scaleToCover(original,
+                        Math.round(sizeDp * density.getValue()));
+                File output;
+                try {
+                    output = processor.encode(scaled,
+                            new File(outputDir, "drawable-" + density.getKey() + File.separator + name));
+                } catch (IOException e) {
+                    throw new GradleException("No se pudo generar " + name + " (" + density.getKey() + ")", e);
+                }
+                generatedTotal += output.length();
+                report.add(row("", density.getKey(), scaled, output.length(),
+                        processor.measureWebpDecodeMicros(output)));
+            }
+        }
+
+        report.add("");
+        report.add(String.format(Locale.ROOT, "Originales: %d bytes", originalTotal));
+        report.add(String.format(Locale.ROOT, "Generadas (todas las densidades): %d bytes (%+.1f%%)",
+                generatedTotal, percent(generatedTotal, originalTotal)));
+        report.add("Con App Bundle cada dispositivo solo descarga las de su densidad.");
+        writeReport(report);
+    }
+
+    private void writeReport(List<String> lines) throws IOException {
+        File reportFile = getReportFile().get().getAsFile();
+        File parent = reportFile.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("No se pudo crear " + parent);
+        }
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(reportFile), StandardCharsets.UTF_8));
+        try {
+            for (String line : lines) {
+                out.println(line);
+            }
+        } finally {
+            out.close();
+        }
+        getLogger().lifecycle("Informe de imágenes: " + reportFile);
+    }
+
+    private static String row(String name, String density, BufferedImage image, long bytes, long decodeMicros) {
+        return String.format(Locale.ROOT, "%-10s %-8s %5dx%-5d %11d %13d %12s", name, density,
+                image.getWidth(), image.getHeight(), bytes, (long) image.getWidth() * image.getHeight() * 4,
+                decodeMicros < 0 ? "n/d" : decodeMicros + " µs");
+    }
+
+    private static double percent(long value, long reference) {
+        return reference == 0 ? 0 : (value - reference) * 100.0 / reference;
+    }
+
+    /**
+     * Devuelve el mayor valor en dp de las dimensiones indicadas.
+     */
+    private static int largestDimen(File dimensFile, Iterable<String> names) throws Exception {
+        NodeList dimens = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(dimensFile).getElementsByTagName("dimen");
+        int largest = 0;
+        for (String name : names) {
+            boolean found = false;
+            for (int i = 0; i < dimens.getLength(); i++) {
+                Element dimen = (Element) dimens.item(i);
+                if (name.equals(dimen.getAttribute("name"))) {
+                    Matcher matcher = DP.matcher(dimen.getTextContent().trim());
+                    if (!matcher.matches()) {
+                        throw new GradleException("La dimensión " + name + " no está en dp");
+                    }
+                    largest = Math.max(largest, (int) Math.ceil(Float.parseFloat(matcher.group(1))));
+                    found = true;
+                }
+            }
+            if (!found) {
+                throw new GradleException("No existe la dimensión " + name + " en " + dimensFile);
+            }
+        }
+        return largest;
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("No se pudo borrar " + file);
+        }
+    }
+
+    private static String findOnPath(String tool) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            for (String candidate : new String[]{tool, tool + ".exe"}) {
+                File file = new File(dir, candidate);
+                if (file.isFile() && file.canExecute()) {
+                    return file.getAbsolutePath();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,240 @@
+package dam.pmpd.javl_tarea02.build;
+
+import dam.pmpd.javl_tarea02.BinaryCatalog;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Genera el catálogo binario de personajes ({@link BinaryCatalog}) a partir de los recursos.
+ *
+ * <p>El orden de los personajes y las cadenas de cada campo salen de los arrays de
+ * {@link #getArraysFile()}: {@code character_ids} con los identificadores y
+ * {@code character_names}, {@code character_descriptions} y {@code character_abilities} con
+ * referencias {@code @string/...}. Cada referencia se resuelve en cada uno de los
+ * {@link #getStringsFiles()} de las carpetas {@code values} o {@code values-<idioma>}, usando el
+ * texto por defecto si un idioma no la traduce. El resultado se escribe como asset en
+ * {@link #getOutputDir()}.</p>
+ *
+ * @author jvillar315
+ */
+@CacheableTask
+public abstract class GenerateCatalogTask extends DefaultTask {
+
+    private static final String IDS_ARRAY = "character_ids";
+    private static final String[] FIELD_ARRAYS = {
+            "character_names", "character_descriptions", "character_abilities"};
+
+    // values, values-en, values-es-rES, values-b+sr+Latn
+    private static final Pattern VALUES_DIR =
+            Pattern.compile("values(?:-([a-z]{2,3})(?:-r([A-Z]{2}))?|-b\\+([a-zA-Z0-9+]+))?");
+
+    public GenerateCatalogTask() {
+        getFileName().convention("catalog.bin");
+    }
+
+    /**
+     * @return Fichero {@code arrays.xml} con el orden del catálogo.
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getArraysFile();
+
+    /**
+     * @return Ficheros {@code values*}/{@code strings.xml}; el idioma sale del nombre de la carpeta.
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getStringsFiles();
+
+    /**
+     * @return Nombre del asset generado.
+     */
+    @Input
+    public abstract Property<String> getFileName();
+
+    /**
+     * @return Carpeta de assets generada.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    @TaskAction
+    public void generate() throws Exception {
+        Document arrays = parse(getArraysFile().get().getAsFile());
+        String[] ids = arrayItems(arrays, IDS_ARRAY);
+        String[][] references = new String[FIELD_ARRAYS.length][];
+        for (int field = 0; field < FIELD_ARRAYS.length; field++) {
+            references[field] = arrayItems(arrays, FIELD_ARRAYS[field]);
+            if (references[field].length != ids.length) {
+                throw new GradleException("El array " + FIELD_ARRAYS[field] + " tiene "
+                        + references[field].length + " elementos y " + IDS_ARRAY + " " + ids.length);
+            }
+        }
+
+        Map<String, Map<String, String>> stringsByLocale = readStrings(getStringsFiles().getFiles());
+        Map<String, String> defaults = stringsByLocale.get("");
+        if (defaults == null) {
+            throw new GradleException("Falta values/strings.xml entre los ficheros de cadenas");
+        }
+
+        BinaryCatalog.Writer writer = new BinaryCatalog.Writer(ids);
+        for (Map.Entry<String, Map<String, String>> locale : stringsByLocale.entrySet()) {
+            String[][] texts = new String[FIELD_ARRAYS.length][ids.length];
+            for (int field = 0; field < FIELD_ARRAYS.length; field++) {
+                for (int i = 0; i < ids.length; i++) {
+                    texts[field][i] = resolve(references[field][i], locale.getValue(), defaults);
+                }
+            }
+            writer.addLocale(locale.getKey(), texts[0], texts[1], texts[2]);
+        }
+        byte[] content = writer.toByteArray();
+
+        File outputDir = getOutputDir().get().getAsFile();
+        File[] stale = outputDir.listFiles();
+        if (stale != null) {
+            for (File file : stale) {
+                if (!file.delete()) {
+                    throw new IOException("No se pudo borrar " + file);
+                }
+            }
+        }
+        File output = new File(outputDir, getFileName().get());
+        try (OutputStream out = new FileOutputStream(output)) {
+            out.write(content);
+        }
+        getLogger().info("Catálogo de {} personajes en {} idiomas: {} bytes", ids.length,
+                stringsByLocale.size(), content.length);
+    }
+
+    /**
+     * Lee las cadenas de cada carpeta de valores que corresponde a un idioma.
+     *
+     * @return Cadenas por etiqueta de idioma; "" para las de {@code values}.
+     */
+    private static Map<String, Map<String, String>> readStrings(Set<File> files) throws Exception {
+        List<File> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparing(file -> file.getParentFile().getName()));
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        for (File strings : sorted) {
+            Matcher matcher = VALUES_DIR.matcher(strings.getParentFile().getName());
+            if (!matcher.matches()) {
+                // Carpetas con otros calificadores, como values-night
+                continue;
+            }
+            String tag;
+            if (matcher.group(3) != null) {
+                tag = matcher.group(3).replace('+', '-');
+            } else if (matcher.group(1) != null) {
+                tag = matcher.group(2) != null ? matcher.group(1) + "-" + matcher.group(2) : matcher.group(1);
+            } else {
+                tag = "";
+            }
+            Map<String, String> values = new LinkedHashMap<>();
+            NodeList nodes = parse(strings).getElementsByTagName("string");
+            for (int i = 0; i < nodes.getLength(); i++) {
+                Element element = (Element) nodes.item(i);
+                values.put(element.getAttribute("name"), unescape(element.getTextContent()));
+            }
+            result.put(tag, values);
+        }
+        return result;
+    }
+
+    private static String resolve(String reference, Map<String, String> strings, Map<String, String> defaults) {
+        if (!reference.startsWith("@string/")) {
+            // Texto literal en el array
+            return unescape(reference);
+        }
+        String name = reference.substring("@string/".length());
+        String value = strings.containsKey(name) ? strings.get(name) : defaults.get(name);
+        if (value == null) {
+            throw new GradleException("No existe la cadena " + name);
+        }
+        return value;
+    }
+
+    private static String[] arrayItems(Document document, String name) {
+        for (String tag : new String[]{"string-array", "array"}) {
+            NodeList arrays = document.getElementsByTagName(tag);
+            for (int i = 0; i < arrays.getLength(); i++) {
+                Element array = (Element) arrays.item(i);
+                if (name.equals(array.getAttribute("name"))) {
+                    NodeList items = array.getElementsByTagName("item");
+                    List<String> result = new ArrayList<>();
+                    for (int j = 0; j < items.getLength(); j++) {
+                        result.add(items.item(j).getTextContent().trim());
+                    }
+                    return result.toArray(new String[0]);
+                }
+            }
+        }
+        throw new GradleException("No existe el array " + name);
+    }
+
+    /**
+     * Aplica las reglas de escape de los recursos de texto de Android más habituales: comillas
+     * envolventes, espacios agrupados y las secuencias {@code \n}, {@code \t}, {@code \'},
+     * {@code \"}, {@code \\} y {@code \@}.
+     */
+    static String unescape(String raw) {
+        StringBuilder result = new StringBuilder(raw.length());
+        boolean quoted = false;
+        boolean lastWasSpace = false;
+        String text = raw.trim();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                result.append(next == 'n' ? '\n' : next == 't' ? '\t' : next);
+                lastWasSpace = false;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                if (!lastWasSpace) {
+                    result.append(' ');
+                }
+                lastWasSpace = true;
+            } else {
+                result.append(c);
+                lastWasSpace = false;
+            }
+        }
+        return result.toString();
+    }
+
+    private static Document parse(File file) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+    }
+}
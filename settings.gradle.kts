@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "javl_tarea02"
 include(":app")
+include(":benchmark")
+include(":baselineprofile")
  
\ No newline at end of file